@@ -0,0 +1,230 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Solves a stream of puzzles written one per line, in the format read by
+ * PuzzleLineReader. Input is read in fixed-size chunks, so files of any size
+ * can be processed.
+ *
+ * For every non-blank input line one output line is written: the 81 digits of
+ * the solution followed by " solved", the puzzle itself followed by
+ * " unsolvable", or just "invalid" if the line is not a well-formed puzzle.
+ */
+public class BatchSolver {
+
+    /**
+     * Result codes of a puzzle
+     */
+    static final byte SOLVED = 0;
+    static final byte UNSOLVABLE = 1;
+    static final byte INVALID = 2;
+
+    /**
+     * Longest output line written for a puzzle
+     */
+    static final int MAX_RESULT_LENGTH = GridSolver.CELLS + 12;
+
+    /**
+     * Size of the output buffer
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Number of cells of a puzzle line
+     */
+    private static final int CELLS = GridSolver.CELLS;
+
+    /**
+     * Text written for each result code
+     */
+    private static final byte[][] RESULT_TEXT = {
+        " solved\n".getBytes(), " unsolvable\n".getBytes(), "invalid\n".getBytes()
+    };
+
+    /**
+     * Strategy used to solve every puzzle
+     */
+    private final SudokuBoard.SolveStrategy strategy;
+
+    /**
+     * Buffer for writing the output
+     */
+    private final byte[] output = new byte[BUFFER_SIZE];
+
+    /**
+     * Number of bytes of output waiting to be written
+     */
+    private int outputLength;
+
+    /**
+     * Values of the puzzle being solved
+     */
+    private final byte[] cells = new byte[CELLS];
+    private final int[] grid = new int[CELLS];
+
+    /**
+     * Counters of the puzzles processed so far
+     */
+    private long solved;
+    private long unsolvable;
+    private long invalid;
+
+    /**
+     * Aggregate receiving the metrics of every solve, or null to record nothing
+     */
+    private SolveStatistics statistics;
+
+    /**
+     * Metrics of the puzzle being solved, used when statistics are recorded
+     */
+    private final SolveMetrics metrics = new SolveMetrics();
+
+    /**
+     * Constructor of the BatchSolver class, using constraint propagation followed by search.
+     */
+    public BatchSolver() {
+        this(new PropagatingSolver());
+    }
+
+    /**
+     * Constructor of the BatchSolver class.
+     * Precondition: strategy is not null
+     *
+     * @param strategy the strategy used to solve every puzzle
+     */
+    public BatchSolver(SudokuBoard.SolveStrategy strategy) {
+        assert strategy != null : "The solve strategy cannot be null";
+        this.strategy = strategy;
+    }
+
+    /**
+     * Reads puzzles until the end of the input, writing one result line per puzzle.
+     * The streams are not closed; the output is flushed at the end.
+     *
+     * @param in  the stream of puzzles
+     * @param out the stream receiving the results
+     * @throws IOException if reading or writing fails
+     */
+    public void solveAll(InputStream in, OutputStream out) throws IOException {
+        PuzzleLineReader reader = new PuzzleLineReader(in);
+        int kind;
+        while ((kind = reader.readPuzzle(cells, 0)) != PuzzleLineReader.END) {
+            if (output.length - outputLength < MAX_RESULT_LENGTH) {
+                flush(out);
+            }
+            byte result;
+            if (kind == PuzzleLineReader.INVALID) {
+                result = INVALID;
+                invalid++;
+            } else if (solve()) {
+                result = SOLVED;
+                solved++;
+            } else {
+                result = UNSOLVABLE;
+                unsolvable++;
+            }
+            outputLength = appendResult(output, outputLength, cells, 0, result);
+        }
+        flush(out);
+        out.flush();
+    }
+
+    /**
+     * Solves the puzzle in cells, replacing it with its solution if there is one.
+     *
+     * @return true if the puzzle was solved
+     */
+    private boolean solve() {
+        for (int i = 0; i < CELLS; i++) {
+            grid[i] = cells[i];
+        }
+        SudokuBoard board = new SudokuBoard(grid);
+        if (statistics == null) {
+            if (!strategy.solve(board)) {
+                return false;
+            }
+        } else {
+            boolean solved = metrics.run(strategy, board);
+            statistics.add(metrics);
+            if (!solved) {
+                return false;
+            }
+        }
+        board.copyValuesTo(grid);
+        for (int i = 0; i < CELLS; i++) {
+            cells[i] = (byte) grid[i];
+        }
+        return true;
+    }
+
+    /**
+     * Writes the output line of a puzzle into a buffer.
+     * Precondition: the buffer has room for MAX_RESULT_LENGTH bytes from position
+     *
+     * @param buffer   the output buffer
+     * @param position the position where the line starts
+     * @param cells    the values of the puzzle, or of its solution if it was solved
+     * @param offset   the position in cells of the first value
+     * @param result   SOLVED, UNSOLVABLE or INVALID
+     * @return the position following the line
+     */
+    static int appendResult(byte[] buffer, int position, byte[] cells, int offset, byte result) {
+        if (result != INVALID) {
+            for (int i = 0; i < CELLS; i++) {
+                buffer[position++] = (byte) ('0' + cells[offset + i]);
+            }
+        }
+        byte[] text = RESULT_TEXT[result];
+        System.arraycopy(text, 0, buffer, position, text.length);
+        return position + text.length;
+    }
+
+    /**
+     * Writes the output buffer to the stream.
+     *
+     * @param out the stream receiving the results
+     * @throws IOException if writing fails
+     */
+    private void flush(OutputStream out) throws IOException {
+        out.write(output, 0, outputLength);
+        outputLength = 0;
+    }
+
+    /**
+     * Sets the aggregate receiving the metrics of every puzzle solved from now on.
+     * Invalid lines are not solved, so they add no metrics.
+     *
+     * @param statistics the aggregate, or null to stop recording metrics
+     */
+    public void setStatistics(SolveStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * Returns the number of puzzles solved so far.
+     *
+     * @return the number of solved puzzles
+     */
+    public long getSolvedCount() {
+        return solved;
+    }
+
+    /**
+     * Returns the number of puzzles found to have no solution so far.
+     *
+     * @return the number of unsolvable puzzles
+     */
+    public long getUnsolvableCount() {
+        return unsolvable;
+    }
+
+    /**
+     * Returns the number of malformed lines found so far.
+     *
+     * @return the number of invalid lines
+     */
+    public long getInvalidCount() {
+        return invalid;
+    }
+}
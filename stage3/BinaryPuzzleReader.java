@@ -0,0 +1,201 @@
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.util.zip.CRC32;
+
+/**
+ * Reads boards written by BinaryPuzzleWriter. Values and fixed flags of every
+ * cell are restored exactly. Malformed data, including records whose checksum
+ * does not match, raises IllegalArgumentException.
+ */
+public class BinaryPuzzleReader {
+
+    /**
+     * Number of cells of a board
+     */
+    private static final int CELLS = BinaryPuzzleWriter.CELLS;
+
+    /**
+     * The stream of records
+     */
+    private final InputStream in;
+
+    /**
+     * Buffer holding the record being read
+     */
+    private final byte[] record = new byte[BinaryPuzzleWriter.MAX_RECORD_LENGTH];
+
+    /**
+     * Checksum of the record being read
+     */
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Scratch values of a board
+     */
+    private final int[] grid = new int[CELLS];
+
+    /**
+     * Number of records read so far
+     */
+    private long count;
+
+    /**
+     * Solution stored with the last board read, or null
+     */
+    private SudokuBoard solution;
+
+    /**
+     * Constructor of the BinaryPuzzleReader class. Reads and checks the header of the format.
+     * Precondition: in is not null
+     *
+     * @param in the stream of boards; it is not closed by the reader
+     * @throws IOException if reading fails
+     * @throws IllegalArgumentException if the stream does not start with a header of a supported version
+     */
+    public BinaryPuzzleReader(InputStream in) throws IOException {
+        assert in != null : "The input stream cannot be null";
+        this.in = in;
+        int length = BinaryPuzzleWriter.MAGIC.length;
+        if (read(length + 1) != length + 1) {
+            throw new IllegalArgumentException("Missing header: not a binary puzzle file.");
+        }
+        for (int i = 0; i < length; i++) {
+            if (record[i] != BinaryPuzzleWriter.MAGIC[i]) {
+                throw new IllegalArgumentException("Wrong magic number: not a binary puzzle file.");
+            }
+        }
+        if (record[length] != BinaryPuzzleWriter.VERSION) {
+            throw new IllegalArgumentException("Unsupported version " + record[length] + ".");
+        }
+    }
+
+    /**
+     * Reads the next board. Its solution, if the record holds one, is returned by getSolution().
+     *
+     * @return the board, or null at the end of the stream
+     * @throws IOException if reading fails
+     * @throws IllegalArgumentException if the record is truncated, corrupted or holds invalid values
+     */
+    public SudokuBoard readBoard() throws IOException {
+        int read = read(1);
+        if (read == 0) {
+            solution = null;
+            return null;
+        }
+        int flags = record[0];
+        if ((flags & ~BinaryPuzzleWriter.HAS_SOLUTION) != 0) {
+            throw new IllegalArgumentException("Record " + count + " invalid: unknown flags.");
+        }
+        boolean hasSolution = (flags & BinaryPuzzleWriter.HAS_SOLUTION) != 0;
+        int dataLength = 1 + BinaryPuzzleWriter.VALUES_LENGTH + BinaryPuzzleWriter.FIXED_LENGTH
+            + (hasSolution ? BinaryPuzzleWriter.VALUES_LENGTH : 0);
+        if (read + readAt(1, dataLength + 3) != dataLength + 4) {
+            throw new IllegalArgumentException("Record " + count + " invalid: truncated.");
+        }
+        crc.reset();
+        crc.update(record, 0, dataLength);
+        int checksum = 0;
+        for (int i = 0; i < 4; i++) {
+            checksum = checksum << 8 | record[dataLength + i] & 0xFF;
+        }
+        if (checksum != (int) crc.getValue()) {
+            throw new IllegalArgumentException("Record " + count + " invalid: checksum mismatch.");
+        }
+
+        unpackValues(1);
+        long fixedLow = 0;
+        long fixedHigh = 0;
+        int fixedStart = 1 + BinaryPuzzleWriter.VALUES_LENGTH;
+        for (int i = 0; i < BinaryPuzzleWriter.FIXED_LENGTH; i++) {
+            long bits = record[fixedStart + i] & 0xFFL;
+            if (i < 8) {
+                fixedLow |= bits << (8 * i);
+            } else {
+                fixedHigh |= bits << (8 * (i - 8));
+            }
+        }
+        if (fixedHigh >>> (CELLS - 64) != 0) {
+            throw new IllegalArgumentException("Record " + count + " invalid: fixed flag beyond the last cell.");
+        }
+        for (int i = 0; i < CELLS; i++) {
+            boolean fixed = i < 64 ? (fixedLow >>> i & 1) != 0 : (fixedHigh >>> (i - 64) & 1) != 0;
+            if (fixed && grid[i] == 0) {
+                throw new IllegalArgumentException("Record " + count + " invalid: empty cell " + i + " is fixed.");
+            }
+        }
+        SudokuBoard board = new SudokuBoard(grid, fixedLow, fixedHigh);
+        solution = null;
+        if (hasSolution) {
+            unpackValues(fixedStart + BinaryPuzzleWriter.FIXED_LENGTH);
+            solution = new SudokuBoard(grid);
+        }
+        count++;
+        return board;
+    }
+
+    /**
+     * Returns the solution stored with the last board read.
+     *
+     * @return the solution, or null if the record held none
+     */
+    public SudokuBoard getSolution() {
+        return solution;
+    }
+
+    /**
+     * Returns the number of boards read so far.
+     *
+     * @return the number of records read
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Unpacks 81 cell values from the record into grid.
+     *
+     * @param position the position in the record of the first byte
+     */
+    private void unpackValues(int position) {
+        for (int i = 0; i < CELLS; i++) {
+            int packed = record[position + i / 2];
+            int value = i % 2 == 0 ? packed >> 4 & 0xF : packed & 0xF;
+            if (value > 9) {
+                throw new IllegalArgumentException("Record " + count + " invalid: value out of range in cell " + i + ".");
+            }
+            grid[i] = value;
+        }
+    }
+
+    /**
+     * Reads bytes into the start of the record buffer.
+     *
+     * @param length the number of bytes to read
+     * @return the number of bytes read, less than length only at the end of the stream
+     * @throws IOException if reading fails
+     */
+    private int read(int length) throws IOException {
+        return readAt(0, length);
+    }
+
+    /**
+     * Reads bytes into the record buffer.
+     *
+     * @param position the position in the record of the first byte
+     * @param length   the number of bytes to read
+     * @return the number of bytes read, less than length only at the end of the stream
+     * @throws IOException if reading fails
+     */
+    private int readAt(int position, int length) throws IOException {
+        int total = 0;
+        while (total < length) {
+            int read = in.read(record, position + total, length - total);
+            if (read == -1) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,179 @@
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.util.zip.CRC32;
+
+/**
+ * Writes boards in a compact binary format, read back by BinaryPuzzleReader.
+ *
+ * A file starts with a header of 5 bytes: the magic "SDKB" and the format
+ * version. Each board is one record:
+ * <ul>
+ * <li>1 byte of flags; bit 0 means the record holds a solution</li>
+ * <li>41 bytes of cell values, 4 bits per cell in row-major order, the first cell
+ * of each pair in the high half of the byte</li>
+ * <li>11 bytes of fixed flags, 1 bit per cell, cell 0 in the lowest bit of the first byte</li>
+ * <li>41 more bytes with the values of the solution, if the record holds one</li>
+ * <li>the CRC-32 of all previous bytes of the record, 4 bytes, most significant first</li>
+ * </ul>
+ * A board takes 57 bytes, or 98 with its solution, against 90 bytes of text.
+ */
+public class BinaryPuzzleWriter {
+
+    /**
+     * First bytes of every file
+     */
+    static final byte[] MAGIC = {'S', 'D', 'K', 'B'};
+
+    /**
+     * Version of the format written
+     */
+    static final byte VERSION = 1;
+
+    /**
+     * Flag of a record holding a solution
+     */
+    static final int HAS_SOLUTION = 1;
+
+    /**
+     * Number of cells of a board
+     */
+    static final int CELLS = GridSolver.CELLS;
+
+    /**
+     * Number of bytes of packed cell values
+     */
+    static final int VALUES_LENGTH = (CELLS + 1) / 2;
+
+    /**
+     * Number of bytes of fixed flags
+     */
+    static final int FIXED_LENGTH = (CELLS + 7) / 8;
+
+    /**
+     * Number of bytes of the longest record
+     */
+    static final int MAX_RECORD_LENGTH = 1 + 2 * VALUES_LENGTH + FIXED_LENGTH + 4;
+
+    /**
+     * The stream receiving the records
+     */
+    private final OutputStream out;
+
+    /**
+     * Buffer holding the record being written
+     */
+    private final byte[] record = new byte[MAX_RECORD_LENGTH];
+
+    /**
+     * Checksum of the record being written
+     */
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Converts text puzzle files to one binary file, optionally storing the
+     * solution of every solvable puzzle.
+     *
+     * @param args [--solutions] output-file puzzle-file...
+     */
+    public static void main(String[] args) {
+        int first = args.length > 0 && args[0].equals("--solutions") ? 1 : 0;
+        if (args.length < first + 2) {
+            System.err.println("Usage: java BinaryPuzzleWriter [--solutions] output-file puzzle-file...");
+            return;
+        }
+        boolean solutions = first == 1;
+        try (OutputStream file = new BufferedOutputStream(new FileOutputStream(args[first]))) {
+            BinaryPuzzleWriter writer = new BinaryPuzzleWriter(file);
+            for (int i = first + 1; i < args.length; i++) {
+                SudokuBoard board = new SudokuBoard(args[i]);
+                SudokuBoard solution = null;
+                if (solutions) {
+                    board.setPropagatingSolveStrategy();
+                    solution = board.solve();
+                }
+                writer.write(board, solution);
+            }
+            System.err.println("Converted " + (args.length - first - 1) + " puzzles to " + args[first]);
+        } catch (IOException e) {
+            System.err.println("Could not write " + args[first] + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Constructor of the BinaryPuzzleWriter class. Writes the header of the format.
+     * Precondition: out is not null
+     *
+     * @param out the stream receiving the boards; it is not closed by the writer
+     * @throws IOException if writing fails
+     */
+    public BinaryPuzzleWriter(OutputStream out) throws IOException {
+        assert out != null : "The output stream cannot be null";
+        this.out = out;
+        out.write(MAGIC);
+        out.write(VERSION);
+    }
+
+    /**
+     * Writes a board without a solution.
+     * Precondition: board is not null
+     *
+     * @param board the board to write
+     * @throws IOException if writing fails
+     */
+    public void write(SudokuBoard board) throws IOException {
+        write(board, null);
+    }
+
+    /**
+     * Writes a board and its solution.
+     * Precondition: board is not null
+     *
+     * @param board    the board to write
+     * @param solution the solution of the board, or null to write none
+     * @throws IOException if writing fails
+     */
+    public void write(SudokuBoard board, SudokuBoard solution) throws IOException {
+        assert board != null : "The board cannot be null";
+        int length = 0;
+        record[length++] = (byte) (solution == null ? 0 : HAS_SOLUTION);
+        length = packValues(board, length);
+        for (int i = 0; i < FIXED_LENGTH; i++) {
+            record[length + i] = 0;
+        }
+        for (int i = 0; i < CELLS; i++) {
+            if (board.isCellFixed(i / SudokuBoard.SIZE, i % SudokuBoard.SIZE)) {
+                record[length + i / 8] |= 1 << (i % 8);
+            }
+        }
+        length += FIXED_LENGTH;
+        if (solution != null) {
+            length = packValues(solution, length);
+        }
+        crc.reset();
+        crc.update(record, 0, length);
+        int checksum = (int) crc.getValue();
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            record[length++] = (byte) (checksum >>> shift);
+        }
+        out.write(record, 0, length);
+    }
+
+    /**
+     * Packs the values of a board into the record, two cells per byte.
+     *
+     * @param board    the board to pack
+     * @param position the position in the record of the first byte
+     * @return the position following the packed values
+     */
+    private int packValues(SudokuBoard board, int position) {
+        for (int i = 0; i < CELLS; i += 2) {
+            int high = board.getCellValue(i / SudokuBoard.SIZE, i % SudokuBoard.SIZE);
+            int low = i + 1 < CELLS ? board.getCellValue((i + 1) / SudokuBoard.SIZE, (i + 1) % SudokuBoard.SIZE) : 0;
+            record[position++] = (byte) (high << 4 | low);
+        }
+        return position;
+    }
+}
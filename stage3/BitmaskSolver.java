@@ -0,0 +1,381 @@
+/**
+ * Backtracking solve strategy that keeps, for every row, column and 3x3 box, a
+ * 9-bit mask of the values already used. The masks are updated when a value is
+ * placed or removed, so the candidates of a cell are found with a single
+ * OR/NOT instead of scanning its row, column and box.
+ *
+ * By default empty cells are filled in row-major order and candidates are tried
+ * from 1 to 9, the same order used by SudokuBoard.depthFirstSearch, so both find
+ * the same solution. With the minimum-remaining-values order the engine instead
+ * fills, at each step, the empty cell with the fewest candidates left.
+ */
+public class BitmaskSolver extends GridSolver {
+
+    /**
+     * The order in which empty cells are chosen
+     */
+    public enum CellOrder {
+        /**
+         * Cells are filled left to right, top to bottom
+         */
+        ROW_MAJOR,
+        /**
+         * The cell with the fewest candidates is filled first. Ties are broken
+         * by degree, i.e., the cell sharing a row, column or box with more empty
+         * cells wins. The search backs up as soon as any cell has no candidates.
+         */
+        MINIMUM_REMAINING_VALUES
+    }
+
+    /**
+     * The order in which empty cells are chosen
+     */
+    private final CellOrder order;
+
+    /**
+     * Values used in each row
+     */
+    private final int[] rowMask = new int[SudokuBoard.SIZE];
+
+    /**
+     * Values used in each column
+     */
+    private final int[] colMask = new int[SudokuBoard.SIZE];
+
+    /**
+     * Values used in each 3x3 box
+     */
+    private final int[] boxMask = new int[SudokuBoard.SIZE];
+
+    /**
+     * Indexes of the empty cells, in the order they are filled
+     */
+    private final int[] empties = new int[CELLS];
+
+    /**
+     * Number of entries of empties in use
+     */
+    private int emptyCount;
+
+    /**
+     * Empty cells left in each row, column and box, used to break MRV ties
+     */
+    private final int[] rowEmpty = new int[SudokuBoard.SIZE];
+    private final int[] colEmpty = new int[SudokuBoard.SIZE];
+    private final int[] boxEmpty = new int[SudokuBoard.SIZE];
+
+    /**
+     * Number of values placed during the last solve
+     */
+    private long nodeCount;
+
+    /**
+     * Number of search calls that found no solution during the last solve
+     */
+    private long backtrackCount;
+
+    /**
+     * Largest number of cells filled at once by the last solve
+     */
+    private int maxDepth;
+
+    /**
+     * Grid being solved
+     */
+    private int[] grid;
+
+    /**
+     * Copy of the grid used when counting, so the caller's grid is left untouched
+     */
+    private final int[] work = new int[CELLS];
+
+    /**
+     * Number of solutions after which the search stops
+     */
+    private int limit;
+
+    /**
+     * Number of solutions found by the current search
+     */
+    private int solutions;
+
+    /**
+     * Constructor of the BitmaskSolver class, filling cells in row-major order.
+     */
+    public BitmaskSolver() {
+        this(CellOrder.ROW_MAJOR);
+    }
+
+    /**
+     * Constructor of the BitmaskSolver class.
+     * Precondition: order is not null
+     *
+     * @param order the order in which empty cells are chosen
+     */
+    public BitmaskSolver(CellOrder order) {
+        assert order != null : "The cell order cannot be null";
+        this.order = order;
+    }
+
+    /**
+     * Returns the order in which this engine chooses empty cells.
+     *
+     * @return the cell order
+     */
+    public CellOrder getCellOrder() {
+        return order;
+    }
+
+    /**
+     * Returns the number of search nodes (values tentatively placed) visited by the
+     * last call to solve.
+     *
+     * @return the node count of the last solve
+     */
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Returns the number of dead ends, i.e., search calls that led to no solution,
+     * met by the last call to solve.
+     *
+     * @return the backtrack count of the last solve
+     */
+    public long getBacktrackCount() {
+        return backtrackCount;
+    }
+
+    /**
+     * Returns the largest number of cells the last call to solve had filled at once.
+     *
+     * @return the maximum search depth of the last solve
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Reports the node count, backtracks and maximum depth of the last solve.
+     *
+     * @param metrics the metrics to update
+     * @param nanos   the time spent in solve(int[])
+     */
+    protected void recordMetrics(SolveMetrics metrics, long nanos) {
+        super.recordMetrics(metrics, nanos);
+        metrics.add(SolveMetrics.Statistic.NODES, nodeCount);
+        metrics.add(SolveMetrics.Statistic.BACKTRACKS, backtrackCount);
+        metrics.max(SolveMetrics.Statistic.MAX_DEPTH, maxDepth);
+    }
+
+    /**
+     * Fills the empty cells of the grid.
+     * Precondition: grid has 81 cells with values between 0 and 9 inclusive
+     *
+     * @param grid the cell values, in row-major order
+     * @return true if the grid was solved, false otherwise
+     */
+    public boolean solve(int[] grid) {
+        assert grid != null && grid.length == CELLS : "The grid must have 81 cells.";
+        limit = 1;
+        return run(grid);
+    }
+
+    /**
+     * Counts the solutions of a board, stopping as soon as limit solutions are found.
+     * The board is not modified.
+     * Precondition: board is not null and limit is at least 1
+     *
+     * @param board the board whose solutions are counted
+     * @param limit the maximum number of solutions to look for
+     * @return the number of solutions, or limit if there are limit or more
+     */
+    public int countSolutions(SudokuBoard board, int limit) {
+        return countSolutions(valuesOf(board), limit);
+    }
+
+    /**
+     * Counts the solutions of a grid, stopping as soon as limit solutions are found.
+     * The grid is not modified.
+     * Precondition: grid has 81 cells with values between 0 and 9 inclusive
+     * Precondition: limit is at least 1
+     *
+     * @param grid  the cell values, in row-major order
+     * @param limit the maximum number of solutions to look for
+     * @return the number of solutions, or limit if there are limit or more
+     */
+    public int countSolutions(int[] grid, int limit) {
+        assert grid != null && grid.length == CELLS : "The grid must have 81 cells.";
+        assert limit >= 1 : "The limit must be at least 1.";
+        System.arraycopy(grid, 0, work, 0, CELLS);
+        this.limit = limit;
+        run(work);
+        return solutions;
+    }
+
+    /**
+     * Searches the grid until limit solutions have been found or the search space is exhausted.
+     *
+     * @param grid the cell values
+     * @return true if the limit was reached
+     */
+    private boolean run(int[] grid) {
+        nodeCount = 0;
+        backtrackCount = 0;
+        maxDepth = 0;
+        solutions = 0;
+        if (!load(grid)) {
+            return false;
+        }
+        boolean done = order == CellOrder.ROW_MAJOR ? search(0) : searchMrv(0);
+        this.grid = null;
+        return done;
+    }
+
+    /**
+     * Initializes the masks and the list of empty cells from the grid.
+     *
+     * @param grid the cell values
+     * @return false if two given values conflict, true otherwise
+     */
+    private boolean load(int[] grid) {
+        for (int i = 0; i < SudokuBoard.SIZE; i++) {
+            rowMask[i] = 0;
+            colMask[i] = 0;
+            boxMask[i] = 0;
+            rowEmpty[i] = 0;
+            colEmpty[i] = 0;
+            boxEmpty[i] = 0;
+        }
+        emptyCount = 0;
+        for (int i = 0; i < CELLS; i++) {
+            int value = grid[i];
+            if (value == 0) {
+                empties[emptyCount++] = i;
+                rowEmpty[ROW[i]]++;
+                colEmpty[COL[i]]++;
+                boxEmpty[BOX[i]]++;
+                continue;
+            }
+            int b = bit(value);
+            //A value repeated in a row, column or box can never be completed
+            if (((rowMask[ROW[i]] | colMask[COL[i]] | boxMask[BOX[i]]) & b) != 0) {
+                return false;
+            }
+            rowMask[ROW[i]] |= b;
+            colMask[COL[i]] |= b;
+            boxMask[BOX[i]] |= b;
+        }
+        this.grid = grid;
+        return true;
+    }
+
+    /**
+     * Fills the empty cells from position depth onwards.
+     *
+     * @param depth the position in empties of the next cell to fill
+     * @return true if the solution limit was reached, leaving the last solution in the grid
+     */
+    private boolean search(int depth) {
+        if (depth > maxDepth) {
+            maxDepth = depth;
+        }
+        if (depth == emptyCount) {
+            solutions++;
+            return solutions >= limit;
+        }
+        int cell = empties[depth];
+        int row = ROW[cell];
+        int col = COL[cell];
+        int box = BOX[cell];
+        int candidates = ~(rowMask[row] | colMask[col] | boxMask[box]) & ALL_VALUES;
+        while (candidates != 0) {
+            int b = candidates & -candidates;
+            candidates ^= b;
+            rowMask[row] |= b;
+            colMask[col] |= b;
+            boxMask[box] |= b;
+            grid[cell] = valueOf(b);
+            nodeCount++;
+            if (search(depth + 1)) {
+                return true;
+            }
+            rowMask[row] ^= b;
+            colMask[col] ^= b;
+            boxMask[box] ^= b;
+        }
+        grid[cell] = 0;
+        backtrackCount++;
+        return false;
+    }
+
+    /**
+     * Fills the empty cells from position depth onwards, always choosing the cell
+     * with the fewest candidates next.
+     *
+     * @param depth the number of cells already filled by the search
+     * @return true if the solution limit was reached, leaving the last solution in the grid
+     */
+    private boolean searchMrv(int depth) {
+        if (depth > maxDepth) {
+            maxDepth = depth;
+        }
+        if (depth == emptyCount) {
+            solutions++;
+            return solutions >= limit;
+        }
+        //Look for the most constrained cell, and give up as soon as one has no candidates
+        int best = -1;
+        int bestCount = Integer.MAX_VALUE;
+        int bestDegree = -1;
+        for (int k = depth; k < emptyCount; k++) {
+            int cell = empties[k];
+            int count = Integer.bitCount(~(rowMask[ROW[cell]] | colMask[COL[cell]] | boxMask[BOX[cell]]) & ALL_VALUES);
+            if (count == 0) {
+                backtrackCount++;
+                return false;
+            }
+            if (count > bestCount) {
+                continue;
+            }
+            int degree = rowEmpty[ROW[cell]] + colEmpty[COL[cell]] + boxEmpty[BOX[cell]];
+            if (count < bestCount || degree > bestDegree) {
+                best = k;
+                bestCount = count;
+                bestDegree = degree;
+            }
+        }
+        int cell = empties[best];
+        empties[best] = empties[depth];
+        empties[depth] = cell;
+
+        int row = ROW[cell];
+        int col = COL[cell];
+        int box = BOX[cell];
+        rowEmpty[row]--;
+        colEmpty[col]--;
+        boxEmpty[box]--;
+        int candidates = ~(rowMask[row] | colMask[col] | boxMask[box]) & ALL_VALUES;
+        while (candidates != 0) {
+            int b = candidates & -candidates;
+            candidates ^= b;
+            rowMask[row] |= b;
+            colMask[col] |= b;
+            boxMask[box] |= b;
+            grid[cell] = valueOf(b);
+            nodeCount++;
+            if (searchMrv(depth + 1)) {
+                return true;
+            }
+            rowMask[row] ^= b;
+            colMask[col] ^= b;
+            boxMask[box] ^= b;
+        }
+        grid[cell] = 0;
+        rowEmpty[row]++;
+        colEmpty[col]++;
+        boxEmpty[box]++;
+        backtrackCount++;
+        return false;
+    }
+}
@@ -0,0 +1,220 @@
+/**
+ * Values and candidate sets of the 81 cells of a board. The candidates of a cell
+ * are kept as a 9-bit mask (bit v-1 set iff v may still go in the cell), and are
+ * updated incrementally as values are placed and candidates eliminated.
+ * Filled cells have an empty candidate mask.
+ */
+public class CandidateGrid {
+
+    /**
+     * Number of cells of a board (81)
+     */
+    public static final int CELLS = GridSolver.CELLS;
+
+    /**
+     * Number of units (9 rows, 9 columns and 9 boxes)
+     */
+    public static final int UNIT_COUNT = 3 * SudokuBoard.SIZE;
+
+    /**
+     * Cells of every unit: rows are units 0-8, columns 9-17 and boxes 18-26
+     */
+    static final int[][] UNITS = new int[UNIT_COUNT][SudokuBoard.SIZE];
+
+    /**
+     * The 20 cells sharing a row, column or box with every cell
+     */
+    static final int[][] PEERS = new int[CELLS][20];
+
+    static {
+        for (int i = 0; i < CELLS; i++) {
+            int row = i / SudokuBoard.SIZE;
+            int col = i % SudokuBoard.SIZE;
+            int box = (row / 3) * 3 + col / 3;
+            int boxPos = (row % 3) * 3 + col % 3;
+            UNITS[row][col] = i;
+            UNITS[SudokuBoard.SIZE + col][row] = i;
+            UNITS[2 * SudokuBoard.SIZE + box][boxPos] = i;
+        }
+        for (int i = 0; i < CELLS; i++) {
+            int n = 0;
+            for (int j = 0; j < CELLS; j++) {
+                if (j != i && (rowOf(i) == rowOf(j) || colOf(i) == colOf(j) || boxOf(i) == boxOf(j))) {
+                    PEERS[i][n++] = j;
+                }
+            }
+        }
+    }
+
+    /**
+     * Value of each cell, 0 if empty
+     */
+    private final int[] values = new int[CELLS];
+
+    /**
+     * Candidate mask of each cell
+     */
+    private final int[] candidates = new int[CELLS];
+
+    /**
+     * Number of empty cells
+     */
+    private int emptyCount;
+
+    /**
+     * Set when some empty cell runs out of candidates
+     */
+    private boolean contradiction;
+
+    /**
+     * Loads the values of a grid and computes the candidates of every empty cell.
+     * Precondition: grid has 81 cells with values between 0 and 9 inclusive
+     *
+     * @param grid the cell values, in row-major order
+     * @return false if the grid already has conflicting values or an empty cell without candidates, true otherwise
+     */
+    public boolean load(int[] grid) {
+        assert grid != null && grid.length == CELLS : "The grid must have 81 cells.";
+        contradiction = false;
+        emptyCount = CELLS;
+        for (int i = 0; i < CELLS; i++) {
+            values[i] = 0;
+            candidates[i] = GridSolver.ALL_VALUES;
+        }
+        for (int i = 0; i < CELLS; i++) {
+            if (grid[i] != 0) {
+                if ((candidates[i] & (1 << (grid[i] - 1))) == 0) {
+                    contradiction = true;
+                    return false;
+                }
+                place(i, grid[i]);
+            }
+        }
+        return !contradiction;
+    }
+
+    /**
+     * Places a value in an empty cell and removes it from the candidates of its peers.
+     * Precondition: the cell is empty and value is between 1 and 9 inclusive
+     *
+     * @param cell  the index of the cell
+     * @param value the value to place
+     * @return false if some peer was left without candidates, true otherwise
+     */
+    public boolean place(int cell, int value) {
+        assert values[cell] == 0 : "The cell is not empty.";
+        assert value >= 1 && value <= 9 : "Value out of range.";
+        values[cell] = value;
+        candidates[cell] = 0;
+        emptyCount--;
+        int bit = 1 << (value - 1);
+        for (int peer : PEERS[cell]) {
+            eliminate(peer, bit);
+        }
+        return !contradiction;
+    }
+
+    /**
+     * Removes candidates from a cell. Filled cells are left untouched.
+     *
+     * @param cell the index of the cell
+     * @param mask the candidates to remove
+     * @return true if at least one candidate was removed, false otherwise
+     */
+    public boolean eliminate(int cell, int mask) {
+        int before = candidates[cell];
+        if ((before & mask) == 0) {
+            return false;
+        }
+        candidates[cell] = before & ~mask;
+        if (candidates[cell] == 0) {
+            contradiction = true;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the value of a cell.
+     *
+     * @param cell the index of the cell
+     * @return the value of the cell, 0 if empty
+     */
+    public int getValue(int cell) {
+        return values[cell];
+    }
+
+    /**
+     * Returns the candidates of a cell.
+     *
+     * @param cell the index of the cell
+     * @return the candidate mask of the cell, 0 if the cell is filled
+     */
+    public int getCandidates(int cell) {
+        return candidates[cell];
+    }
+
+    /**
+     * Returns the number of empty cells.
+     *
+     * @return the number of empty cells
+     */
+    public int getEmptyCount() {
+        return emptyCount;
+    }
+
+    /**
+     * Returns whether the grid has been found to have no solution, either because
+     * an empty cell has no candidates left or because it was marked explicitly.
+     *
+     * @return true if the grid is known to be unsolvable, false otherwise
+     */
+    public boolean hasContradiction() {
+        return contradiction;
+    }
+
+    /**
+     * Marks the grid as unsolvable, e.g. when a unit has no place left for a value.
+     */
+    public void markContradiction() {
+        contradiction = true;
+    }
+
+    /**
+     * Copies the cell values into a grid.
+     *
+     * @param grid the array receiving the 81 values
+     */
+    public void copyValuesTo(int[] grid) {
+        System.arraycopy(values, 0, grid, 0, CELLS);
+    }
+
+    /**
+     * Returns the row of a cell.
+     *
+     * @param cell the index of the cell
+     * @return the row index (0-8)
+     */
+    public static int rowOf(int cell) {
+        return cell / SudokuBoard.SIZE;
+    }
+
+    /**
+     * Returns the column of a cell.
+     *
+     * @param cell the index of the cell
+     * @return the column index (0-8)
+     */
+    public static int colOf(int cell) {
+        return cell % SudokuBoard.SIZE;
+    }
+
+    /**
+     * Returns the 3x3 box of a cell.
+     *
+     * @param cell the index of the cell
+     * @return the box index (0-8), boxes numbered in row-major order
+     */
+    public static int boxOf(int cell) {
+        return (rowOf(cell) / 3) * 3 + colOf(cell) / 3;
+    }
+}
@@ -0,0 +1,419 @@
+/**
+ * Applies logical Sudoku techniques to a CandidateGrid until none of them makes
+ * further progress. The techniques used are, from cheapest to most expensive:
+ * naked singles, hidden singles, pointing pairs and box/line reduction.
+ * Every time a technique places a value or eliminates candidates, a counter for
+ * that technique is increased, so callers can see which techniques fired.
+ */
+public class ConstraintPropagator {
+
+    /**
+     * The logical techniques applied by the propagator
+     */
+    public enum Technique {
+        /**
+         * A cell with only one candidate gets that value
+         */
+        NAKED_SINGLE,
+        /**
+         * A value with only one possible cell in a row, column or box goes there
+         */
+        HIDDEN_SINGLE,
+        /**
+         * A value confined to one row or column inside a box is removed from the
+         * rest of that row or column
+         */
+        POINTING,
+        /**
+         * A value confined to one box inside a row or column is removed from the
+         * rest of that box
+         */
+        BOX_LINE_REDUCTION
+    }
+
+    /**
+     * The techniques in the order they are tried
+     */
+    private static final Technique[] TECHNIQUES = Technique.values();
+
+    /**
+     * Number of times each technique fired during the last propagation
+     */
+    private final int[] counts = new int[Technique.values().length];
+
+    /**
+     * Number of values placed during the last propagation
+     */
+    private int placements;
+
+    /**
+     * Number of passes over the grid during the last propagation
+     */
+    private int rounds;
+
+    /**
+     * Time spent in each technique during the last propagation, if timing is enabled
+     */
+    private final long[] nanos = new long[Technique.values().length];
+
+    /**
+     * Whether the time spent in each technique is measured
+     */
+    private boolean timed;
+
+    /**
+     * Grid used when propagating a SudokuBoard
+     */
+    private final CandidateGrid scratch = new CandidateGrid();
+
+    /**
+     * Cell values used when propagating a SudokuBoard
+     */
+    private final int[] values = new int[CandidateGrid.CELLS];
+
+    /**
+     * Returns a copy of the board with every value that follows logically from it filled in.
+     * The original board is not modified.
+     * Precondition: board is not null
+     *
+     * @param board the board to propagate
+     * @return the propagated copy, or null if the board was found to have no solution
+     */
+    public SudokuBoard propagate(SudokuBoard board) {
+        assert board != null : "The board cannot be null";
+        SudokuBoard copy = new SudokuBoard(board);
+        copy.copyValuesTo(values);
+        resetCounts();
+        if (!scratch.load(values) || !propagate(scratch)) {
+            return null;
+        }
+        for (int i = 0; i < CandidateGrid.CELLS; i++) {
+            if (values[i] == 0 && scratch.getValue(i) != 0) {
+                copy.setCellValue(CandidateGrid.rowOf(i), CandidateGrid.colOf(i), scratch.getValue(i));
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Applies the techniques to the grid until a fixpoint is reached. The counters
+     * are not reset, so several calls accumulate.
+     * Precondition: grid is not null
+     *
+     * @param grid the grid to update in place
+     * @return false if the grid was found to have no solution, true otherwise
+     */
+    public boolean propagate(CandidateGrid grid) {
+        assert grid != null : "The grid cannot be null";
+        boolean progress = true;
+        while (progress && !grid.hasContradiction() && grid.getEmptyCount() > 0) {
+            rounds++;
+            //Always go back to the cheapest technique after any progress
+            if (timed) {
+                progress = timedRound(grid);
+            } else {
+                progress = nakedSingles(grid) || hiddenSingles(grid) || pointing(grid) || boxLineReduction(grid);
+            }
+        }
+        return !grid.hasContradiction();
+    }
+
+    /**
+     * Runs one pass of propagate, measuring the time spent in each technique.
+     *
+     * @param grid the grid to update
+     * @return true if some technique made progress
+     */
+    private boolean timedRound(CandidateGrid grid) {
+        for (Technique technique : TECHNIQUES) {
+            long start = System.nanoTime();
+            boolean progress;
+            switch (technique) {
+                case NAKED_SINGLE:
+                    progress = nakedSingles(grid);
+                    break;
+                case HIDDEN_SINGLE:
+                    progress = hiddenSingles(grid);
+                    break;
+                case POINTING:
+                    progress = pointing(grid);
+                    break;
+                default:
+                    progress = boxLineReduction(grid);
+                    break;
+            }
+            nanos[technique.ordinal()] += System.nanoTime() - start;
+            if (progress) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Turns on or off the measuring of the time spent in each technique. It is off
+     * by default, so propagation does not read the clock.
+     *
+     * @param timed true to measure technique timings
+     */
+    public void setTimed(boolean timed) {
+        this.timed = timed;
+    }
+
+    /**
+     * Clears the technique counters.
+     */
+    public void resetCounts() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+            nanos[i] = 0;
+        }
+        placements = 0;
+        rounds = 0;
+    }
+
+    /**
+     * Returns how many times a technique fired since the counters were last reset.
+     *
+     * @param technique the technique
+     * @return the number of placements or eliminations made with the technique
+     */
+    public int getCount(Technique technique) {
+        return counts[technique.ordinal()];
+    }
+
+    /**
+     * Returns the time spent in a technique since the counters were last reset.
+     *
+     * @param technique the technique
+     * @return the time in nanoseconds, 0 if timing is not enabled
+     */
+    public long getNanos(Technique technique) {
+        return nanos[technique.ordinal()];
+    }
+
+    /**
+     * Returns the number of passes over the grid since the counters were last reset.
+     *
+     * @return the number of propagation rounds
+     */
+    public int getRounds() {
+        return rounds;
+    }
+
+    /**
+     * Returns the number of values placed since the counters were last reset.
+     *
+     * @return the number of values placed by logic
+     */
+    public int getPlacements() {
+        return placements;
+    }
+
+    /**
+     * Places the value of every cell with a single candidate.
+     *
+     * @param grid the grid to update
+     * @return true if some value was placed
+     */
+    boolean nakedSingles(CandidateGrid grid) {
+        boolean progress = false;
+        for (int cell = 0; cell < CandidateGrid.CELLS && !grid.hasContradiction(); cell++) {
+            int mask = grid.getCandidates(cell);
+            if (grid.getValue(cell) == 0 && Integer.bitCount(mask) == 1) {
+                grid.place(cell, GridSolver.valueOf(mask));
+                record(Technique.NAKED_SINGLE);
+                placements++;
+                progress = true;
+            }
+        }
+        return progress;
+    }
+
+    /**
+     * Places every value that has a single possible cell in some unit.
+     *
+     * @param grid the grid to update
+     * @return true if some value was placed
+     */
+    boolean hiddenSingles(CandidateGrid grid) {
+        boolean progress = false;
+        for (int[] unit : CandidateGrid.UNITS) {
+            int placed = 0;
+            int seenOnce = 0;
+            int seenTwice = 0;
+            for (int cell : unit) {
+                int mask = grid.getCandidates(cell);
+                seenTwice |= seenOnce & mask;
+                seenOnce |= mask;
+                if (grid.getValue(cell) != 0) {
+                    placed |= GridSolver.bit(grid.getValue(cell));
+                }
+            }
+            if ((seenOnce | placed) != GridSolver.ALL_VALUES) {
+                //Some value has no place left in this unit
+                grid.markContradiction();
+                return false;
+            }
+            int singles = seenOnce & ~seenTwice;
+            if (singles == 0) {
+                continue;
+            }
+            for (int cell : unit) {
+                int mask = grid.getCandidates(cell) & singles;
+                if (mask != 0) {
+                    if (Integer.bitCount(mask) > 1) {
+                        //Two values can only go in this same cell
+                        grid.markContradiction();
+                        return false;
+                    }
+                    grid.place(cell, GridSolver.valueOf(mask));
+                    record(Technique.HIDDEN_SINGLE);
+                    placements++;
+                    progress = true;
+                }
+            }
+            if (grid.hasContradiction()) {
+                return false;
+            }
+        }
+        return progress;
+    }
+
+    /**
+     * Removes a value from a row or column outside a box when, inside that box,
+     * the value can only go in that row or column.
+     *
+     * @param grid the grid to update
+     * @return true if some candidate was eliminated
+     */
+    boolean pointing(CandidateGrid grid) {
+        boolean progress = false;
+        for (int box = 0; box < SudokuBoard.SIZE; box++) {
+            int[] boxCells = CandidateGrid.UNITS[2 * SudokuBoard.SIZE + box];
+            for (int value = 1; value <= SudokuBoard.SIZE; value++) {
+                int bit = GridSolver.bit(value);
+                int row = -1;
+                int col = -1;
+                boolean sameRow = true;
+                boolean sameCol = true;
+                boolean found = false;
+                for (int cell : boxCells) {
+                    if ((grid.getCandidates(cell) & bit) == 0) {
+                        continue;
+                    }
+                    if (!found) {
+                        row = CandidateGrid.rowOf(cell);
+                        col = CandidateGrid.colOf(cell);
+                        found = true;
+                    } else {
+                        sameRow &= row == CandidateGrid.rowOf(cell);
+                        sameCol &= col == CandidateGrid.colOf(cell);
+                    }
+                }
+                if (!found) {
+                    continue;
+                }
+                boolean eliminated = false;
+                if (sameRow) {
+                    eliminated |= eliminateOutsideBox(grid, CandidateGrid.UNITS[row], box, bit);
+                }
+                if (sameCol) {
+                    eliminated |= eliminateOutsideBox(grid, CandidateGrid.UNITS[SudokuBoard.SIZE + col], box, bit);
+                }
+                if (eliminated) {
+                    record(Technique.POINTING);
+                    progress = true;
+                }
+            }
+        }
+        return progress;
+    }
+
+    /**
+     * Removes a value from a box outside a row or column when, inside that row or
+     * column, the value can only go in that box.
+     *
+     * @param grid the grid to update
+     * @return true if some candidate was eliminated
+     */
+    boolean boxLineReduction(CandidateGrid grid) {
+        boolean progress = false;
+        for (int line = 0; line < 2 * SudokuBoard.SIZE; line++) {
+            int[] lineCells = CandidateGrid.UNITS[line];
+            for (int value = 1; value <= SudokuBoard.SIZE; value++) {
+                int bit = GridSolver.bit(value);
+                int box = -1;
+                boolean sameBox = true;
+                for (int cell : lineCells) {
+                    if ((grid.getCandidates(cell) & bit) == 0) {
+                        continue;
+                    }
+                    if (box == -1) {
+                        box = CandidateGrid.boxOf(cell);
+                    } else {
+                        sameBox &= box == CandidateGrid.boxOf(cell);
+                    }
+                }
+                if (box == -1 || !sameBox) {
+                    continue;
+                }
+                boolean eliminated = false;
+                for (int cell : CandidateGrid.UNITS[2 * SudokuBoard.SIZE + box]) {
+                    if (!contains(lineCells, cell)) {
+                        eliminated |= grid.eliminate(cell, bit);
+                    }
+                }
+                if (eliminated) {
+                    record(Technique.BOX_LINE_REDUCTION);
+                    progress = true;
+                }
+            }
+        }
+        return progress;
+    }
+
+    /**
+     * Removes a value from the cells of a line that are outside a box.
+     *
+     * @param grid the grid to update
+     * @param line the cells of a row or column
+     * @param box  the box whose cells are kept
+     * @param bit  the value to remove
+     * @return true if some candidate was eliminated
+     */
+    private static boolean eliminateOutsideBox(CandidateGrid grid, int[] line, int box, int bit) {
+        boolean eliminated = false;
+        for (int cell : line) {
+            if (CandidateGrid.boxOf(cell) != box) {
+                eliminated |= grid.eliminate(cell, bit);
+            }
+        }
+        return eliminated;
+    }
+
+    /**
+     * Checks whether a unit contains a cell.
+     *
+     * @param unit the cells of the unit
+     * @param cell the cell to look for
+     * @return true if the cell belongs to the unit
+     */
+    private static boolean contains(int[] unit, int cell) {
+        for (int c : unit) {
+            if (c == cell) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Increases the counter of a technique.
+     *
+     * @param technique the technique that fired
+     */
+    private void record(Technique technique) {
+        counts[technique.ordinal()]++;
+    }
+}
@@ -0,0 +1,241 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Removes the puzzles of a stream that are equivalent under the symmetries of
+ * Sudoku to an earlier one: relabelings, transpositions, and permutations of
+ * rows, columns, bands and stacks. Puzzles are read one per line, in the format
+ * read by PuzzleLineReader, and the first puzzle of every class is written as
+ * 81 digits, 0 for empty cells, in its original form or in canonical form.
+ * Malformed lines are counted and skipped.
+ *
+ * The canonical forms seen are kept packed in an open-addressing hash table,
+ * 100 to 200 bytes per class, so corpora of millions of puzzles fit in memory.
+ */
+public class CorpusDeduplicator {
+
+    /**
+     * Number of cells of a puzzle line
+     */
+    private static final int CELLS = GridSolver.CELLS;
+
+    /**
+     * Number of longs holding a packed canonical form, at four bits per cell
+     */
+    private static final int WORDS = (CELLS + 15) / 16;
+
+    /**
+     * Size of the output buffer
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Computes the canonical forms
+     */
+    private final PuzzleCanonicalizer canonicalizer = new PuzzleCanonicalizer();
+
+    /**
+     * Buffer for writing the output
+     */
+    private final byte[] output = new byte[BUFFER_SIZE];
+
+    /**
+     * Number of bytes of output waiting to be written
+     */
+    private int outputLength;
+
+    /**
+     * Values of the puzzle being read, and its canonical form
+     */
+    private final byte[] cells = new byte[CELLS];
+    private final int[] grid = new int[CELLS];
+    private final int[] canonical = new int[CELLS];
+
+    /**
+     * Canonical forms seen, WORDS longs per slot, all zero in empty slots
+     */
+    private long[] table = new long[WORDS * 1024];
+
+    /**
+     * Whether the empty puzzle, whose packed form is all zero, was seen
+     */
+    private boolean emptySeen;
+
+    /**
+     * Whether the canonical form is written instead of the original puzzle
+     */
+    private boolean canonicalOutput;
+
+    /**
+     * Counters of the puzzles processed so far
+     */
+    private long puzzles;
+    private long classes;
+    private long invalid;
+
+    /**
+     * Reads puzzles until the end of the input, writing the first puzzle of every
+     * class not seen before, also in earlier calls. The streams are not closed;
+     * the output is flushed at the end.
+     *
+     * @param in  the stream of puzzles
+     * @param out the stream receiving one puzzle per class
+     * @throws IOException if reading or writing fails
+     */
+    public void dedupe(InputStream in, OutputStream out) throws IOException {
+        PuzzleLineReader reader = new PuzzleLineReader(in);
+        int kind;
+        while ((kind = reader.readPuzzle(cells, 0)) != PuzzleLineReader.END) {
+            if (kind == PuzzleLineReader.INVALID) {
+                invalid++;
+                continue;
+            }
+            puzzles++;
+            for (int i = 0; i < CELLS; i++) {
+                grid[i] = cells[i];
+            }
+            canonicalizer.canonicalize(grid, canonical);
+            if (!add(canonical)) {
+                continue;
+            }
+            if (output.length - outputLength < CELLS + 1) {
+                flush(out);
+            }
+            int[] written = canonicalOutput ? canonical : grid;
+            for (int i = 0; i < CELLS; i++) {
+                output[outputLength++] = (byte) ('0' + written[i]);
+            }
+            output[outputLength++] = '\n';
+        }
+        flush(out);
+        out.flush();
+    }
+
+    /**
+     * Sets whether the canonical form of each class is written instead of its first puzzle.
+     *
+     * @param canonicalOutput true to write canonical forms
+     */
+    public void setCanonicalOutput(boolean canonicalOutput) {
+        this.canonicalOutput = canonicalOutput;
+    }
+
+    /**
+     * Returns the number of well-formed puzzles read.
+     *
+     * @return the number of puzzles
+     */
+    public long getPuzzleCount() {
+        return puzzles;
+    }
+
+    /**
+     * Returns the number of classes found, which is the number of puzzles written.
+     *
+     * @return the number of classes
+     */
+    public long getClassCount() {
+        return classes;
+    }
+
+    /**
+     * Returns the number of malformed lines skipped.
+     *
+     * @return the number of invalid lines
+     */
+    public long getInvalidCount() {
+        return invalid;
+    }
+
+    /**
+     * Adds a canonical form to the table.
+     *
+     * @param form the canonical form
+     * @return true if it was not in the table
+     */
+    private boolean add(int[] form) {
+        long[] words = new long[WORDS];
+        for (int i = 0; i < CELLS; i++) {
+            words[i >>> 4] |= (long) form[i] << ((i & 15) << 2);
+        }
+        if (isZero(words, 0)) {
+            boolean added = !emptySeen;
+            emptySeen = true;
+            classes += added ? 1 : 0;
+            return added;
+        }
+        if (!insert(table, words)) {
+            return false;
+        }
+        classes++;
+        //Kept at most half full, so probes stay short
+        if ((classes - (emptySeen ? 1 : 0)) * 2 * WORDS > table.length) {
+            long[] larger = new long[table.length * 2];
+            long[] slot = new long[WORDS];
+            for (int start = 0; start < table.length; start += WORDS) {
+                if (!isZero(table, start)) {
+                    System.arraycopy(table, start, slot, 0, WORDS);
+                    insert(larger, slot);
+                }
+            }
+            table = larger;
+        }
+        return true;
+    }
+
+    /**
+     * Inserts a packed form into a table by linear probing.
+     *
+     * @param into  the table
+     * @param words the packed form, not all zero
+     * @return true if it was not in the table
+     */
+    private static boolean insert(long[] into, long[] words) {
+        int slots = into.length / WORDS;
+        long hash = 0;
+        for (long word : words) {
+            hash = (hash ^ word) * 0x9E3779B97F4A7C15L;
+        }
+        int slot = (int) (hash >>> 32) & (slots - 1);
+        while (!isZero(into, slot * WORDS)) {
+            boolean equal = true;
+            for (int w = 0; w < WORDS && equal; w++) {
+                equal = into[slot * WORDS + w] == words[w];
+            }
+            if (equal) {
+                return false;
+            }
+            slot = (slot + 1) & (slots - 1);
+        }
+        System.arraycopy(words, 0, into, slot * WORDS, WORDS);
+        return true;
+    }
+
+    /**
+     * Checks if a slot of a table is empty.
+     *
+     * @param table the table
+     * @param start the position of the first word of the slot
+     * @return true if every word of the slot is zero
+     */
+    private static boolean isZero(long[] table, int start) {
+        for (int w = 0; w < WORDS; w++) {
+            if (table[start + w] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the output buffer to the stream.
+     *
+     * @param out the stream receiving the puzzles
+     * @throws IOException if writing fails
+     */
+    private void flush(OutputStream out) throws IOException {
+        out.write(output, 0, outputLength);
+        outputLength = 0;
+    }
+}
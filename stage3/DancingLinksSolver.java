@@ -0,0 +1,320 @@
+/**
+ * Solve strategy based on Knuth's Algorithm X with dancing links. Sudoku is
+ * written as an exact cover problem with 729 rows (a value in a cell) and 324
+ * columns: every cell holds one value, and every row, column and box holds
+ * each value once.
+ *
+ * All the nodes of the cover matrix live in int arrays allocated when the
+ * solver is created. A solve covers the columns of the given values, searches,
+ * and then uncovers everything again, so the same solver can be reused for any
+ * number of solves without allocating.
+ *
+ * On a puzzle with a unique solution the result is the same as any other
+ * engine. When there are several solutions the engine may return a different
+ * one than depthFirstSearch, since it does not fill cells in row-major order.
+ */
+public class DancingLinksSolver extends GridSolver {
+
+    /**
+     * Number of constraint columns: cell, row-value, column-value and box-value
+     */
+    private static final int COLUMNS = 4 * CELLS;
+
+    /**
+     * Number of candidate rows, one per value per cell
+     */
+    private static final int ROWS = CELLS * SudokuBoard.SIZE;
+
+    /**
+     * Index of the root header; column headers are 1 to COLUMNS
+     */
+    private static final int ROOT = 0;
+
+    /**
+     * Index of the first node of every candidate row
+     */
+    private static final int[] FIRST_NODE = new int[ROWS];
+
+    static {
+        for (int r = 0; r < ROWS; r++) {
+            FIRST_NODE[r] = COLUMNS + 1 + 4 * r;
+        }
+    }
+
+    /**
+     * Links of every node: left, right, up and down
+     */
+    private final int[] left;
+    private final int[] right;
+    private final int[] up;
+    private final int[] down;
+
+    /**
+     * Column header of every node
+     */
+    private final int[] column;
+
+    /**
+     * Candidate row of every node, -1 for headers
+     */
+    private final int[] rowOf;
+
+    /**
+     * Number of nodes currently in every column
+     */
+    private final int[] size = new int[COLUMNS + 1];
+
+    /**
+     * Candidate rows chosen so far, givens first
+     */
+    private final int[] chosen = new int[CELLS];
+
+    /**
+     * Number of givens whose columns are currently covered
+     */
+    private int givenCount;
+
+    /**
+     * Number of solutions after which the search stops
+     */
+    private int limit;
+
+    /**
+     * Number of solutions found by the current search
+     */
+    private int solutions;
+
+    /**
+     * Constructor of the DancingLinksSolver class. Builds the full cover matrix.
+     */
+    public DancingLinksSolver() {
+        int nodes = COLUMNS + 1 + 4 * ROWS;
+        left = new int[nodes];
+        right = new int[nodes];
+        up = new int[nodes];
+        down = new int[nodes];
+        column = new int[nodes];
+        rowOf = new int[nodes];
+        for (int h = 0; h <= COLUMNS; h++) {
+            left[h] = h == 0 ? COLUMNS : h - 1;
+            right[h] = h == COLUMNS ? 0 : h + 1;
+            up[h] = h;
+            down[h] = h;
+            column[h] = h;
+            rowOf[h] = -1;
+        }
+        for (int r = 0; r < ROWS; r++) {
+            int cell = r / SudokuBoard.SIZE;
+            int v = r % SudokuBoard.SIZE;
+            int[] headers = {
+                1 + cell,
+                1 + CELLS + ROW[cell] * SudokuBoard.SIZE + v,
+                1 + 2 * CELLS + COL[cell] * SudokuBoard.SIZE + v,
+                1 + 3 * CELLS + BOX[cell] * SudokuBoard.SIZE + v
+            };
+            int first = FIRST_NODE[r];
+            for (int k = 0; k < 4; k++) {
+                int n = first + k;
+                int h = headers[k];
+                column[n] = h;
+                rowOf[n] = r;
+                left[n] = first + (k + 3) % 4;
+                right[n] = first + (k + 1) % 4;
+                up[n] = up[h];
+                down[n] = h;
+                down[up[h]] = n;
+                up[h] = n;
+                size[h]++;
+            }
+        }
+    }
+
+    /**
+     * Fills the empty cells of the grid.
+     * Precondition: grid has 81 cells with values between 0 and 9 inclusive
+     *
+     * @param grid the cell values, in row-major order
+     * @return true if the grid was solved, false otherwise
+     */
+    public boolean solve(int[] grid) {
+        assert grid != null && grid.length == CELLS : "The grid must have 81 cells.";
+        limit = 1;
+        solutions = 0;
+        boolean solved = coverGivens(grid) && search(givenCount);
+        if (solved) {
+            for (int k = givenCount; k < CELLS; k++) {
+                grid[chosen[k] / SudokuBoard.SIZE] = chosen[k] % SudokuBoard.SIZE + 1;
+            }
+        }
+        uncoverGivens();
+        return solved;
+    }
+
+    /**
+     * Counts the solutions of a board, stopping as soon as limit solutions are found.
+     * The board is not modified.
+     * Precondition: board is not null and limit is at least 1
+     *
+     * @param board the board whose solutions are counted
+     * @param limit the maximum number of solutions to look for
+     * @return the number of solutions, or limit if there are limit or more
+     */
+    public int countSolutions(SudokuBoard board, int limit) {
+        return countSolutions(valuesOf(board), limit);
+    }
+
+    /**
+     * Counts the solutions of a grid, stopping as soon as limit solutions are found.
+     * The grid is not modified.
+     * Precondition: grid has 81 cells with values between 0 and 9 inclusive
+     * Precondition: limit is at least 1
+     *
+     * @param grid  the cell values, in row-major order
+     * @param limit the maximum number of solutions to look for
+     * @return the number of solutions, or limit if there are limit or more
+     */
+    public int countSolutions(int[] grid, int limit) {
+        assert grid != null && grid.length == CELLS : "The grid must have 81 cells.";
+        assert limit >= 1 : "The limit must be at least 1.";
+        this.limit = limit;
+        solutions = 0;
+        if (coverGivens(grid)) {
+            search(givenCount);
+        }
+        uncoverGivens();
+        return solutions;
+    }
+
+    /**
+     * Covers the columns satisfied by every value already in the grid.
+     *
+     * @param grid the cell values
+     * @return false if a given conflicts with an earlier one, true otherwise
+     */
+    private boolean coverGivens(int[] grid) {
+        givenCount = 0;
+        for (int cell = 0; cell < CELLS; cell++) {
+            if (grid[cell] == 0) {
+                continue;
+            }
+            int r = cell * SudokuBoard.SIZE + grid[cell] - 1;
+            //A column already covered means two givens compete for the same constraint
+            int first = FIRST_NODE[r];
+            for (int n = first; n < first + 4; n++) {
+                if (isCovered(column[n])) {
+                    return false;
+                }
+            }
+            chosen[givenCount++] = r;
+            for (int n = first; n < first + 4; n++) {
+                cover(column[n]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Uncovers the columns of the covered givens, in reverse order.
+     */
+    private void uncoverGivens() {
+        for (int k = givenCount - 1; k >= 0; k--) {
+            int first = FIRST_NODE[chosen[k]];
+            for (int n = first + 3; n >= first; n--) {
+                uncover(column[n]);
+            }
+        }
+        givenCount = 0;
+    }
+
+    /**
+     * Searches for row sets covering the remaining columns, until limit solutions
+     * have been counted. The matrix is always restored before returning; the rows
+     * of the last solution found are left in chosen.
+     *
+     * @param k the number of rows chosen so far
+     * @return true if the limit was reached
+     */
+    private boolean search(int k) {
+        if (right[ROOT] == ROOT) {
+            solutions++;
+            return solutions >= limit;
+        }
+        int c = smallestColumn();
+        if (size[c] == 0) {
+            return false;
+        }
+        boolean done = false;
+        cover(c);
+        for (int r = down[c]; r != c && !done; r = down[r]) {
+            chosen[k] = rowOf[r];
+            for (int j = right[r]; j != r; j = right[j]) {
+                cover(column[j]);
+            }
+            done = search(k + 1);
+            for (int j = left[r]; j != r; j = left[j]) {
+                uncover(column[j]);
+            }
+        }
+        uncover(c);
+        return done;
+    }
+
+    /**
+     * Returns the uncovered column with the fewest nodes, the leftmost one on ties.
+     *
+     * @return the header index of the column
+     */
+    private int smallestColumn() {
+        int best = right[ROOT];
+        for (int c = right[best]; c != ROOT && size[best] > 1; c = right[c]) {
+            if (size[c] < size[best]) {
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Checks whether a column header has been unlinked from the header list.
+     *
+     * @param c the header index
+     * @return true if the column is covered
+     */
+    private boolean isCovered(int c) {
+        return right[left[c]] != c;
+    }
+
+    /**
+     * Removes a column and every row intersecting it from the matrix.
+     *
+     * @param c the header index
+     */
+    private void cover(int c) {
+        right[left[c]] = right[c];
+        left[right[c]] = left[c];
+        for (int i = down[c]; i != c; i = down[i]) {
+            for (int j = right[i]; j != i; j = right[j]) {
+                down[up[j]] = down[j];
+                up[down[j]] = up[j];
+                size[column[j]]--;
+            }
+        }
+    }
+
+    /**
+     * Undoes cover(c).
+     *
+     * @param c the header index
+     */
+    private void uncover(int c) {
+        for (int i = up[c]; i != c; i = up[i]) {
+            for (int j = left[i]; j != i; j = left[j]) {
+                size[column[j]]++;
+                down[up[j]] = j;
+                up[down[j]] = j;
+            }
+        }
+        right[left[c]] = c;
+        left[right[c]] = c;
+    }
+}
@@ -0,0 +1,695 @@
+/**
+ * Rates puzzles by the logical techniques a person needs to solve them. The
+ * grader solves a puzzle by applying a ladder of techniques, always going back
+ * to the cheapest one after any progress, and records every step. The puzzle's
+ * difficulty is given by the hardest technique it needed; puzzles that the whole
+ * ladder cannot finish require guessing.
+ *
+ * All techniques work on one CandidateGrid, whose candidates are updated
+ * incrementally as values are placed and candidates eliminated, so no step
+ * recomputes them from the cell values. An instance grades one puzzle at a
+ * time; use one grader per thread.
+ */
+public class DifficultyGrader {
+
+    /**
+     * Difficulty tiers of a puzzle
+     */
+    public enum Difficulty {
+        /**
+         * Solved with singles only
+         */
+        EASY,
+        /**
+         * Needs pointing or box/line reduction
+         */
+        MEDIUM,
+        /**
+         * Needs naked or hidden pairs or triples
+         */
+        HARD,
+        /**
+         * Needs X-wing or swordfish
+         */
+        EXPERT,
+        /**
+         * Needs chains
+         */
+        EXTREME,
+        /**
+         * No technique of the ladder finishes the puzzle; it needs guessing, or has several solutions
+         */
+        REQUIRES_GUESSING,
+        /**
+         * The puzzle has no solution
+         */
+        UNSOLVABLE
+    }
+
+    /**
+     * The techniques of the ladder, from cheapest to most expensive
+     */
+    public enum Technique {
+        /**
+         * A cell with only one candidate gets that value
+         */
+        NAKED_SINGLE(1, Difficulty.EASY),
+        /**
+         * A value with only one possible cell in a unit goes there
+         */
+        HIDDEN_SINGLE(2, Difficulty.EASY),
+        /**
+         * A value confined to one line inside a box is removed from the rest of the line
+         */
+        POINTING(5, Difficulty.MEDIUM),
+        /**
+         * A value confined to one box inside a line is removed from the rest of the box
+         */
+        BOX_LINE_REDUCTION(5, Difficulty.MEDIUM),
+        /**
+         * Two cells of a unit with the same two candidates remove them from the rest of the unit
+         */
+        NAKED_PAIR(10, Difficulty.HARD),
+        /**
+         * Two values confined to the same two cells of a unit remove all other candidates of those cells
+         */
+        HIDDEN_PAIR(12, Difficulty.HARD),
+        /**
+         * Three cells of a unit with three candidates between them remove them from the rest of the unit
+         */
+        NAKED_TRIPLE(15, Difficulty.HARD),
+        /**
+         * Three values confined to the same three cells of a unit remove all other candidates of those cells
+         */
+        HIDDEN_TRIPLE(18, Difficulty.HARD),
+        /**
+         * A value confined to the same two columns in two rows (or the reverse) is removed from the rest of those columns
+         */
+        X_WING(25, Difficulty.EXPERT),
+        /**
+         * A value confined to the same three columns in three rows (or the reverse) is removed from the rest of those columns
+         */
+        SWORDFISH(35, Difficulty.EXPERT),
+        /**
+         * A chain of cells with two candidates each proves that one of its two end
+         * cells holds some value, which is removed from the cells seeing both ends
+         */
+        XY_CHAIN(50, Difficulty.EXTREME);
+
+        /**
+         * Score added every time the technique makes progress
+         */
+        private final int weight;
+
+        /**
+         * Difficulty of puzzles needing the technique
+         */
+        private final Difficulty difficulty;
+
+        /**
+         * Constructor of the Technique enum.
+         *
+         * @param weight     the score added every time the technique makes progress
+         * @param difficulty the difficulty of puzzles needing the technique
+         */
+        Technique(int weight, Difficulty difficulty) {
+            this.weight = weight;
+            this.difficulty = difficulty;
+        }
+
+        /**
+         * Returns the score added every time the technique makes progress.
+         *
+         * @return the weight of the technique
+         */
+        public int getWeight() {
+            return weight;
+        }
+
+        /**
+         * Returns the difficulty of puzzles needing the technique.
+         *
+         * @return the difficulty tier
+         */
+        public Difficulty getDifficulty() {
+            return difficulty;
+        }
+    }
+
+    /**
+     * Score added when a puzzle requires guessing
+     */
+    public static final int GUESS_WEIGHT = 100;
+
+    /**
+     * Number of cells of a board
+     */
+    private static final int CELLS = CandidateGrid.CELLS;
+
+    /**
+     * Number of cells of a unit
+     */
+    private static final int SIZE = SudokuBoard.SIZE;
+
+    /**
+     * Techniques applied by the propagator, with the matching technique of the ladder
+     */
+    private static final ConstraintPropagator.Technique[] PROPAGATOR_TECHNIQUES = ConstraintPropagator.Technique.values();
+
+    /**
+     * Applies singles, pointing and box/line reduction, and counts them
+     */
+    private final ConstraintPropagator propagator = new ConstraintPropagator();
+
+    /**
+     * The grid of the puzzle being graded
+     */
+    private final CandidateGrid grid = new CandidateGrid();
+
+    /**
+     * Cell values of the puzzle being graded
+     */
+    private final int[] values = new int[CELLS];
+
+    /**
+     * Number of times each technique made progress on the puzzle being graded
+     */
+    private final int[] counts = new int[Technique.values().length];
+
+    /**
+     * Scratch cells of a unit, and positions of values in a unit or of a value in lines
+     */
+    private final int[] unitCells = new int[SIZE];
+    private final int[] masks = new int[SIZE];
+
+    /**
+     * Chain search state: the cell and the value true at each queued step, and
+     * which (cell, value) steps were reached
+     */
+    private final int[] queueCells = new int[CELLS * SIZE];
+    private final int[] queueBits = new int[CELLS * SIZE];
+    private final boolean[] reached = new boolean[CELLS * SIZE];
+
+    /**
+     * Rates a puzzle. The board is not modified.
+     * Precondition: board is not null
+     *
+     * @param board the puzzle to rate
+     * @return the rating of the puzzle
+     */
+    public Grade grade(SudokuBoard board) {
+        assert board != null : "The board cannot be null";
+        board.copyValuesTo(values);
+        return grade(values);
+    }
+
+    /**
+     * Rates a puzzle given by its cell values.
+     * Precondition: puzzle has 81 values between 0 and 9 inclusive, in row-major order
+     *
+     * @param puzzle the values of the cells, 0 for an empty cell
+     * @return the rating of the puzzle
+     */
+    public Grade grade(int[] puzzle) {
+        propagator.resetCounts();
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+        if (!grid.load(puzzle)) {
+            return new Grade(Difficulty.UNSOLVABLE, null, counts, 0);
+        }
+        while (!grid.hasContradiction() && grid.getEmptyCount() > 0 && step()) {
+            //Keep applying the cheapest technique that makes progress
+        }
+        for (ConstraintPropagator.Technique technique : PROPAGATOR_TECHNIQUES) {
+            counts[Technique.valueOf(technique.name()).ordinal()] = propagator.getCount(technique);
+        }
+        Technique hardest = null;
+        int score = 0;
+        for (Technique technique : Technique.values()) {
+            if (counts[technique.ordinal()] > 0) {
+                hardest = technique;
+                score += counts[technique.ordinal()] * technique.getWeight();
+            }
+        }
+        Difficulty difficulty;
+        if (grid.hasContradiction()) {
+            difficulty = Difficulty.UNSOLVABLE;
+        } else if (grid.getEmptyCount() > 0) {
+            difficulty = Difficulty.REQUIRES_GUESSING;
+            score += GUESS_WEIGHT;
+        } else {
+            difficulty = hardest == null ? Difficulty.EASY : hardest.getDifficulty();
+        }
+        return new Grade(difficulty, hardest, counts, score);
+    }
+
+    /**
+     * Returns the grid left by the last grading: solved, or with the candidates the
+     * ladder could not eliminate.
+     *
+     * @return the grid of the last puzzle graded
+     */
+    CandidateGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Applies the cheapest technique that makes progress.
+     *
+     * @return false if no technique made progress
+     */
+    private boolean step() {
+        if (propagator.nakedSingles(grid) || propagator.hiddenSingles(grid)
+                || propagator.pointing(grid) || propagator.boxLineReduction(grid)) {
+            return true;
+        }
+        return record(Technique.NAKED_PAIR, nakedSubsets(2))
+            || record(Technique.HIDDEN_PAIR, hiddenSubsets(2))
+            || record(Technique.NAKED_TRIPLE, nakedSubsets(3))
+            || record(Technique.HIDDEN_TRIPLE, hiddenSubsets(3))
+            || record(Technique.X_WING, fish(2))
+            || record(Technique.SWORDFISH, fish(3))
+            || record(Technique.XY_CHAIN, xyChains());
+    }
+
+    /**
+     * Applies the cheapest technique that eliminates candidates from the grid,
+     * without placing any value. Used by HintEngine to uncover the next single.
+     *
+     * @return the technique that made progress, or null if none did
+     */
+    Technique eliminate() {
+        if (propagator.pointing(grid)) {
+            return Technique.POINTING;
+        }
+        if (propagator.boxLineReduction(grid)) {
+            return Technique.BOX_LINE_REDUCTION;
+        }
+        return nakedSubsets(2) ? Technique.NAKED_PAIR
+            : hiddenSubsets(2) ? Technique.HIDDEN_PAIR
+            : nakedSubsets(3) ? Technique.NAKED_TRIPLE
+            : hiddenSubsets(3) ? Technique.HIDDEN_TRIPLE
+            : fish(2) ? Technique.X_WING
+            : fish(3) ? Technique.SWORDFISH
+            : xyChains() ? Technique.XY_CHAIN
+            : null;
+    }
+
+    /**
+     * Counts a step of a technique if it made progress.
+     *
+     * @param technique the technique applied
+     * @param progress  whether it made progress
+     * @return progress
+     */
+    private boolean record(Technique technique, boolean progress) {
+        if (progress) {
+            counts[technique.ordinal()]++;
+        }
+        return progress;
+    }
+
+    /**
+     * Finds, in some unit, size cells whose candidates together are size values,
+     * and removes those values from the other cells of the unit.
+     *
+     * @param size the number of cells of the subset
+     * @return true if some candidate was eliminated
+     */
+    private boolean nakedSubsets(int size) {
+        for (int[] unit : CandidateGrid.UNITS) {
+            int count = 0;
+            for (int cell : unit) {
+                int n = Integer.bitCount(grid.getCandidates(cell));
+                if (n >= 2 && n <= size) {
+                    unitCells[count++] = cell;
+                }
+            }
+            if (count > size && nakedSubset(unit, count, size, 0, 0, 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tries the subsets of the candidate cells of a unit, recursively.
+     *
+     * @param unit      the cells of the unit
+     * @param count     the number of candidate cells in unitCells
+     * @param remaining the number of cells still to choose
+     * @param start     the first candidate cell that may be chosen
+     * @param chosen    the chosen cells, one bit per position in unitCells
+     * @param union     the candidates of the chosen cells
+     * @return true if some candidate was eliminated
+     */
+    private boolean nakedSubset(int[] unit, int count, int remaining, int start, int chosen, int union) {
+        if (Integer.bitCount(union) > Integer.bitCount(chosen) + remaining) {
+            return false;
+        }
+        if (remaining == 0) {
+            boolean eliminated = false;
+            for (int cell : unit) {
+                if (!isChosen(cell, count, chosen)) {
+                    eliminated |= grid.eliminate(cell, union);
+                }
+            }
+            return eliminated;
+        }
+        for (int i = start; i < count; i++) {
+            if (nakedSubset(unit, count, remaining - 1, i + 1, chosen | 1 << i, union | grid.getCandidates(unitCells[i]))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether a cell is among the chosen cells of unitCells.
+     *
+     * @param cell   the cell
+     * @param count  the number of cells in unitCells
+     * @param chosen the chosen cells, one bit per position in unitCells
+     * @return true if the cell was chosen
+     */
+    private boolean isChosen(int cell, int count, int chosen) {
+        for (int i = 0; i < count; i++) {
+            if ((chosen >>> i & 1) != 0 && unitCells[i] == cell) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds, in some unit, size values that can only go in the same size cells,
+     * and removes every other candidate from those cells.
+     *
+     * @param size the number of values of the subset
+     * @return true if some candidate was eliminated
+     */
+    private boolean hiddenSubsets(int size) {
+        for (int[] unit : CandidateGrid.UNITS) {
+            for (int v = 0; v < SIZE; v++) {
+                masks[v] = 0;
+            }
+            for (int position = 0; position < SIZE; position++) {
+                int candidates = grid.getCandidates(unit[position]);
+                while (candidates != 0) {
+                    int b = candidates & -candidates;
+                    candidates ^= b;
+                    masks[Integer.numberOfTrailingZeros(b)] |= 1 << position;
+                }
+            }
+            if (hiddenSubset(unit, size, 0, 0, 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tries the subsets of the values of a unit, recursively. masks holds the
+     * positions where each value can go.
+     *
+     * @param unit      the cells of the unit
+     * @param remaining the number of values still to choose
+     * @param start     the first value (from 0) that may be chosen
+     * @param chosen    the chosen values, as a candidate mask
+     * @param positions the positions of the unit where the chosen values can go
+     * @return true if some candidate was eliminated
+     */
+    private boolean hiddenSubset(int[] unit, int remaining, int start, int chosen, int positions) {
+        if (Integer.bitCount(positions) > Integer.bitCount(chosen) + remaining) {
+            return false;
+        }
+        if (remaining == 0) {
+            boolean eliminated = false;
+            for (int position = 0; position < SIZE; position++) {
+                if ((positions >>> position & 1) != 0) {
+                    eliminated |= grid.eliminate(unit[position], ~chosen & GridSolver.ALL_VALUES);
+                }
+            }
+            return eliminated;
+        }
+        for (int v = start; v < SIZE; v++) {
+            //Values placed in the unit, or with a single position, are left to the singles
+            if (Integer.bitCount(masks[v]) >= 2
+                    && hiddenSubset(unit, remaining - 1, v + 1, chosen | 1 << v, positions | masks[v])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds a value confined, in size rows, to the same size columns, and removes it
+     * from the other cells of those columns; and the same with rows and columns swapped.
+     *
+     * @param size the number of lines of the fish (2 for X-wing, 3 for swordfish)
+     * @return true if some candidate was eliminated
+     */
+    private boolean fish(int size) {
+        for (int v = 0; v < SIZE; v++) {
+            int b = 1 << v;
+            for (int rowsAsBase = 0; rowsAsBase < 2; rowsAsBase++) {
+                for (int line = 0; line < SIZE; line++) {
+                    masks[line] = 0;
+                    for (int i = 0; i < SIZE; i++) {
+                        int cell = rowsAsBase == 1 ? line * SIZE + i : i * SIZE + line;
+                        if ((grid.getCandidates(cell) & b) != 0) {
+                            masks[line] |= 1 << i;
+                        }
+                    }
+                }
+                if (fishLines(b, rowsAsBase == 1, size, 0, 0, 0)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tries the sets of base lines of a fish, recursively. masks holds the cover
+     * positions of the value in each base line.
+     *
+     * @param b          the value, as a candidate mask
+     * @param rowsAsBase true if the base lines are rows
+     * @param remaining  the number of base lines still to choose
+     * @param start      the first base line that may be chosen
+     * @param base       the chosen base lines, one bit per line
+     * @param cover      the cover positions of the chosen base lines
+     * @return true if some candidate was eliminated
+     */
+    private boolean fishLines(int b, boolean rowsAsBase, int remaining, int start, int base, int cover) {
+        if (Integer.bitCount(cover) > Integer.bitCount(base) + remaining) {
+            return false;
+        }
+        if (remaining == 0) {
+            boolean eliminated = false;
+            for (int line = 0; line < SIZE; line++) {
+                if ((base >>> line & 1) != 0) {
+                    continue;
+                }
+                for (int i = 0; i < SIZE; i++) {
+                    if ((cover >>> i & 1) != 0) {
+                        eliminated |= grid.eliminate(rowsAsBase ? line * SIZE + i : i * SIZE + line, b);
+                    }
+                }
+            }
+            return eliminated;
+        }
+        for (int line = start; line < SIZE; line++) {
+            if (Integer.bitCount(masks[line]) >= 2
+                    && fishLines(b, rowsAsBase, remaining - 1, line + 1, base | 1 << line, cover | masks[line])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Follows chains of cells with two candidates. If a cell start does not hold
+     * value x, it holds its other value y; then a peer with candidates y and z
+     * holds z, and so on. When the chain reaches another cell that then holds x,
+     * one of the two ends holds x, so x is removed from the cells seeing both.
+     * Chains are searched breadth first, so each (cell, value) step is visited once.
+     *
+     * @return true if some candidate was eliminated
+     */
+    private boolean xyChains() {
+        for (int start = 0; start < CELLS; start++) {
+            int candidates = grid.getCandidates(start);
+            if (Integer.bitCount(candidates) != 2) {
+                continue;
+            }
+            int first = candidates & -candidates;
+            if (xyChain(start, first) || xyChain(start, candidates ^ first)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Searches the chains starting at a cell that does not hold x.
+     *
+     * @param start the first cell, with two candidates
+     * @param x     the candidate of start assumed false, as a mask
+     * @return true if some candidate was eliminated
+     */
+    private boolean xyChain(int start, int x) {
+        for (int i = 0; i < reached.length; i++) {
+            reached[i] = false;
+        }
+        int head = 0;
+        int tail = 0;
+        queueCells[tail] = start;
+        queueBits[tail++] = grid.getCandidates(start) ^ x;
+        reached[start * SIZE + Integer.numberOfTrailingZeros(grid.getCandidates(start) ^ x)] = true;
+        while (head < tail) {
+            int cell = queueCells[head];
+            int on = queueBits[head++];
+            for (int peer : CandidateGrid.PEERS[cell]) {
+                int candidates = grid.getCandidates(peer);
+                if (Integer.bitCount(candidates) != 2 || (candidates & on) == 0) {
+                    continue;
+                }
+                int next = candidates ^ on;
+                if (next == x && peer != start && eliminateSeenByBoth(start, peer, x)) {
+                    return true;
+                }
+                int state = peer * SIZE + Integer.numberOfTrailingZeros(next);
+                if (!reached[state]) {
+                    reached[state] = true;
+                    queueCells[tail] = peer;
+                    queueBits[tail++] = next;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes a value from every cell that is a peer of two cells.
+     *
+     * @param first  the first cell
+     * @param second the second cell
+     * @param b      the value, as a candidate mask
+     * @return true if some candidate was eliminated
+     */
+    private boolean eliminateSeenByBoth(int first, int second, int b) {
+        boolean eliminated = false;
+        for (int cell : CandidateGrid.PEERS[first]) {
+            if (cell != second && (CandidateGrid.rowOf(cell) == CandidateGrid.rowOf(second)
+                    || CandidateGrid.colOf(cell) == CandidateGrid.colOf(second)
+                    || CandidateGrid.boxOf(cell) == CandidateGrid.boxOf(second))) {
+                eliminated |= grid.eliminate(cell, b);
+            }
+        }
+        return eliminated;
+    }
+
+    /**
+     * The rating of a puzzle.
+     */
+    public static class Grade {
+
+        /**
+         * The difficulty tier
+         */
+        private final Difficulty difficulty;
+
+        /**
+         * The hardest technique used, or null if none was needed
+         */
+        private final Technique hardest;
+
+        /**
+         * Number of times each technique made progress
+         */
+        private final int[] counts;
+
+        /**
+         * Sum of the weights of all steps, plus GUESS_WEIGHT if guessing is required
+         */
+        private final int score;
+
+        /**
+         * Constructor of the Grade class.
+         *
+         * @param difficulty the difficulty tier
+         * @param hardest    the hardest technique used, or null
+         * @param counts     the number of times each technique made progress; it is copied
+         * @param score      the score of the puzzle
+         */
+        private Grade(Difficulty difficulty, Technique hardest, int[] counts, int score) {
+            this.difficulty = difficulty;
+            this.hardest = hardest;
+            this.counts = counts.clone();
+            this.score = score;
+        }
+
+        /**
+         * Returns the difficulty tier of the puzzle.
+         *
+         * @return the difficulty
+         */
+        public Difficulty getDifficulty() {
+            return difficulty;
+        }
+
+        /**
+         * Returns the hardest technique the puzzle needed.
+         *
+         * @return the technique, or null if no technique was used
+         */
+        public Technique getHardestTechnique() {
+            return hardest;
+        }
+
+        /**
+         * Returns how many times a technique made progress.
+         *
+         * @param technique the technique
+         * @return the number of steps made with the technique
+         */
+        public int getCount(Technique technique) {
+            return counts[technique.ordinal()];
+        }
+
+        /**
+         * Returns the number of steps made with all techniques.
+         *
+         * @return the number of steps
+         */
+        public int getSteps() {
+            int steps = 0;
+            for (int count : counts) {
+                steps += count;
+            }
+            return steps;
+        }
+
+        /**
+         * Returns the score of the puzzle: the sum of the weights of all steps, plus
+         * GUESS_WEIGHT if it requires guessing. Harder puzzles score higher.
+         *
+         * @return the score
+         */
+        public int getScore() {
+            return score;
+        }
+
+        /**
+         * Returns a short description of the grade.
+         *
+         * @return the difficulty, hardest technique, steps and score
+         */
+        public String toString() {
+            return difficulty + " (hardest: " + hardest + ", steps: " + getSteps() + ", score: " + score + ")";
+        }
+    }
+}
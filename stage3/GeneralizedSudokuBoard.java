@@ -0,0 +1,513 @@
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+
+import java.util.Arrays;
+
+/**
+ * A Sudoku board of any box size n: n^2 rows and columns of n^2 cells, divided
+ * into n^2 boxes of n x n cells, holding values 1 to n^2. Box size 3 is the
+ * classic 9x9 board, 4 gives 16x16 and 5 gives 25x25.
+ *
+ * Like SudokuBoard, the board keeps the number of occurrences of every value in
+ * every row, column and box up to date, so validity checks do not scan it, and
+ * solves with a copy so the board itself is not modified.
+ */
+public class GeneralizedSudokuBoard {
+
+    /**
+     * The box size n
+     */
+    private final int boxSize;
+
+    /**
+     * Number of rows, columns, boxes and values (n^2)
+     */
+    private final int size;
+
+    /**
+     * Values of the cells in row-major order, 0 for an empty cell
+     */
+    private final int[] values;
+
+    /**
+     * Fixed flags of the cells
+     */
+    private final boolean[] fixed;
+
+    /**
+     * Occurrences of every value in every unit, at unitCounts[unit * (size + 1) + value].
+     * Units are the rows, then the columns, then the boxes.
+     */
+    private final int[] unitCounts;
+
+    /**
+     * Number of non-empty cells
+     */
+    private int filledCount;
+
+    /**
+     * Number of repeated values over all units
+     */
+    private int duplicateCount;
+
+    /**
+     * Constructor of the GeneralizedSudokuBoard class. Builds an empty board.
+     * Precondition: boxSize is between 2 and LongMaskSolver.MAX_BOX_SIZE inclusive
+     *
+     * @param boxSize the box size n
+     */
+    public GeneralizedSudokuBoard(int boxSize) {
+        assert boxSize >= 2 && boxSize <= LongMaskSolver.MAX_BOX_SIZE : "Box size out of range.";
+        this.boxSize = boxSize;
+        size = boxSize * boxSize;
+        values = new int[size * size];
+        fixed = new boolean[size * size];
+        unitCounts = new int[3 * size * (size + 1)];
+    }
+
+    /**
+     * Constructor of the GeneralizedSudokuBoard class. Builds a board from the values
+     * of its cells. Non-zero values are fixed.
+     * Precondition: boxSize is between 2 and LongMaskSolver.MAX_BOX_SIZE inclusive
+     * Precondition: grid has n^4 values between 0 and n^2 inclusive, in row-major order
+     *
+     * @param boxSize the box size n
+     * @param grid    the values of the cells, 0 for an empty cell
+     */
+    public GeneralizedSudokuBoard(int boxSize, int[] grid) {
+        this(boxSize);
+        assert grid != null && grid.length == size * size : "The grid must have n^4 cells.";
+        for (int i = 0; i < grid.length; i++) {
+            assert grid[i] >= 0 && grid[i] <= size : "Value out of range.";
+            write(i, grid[i]);
+            fixed[i] = grid[i] != 0;
+        }
+    }
+
+    /**
+     * Constructor of the GeneralizedSudokuBoard class. Loads a board from a file.
+     * The first line fixes the size: it has n^2 values, for some box size n between
+     * 2 and 8. Each of the n^2 lines holds n^2 values, either one digit per character
+     * as in the 9x9 puzzle files, or separated by spaces, commas or other characters
+     * that are neither digits nor dots; 0 or . is an empty cell. Lines after the last
+     * row are ignored.
+     *
+     * @param fileName the name of the file containing the board
+     */
+    public GeneralizedSudokuBoard(String fileName) {
+        this(readGrid(fileName));
+    }
+
+    /**
+     * Constructor used by the file constructor once the file has been parsed.
+     *
+     * @param rows the values of the cells, one array per row
+     */
+    private GeneralizedSudokuBoard(int[][] rows) {
+        this((int) Math.round(Math.sqrt(rows.length)));
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                write(row * size + col, rows[row][col]);
+                fixed[row * size + col] = rows[row][col] != 0;
+            }
+        }
+    }
+
+    /**
+     * Copy constructor of the GeneralizedSudokuBoard class. Values and fixed flags are copied.
+     * Precondition: board is not null
+     *
+     * @param board the board to copy
+     */
+    public GeneralizedSudokuBoard(GeneralizedSudokuBoard board) {
+        this(board.boxSize);
+        System.arraycopy(board.values, 0, values, 0, values.length);
+        System.arraycopy(board.fixed, 0, fixed, 0, fixed.length);
+        System.arraycopy(board.unitCounts, 0, unitCounts, 0, unitCounts.length);
+        filledCount = board.filledCount;
+        duplicateCount = board.duplicateCount;
+    }
+
+    /**
+     * Reads the values of a board file.
+     *
+     * @param fileName the name of the file
+     * @return the values, one array per row
+     */
+    private static int[][] readGrid(String fileName) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(Paths.get(fileName));
+        } catch (IOException | InvalidPathException e) {
+            throw new IllegalArgumentException("File could not be opened: " + fileName, e);
+        }
+        int[][] rows = null;
+        int[] line = new int[LongMaskSolver.MAX_BOX_SIZE * LongMaskSolver.MAX_BOX_SIZE + 1];
+        int row = 0;
+        int position = 0;
+        while (position < bytes.length && (rows == null || row < rows.length)) {
+            int end = position;
+            while (end < bytes.length && bytes[end] != '\n') {
+                end++;
+            }
+            int count = split(bytes, position, end, line, row);
+            position = end + 1;
+            if (rows == null) {
+                int boxSize = (int) Math.round(Math.sqrt(count));
+                if (boxSize < 2 || boxSize > LongMaskSolver.MAX_BOX_SIZE || boxSize * boxSize != count) {
+                    throw new IllegalArgumentException("Row 0 invalid: expecting n^2 values, for n between 2 and 8.");
+                }
+                rows = new int[count][];
+            }
+            if (count != rows.length) {
+                throw new IllegalArgumentException("Row " + row + " invalid: expecting " + rows.length + " values.");
+            }
+            for (int col = 0; col < count; col++) {
+                if (line[col] > count) {
+                    throw new IllegalArgumentException("Invalid value in row " + row + ", column " + col);
+                }
+            }
+            rows[row++] = Arrays.copyOf(line, count);
+        }
+        if (rows == null || row != rows.length) {
+            int size = rows == null ? 0 : rows.length;
+            throw new IllegalArgumentException("File must contain exactly " + size + " lines with " + size + " values each.");
+        }
+        return rows;
+    }
+
+    /**
+     * Splits a line into values. A line made of a single run of digits and dots,
+     * as in the 9x9 puzzle files, holds one value per character; otherwise values
+     * are separated by any characters that are neither digits nor dots.
+     *
+     * @param bytes the contents of the file
+     * @param start the position of the first character of the line
+     * @param end   the position after the last character of the line
+     * @param line  the array receiving the values
+     * @param row   the index of the line
+     * @return the number of values in the line
+     */
+    private static int split(byte[] bytes, int start, int end, int[] line, int row) {
+        int first = start;
+        int last = end;
+        while (first < last && !isValueChar(bytes[first])) {
+            first++;
+        }
+        while (last > first && !isValueChar(bytes[last - 1])) {
+            last--;
+        }
+        boolean packed = true;
+        for (int i = first; i < last && packed; i++) {
+            packed = isValueChar(bytes[i]);
+        }
+        int count = 0;
+        if (packed) {
+            //One value per character
+            for (int i = first; i < last; i++) {
+                count = store(line, count, bytes[i] == '.' ? 0 : bytes[i] - '0', row);
+            }
+            return count;
+        }
+        int value = -1;
+        for (int i = first; i <= last; i++) {
+            byte c = i < last ? bytes[i] : (byte) ' ';
+            if (c >= '0' && c <= '9') {
+                value = (value == -1 ? 0 : value * 10) + (c - '0');
+                if (value > LongMaskSolver.MAX_BOX_SIZE * LongMaskSolver.MAX_BOX_SIZE) {
+                    throw new IllegalArgumentException("Invalid value in row " + row + ", column " + count);
+                }
+                continue;
+            }
+            if (value != -1) {
+                count = store(line, count, value, row);
+                value = -1;
+            }
+            if (c == '.') {
+                count = store(line, count, 0, row);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Checks if a character is part of a value: a digit or a dot.
+     *
+     * @param c the character
+     * @return true for digits and dots
+     */
+    private static boolean isValueChar(byte c) {
+        return c >= '0' && c <= '9' || c == '.';
+    }
+
+    /**
+     * Stores a value read from a line.
+     *
+     * @param line  the values of the line
+     * @param count the number of values already stored
+     * @param value the value to store
+     * @param row   the index of the line
+     * @return the new number of values
+     */
+    private static int store(int[] line, int count, int value, int row) {
+        if (count == line.length) {
+            throw new IllegalArgumentException("Row " + row + " invalid: too many values.");
+        }
+        line[count] = value;
+        return count + 1;
+    }
+
+    /**
+     * Returns the box size of the board.
+     *
+     * @return the box size n
+     */
+    public int getBoxSize() {
+        return boxSize;
+    }
+
+    /**
+     * Returns the number of rows (and columns, boxes and values) of the board.
+     *
+     * @return n^2
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the value of a cell.
+     *
+     * @param row the row index of the cell
+     * @param col the column index of the cell
+     * @return the value of the cell, 0 if it is empty
+     */
+    public int getCellValue(int row, int col) {
+        assert row >= 0 && row < size : "Row index out of bounds.";
+        assert col >= 0 && col < size : "Column index out of bounds.";
+        return values[row * size + col];
+    }
+
+    /**
+     * Copies the values of all cells into a grid, in row-major order.
+     *
+     * @param grid the array receiving the n^4 values
+     */
+    public void copyValuesTo(int[] grid) {
+        System.arraycopy(values, 0, grid, 0, values.length);
+    }
+
+    /**
+     * Sets the value of a cell.
+     * Precondition: row and col are between 0 and n^2 - 1 inclusive
+     * Precondition: value is between 1 and n^2 inclusive
+     * Precondition: the cell at (row, col) is not fixed
+     *
+     * @param row   the row index of the cell
+     * @param col   the column index of the cell
+     * @param value the value to set in the cell
+     */
+    public void setCellValue(int row, int col, int value) {
+        assert row >= 0 && row < size : "Row index out of bounds.";
+        assert col >= 0 && col < size : "Column index out of bounds.";
+        assert value >= 1 && value <= size : "Value out of range.";
+        assert !fixed[row * size + col] : "Cannot change the value of a fixed cell.";
+        write(row * size + col, value);
+    }
+
+    /**
+     * Empties a cell.
+     * Precondition: the cell at (row, col) is not fixed
+     *
+     * @param row the row index of the cell
+     * @param col the column index of the cell
+     */
+    public void clearCellValue(int row, int col) {
+        assert row >= 0 && row < size : "Row index out of bounds.";
+        assert col >= 0 && col < size : "Column index out of bounds.";
+        assert !fixed[row * size + col] : "Cannot change the value of a fixed cell.";
+        write(row * size + col, 0);
+    }
+
+    /**
+     * Sets the value of a cell and marks it as fixed.
+     * Precondition: the cell at (row, col) is not already fixed
+     * Precondition: the value can be placed in the cell without violating Sudoku rules
+     *
+     * @param row   the row index of the cell
+     * @param col   the column index of the cell
+     * @param value the value to set in the cell
+     */
+    public void setFixedCellValue(int row, int col, int value) {
+        assert row >= 0 && row < size : "Row index out of bounds.";
+        assert col >= 0 && col < size : "Column index out of bounds.";
+        assert value >= 1 && value <= size : "Value out of range.";
+        assert !fixed[row * size + col] : "Cannot change the value of a fixed cell.";
+        assert isValidOption(row, col, value) : "Value already exists in the same row, column or box.";
+        write(row * size + col, value);
+        fixed[row * size + col] = true;
+    }
+
+    /**
+     * Checks if a cell is fixed.
+     *
+     * @param row the row index of the cell
+     * @param col the column index of the cell
+     * @return true if the cell is fixed, false otherwise
+     */
+    public boolean isCellFixed(int row, int col) {
+        assert row >= 0 && row < size : "Row index out of bounds.";
+        assert col >= 0 && col < size : "Column index out of bounds.";
+        return fixed[row * size + col];
+    }
+
+    /**
+     * Checks if a value can be placed in a cell: it is not already in its row,
+     * column or box.
+     *
+     * @param row   the row index of the cell
+     * @param col   the column index of the cell
+     * @param value the value to check
+     * @return true if the value can be placed in the cell, false otherwise
+     */
+    public boolean isValidOption(int row, int col, int value) {
+        assert row >= 0 && row < size : "Row index out of bounds.";
+        assert col >= 0 && col < size : "Column index out of bounds.";
+        assert value >= 1 && value <= size : "Value out of range.";
+        return unitCounts[row * (size + 1) + value] == 0
+            && unitCounts[(size + col) * (size + 1) + value] == 0
+            && unitCounts[(2 * size + box(row, col)) * (size + 1) + value] == 0;
+    }
+
+    /**
+     * Checks if a cell has a valid value: it is empty, or its value is not repeated
+     * in its row, column or box. Runs in constant time.
+     *
+     * @param row the row index of the cell
+     * @param col the column index of the cell
+     * @return true iff the cell is empty or its value does not conflict
+     */
+    public boolean validValueInCell(int row, int col) {
+        if (row < 0 || row >= size || col < 0 || col >= size) {
+            return false;
+        }
+        int value = values[row * size + col];
+        if (value == 0) {
+            return true;
+        }
+        return unitCounts[row * (size + 1) + value] == 1
+            && unitCounts[(size + col) * (size + 1) + value] == 1
+            && unitCounts[(2 * size + box(row, col)) * (size + 1) + value] == 1;
+    }
+
+    /**
+     * Checks if the board is completely and correctly filled. Runs in constant time.
+     *
+     * @return true if the board is solved, false otherwise
+     */
+    public boolean isSolved() {
+        return filledCount == values.length && duplicateCount == 0;
+    }
+
+    /**
+     * Attempts to solve the board. The board itself is not modified.
+     *
+     * @return a solved copy of the board, or null if it has no solution
+     */
+    public GeneralizedSudokuBoard solve() {
+        int[] grid = values.clone();
+        if (!new LongMaskSolver(boxSize).solve(grid)) {
+            return null;
+        }
+        GeneralizedSudokuBoard copy = new GeneralizedSudokuBoard(this);
+        for (int i = 0; i < grid.length; i++) {
+            copy.write(i, grid[i]);
+        }
+        return copy;
+    }
+
+    /**
+     * Counts the solutions of the board, stopping as soon as limit solutions are found.
+     * Precondition: limit is at least 1
+     *
+     * @param limit the maximum number of solutions to look for
+     * @return the number of solutions, or limit if there are limit or more
+     */
+    public int countSolutions(int limit) {
+        assert limit >= 1 : "The limit must be at least 1.";
+        return new LongMaskSolver(boxSize).countSolutions(values, limit);
+    }
+
+    /**
+     * Returns a string representation of the board, one line per row. Fixed cells
+     * are shown in brackets and empty cells as _, as in SudokuCell; values are
+     * padded to the width of the largest value.
+     *
+     * @return a string representation of the board
+     */
+    public String toString() {
+        int width = String.valueOf(size).length();
+        StringBuilder output = new StringBuilder(size * (size * (width + 3) + 1));
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int index = row * size + col;
+                String text = values[index] == 0 ? "_" : String.valueOf(values[index]);
+                output.append(fixed[index] ? '[' : ' ');
+                for (int pad = text.length(); pad < width; pad++) {
+                    output.append(' ');
+                }
+                output.append(text).append(fixed[index] ? "] " : "  ");
+            }
+            output.append('\n');
+        }
+        return output.toString();
+    }
+
+    /**
+     * Returns the box of a cell.
+     *
+     * @param row the row index of the cell
+     * @param col the column index of the cell
+     * @return the index of the box
+     */
+    private int box(int row, int col) {
+        return (row / boxSize) * boxSize + col / boxSize;
+    }
+
+    /**
+     * Changes the value of a cell, updating the unit counts, the filled count and
+     * the duplicate count.
+     *
+     * @param index the index of the cell in row-major order
+     * @param value the new value of the cell, 0 for an empty cell
+     */
+    private void write(int index, int value) {
+        int old = values[index];
+        if (old == value) {
+            return;
+        }
+        int row = index / size;
+        int col = index % size;
+        int rowSlot = row * (size + 1);
+        int colSlot = (size + col) * (size + 1);
+        int boxSlot = (2 * size + box(row, col)) * (size + 1);
+        if (old != 0) {
+            filledCount--;
+            //Each unit still holding the old value had a duplicate of it
+            duplicateCount -= (--unitCounts[rowSlot + old] > 0 ? 1 : 0)
+                + (--unitCounts[colSlot + old] > 0 ? 1 : 0)
+                + (--unitCounts[boxSlot + old] > 0 ? 1 : 0);
+        }
+        if (value != 0) {
+            filledCount++;
+            //Each unit that already held the new value now has a duplicate of it
+            duplicateCount += (++unitCounts[rowSlot + value] > 1 ? 1 : 0)
+                + (++unitCounts[colSlot + value] > 1 ? 1 : 0)
+                + (++unitCounts[boxSlot + value] > 1 ? 1 : 0);
+        }
+        values[index] = value;
+    }
+}
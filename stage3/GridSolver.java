@@ -0,0 +1,160 @@
+/**
+ * Base class for solve strategies that work on a flat array of cell values
+ * instead of the SudokuCell grid. Cell i of the array is the cell at row i / 9,
+ * column i % 9, and holds 0 for an empty cell or a value between 1 and 9.
+ */
+public abstract class GridSolver implements SudokuBoard.SolveStrategy {
+
+    /**
+     * Number of cells of a board (81)
+     */
+    public static final int CELLS = SudokuBoard.SIZE * SudokuBoard.SIZE;
+
+    /**
+     * Bit mask with one bit set for each value 1-9 (bit v-1 stands for value v)
+     */
+    public static final int ALL_VALUES = (1 << SudokuBoard.SIZE) - 1;
+
+    /**
+     * Row index of every cell
+     */
+    protected static final int[] ROW = new int[CELLS];
+
+    /**
+     * Column index of every cell
+     */
+    protected static final int[] COL = new int[CELLS];
+
+    /**
+     * 3x3 box index of every cell, boxes numbered 0-8 in row-major order
+     */
+    protected static final int[] BOX = new int[CELLS];
+
+    static {
+        for (int i = 0; i < CELLS; i++) {
+            ROW[i] = i / SudokuBoard.SIZE;
+            COL[i] = i % SudokuBoard.SIZE;
+            BOX[i] = (ROW[i] / 3) * 3 + COL[i] / 3;
+        }
+    }
+
+    /**
+     * Scratch grid used to move values between a SudokuBoard and the engine
+     */
+    private final int[] grid = new int[CELLS];
+
+    /**
+     * Metrics of the solve in progress, or null when none were asked for. Engines
+     * only read the clock when this is set.
+     */
+    protected SolveMetrics metrics;
+
+    /**
+     * Fills the empty cells of the board, leaving it untouched if there is no solution.
+     *
+     * @param board the board to solve in place
+     * @return true if the board was solved, false otherwise
+     */
+    public boolean solve(SudokuBoard board) {
+        if (!solve(valuesOf(board))) {
+            return false;
+        }
+        copyBack(board);
+        return true;
+    }
+
+    /**
+     * Fills the empty cells of the board, recording the time spent loading the
+     * board and the counters reported by recordMetrics.
+     * Precondition: metrics is not null
+     *
+     * @param board   the board to solve in place
+     * @param metrics the metrics receiving the counters of the engine
+     * @return true if the board was solved, false otherwise
+     */
+    public boolean solve(SudokuBoard board, SolveMetrics metrics) {
+        long start = System.nanoTime();
+        int[] values = valuesOf(board);
+        long loaded = System.nanoTime();
+        boolean solved;
+        this.metrics = metrics;
+        try {
+            solved = solve(values);
+        } finally {
+            this.metrics = null;
+        }
+        long searched = System.nanoTime();
+        if (solved) {
+            copyBack(board);
+        }
+        metrics.add(SolveMetrics.Statistic.LOAD_NANOS, loaded - start + System.nanoTime() - searched);
+        recordMetrics(metrics, searched - loaded);
+        return solved;
+    }
+
+    /**
+     * Reports the counters of the last solve. The default implementation records
+     * the time of solve(int[]) as search time; engines add what they count.
+     *
+     * @param metrics the metrics to update
+     * @param nanos   the time spent in solve(int[])
+     */
+    protected void recordMetrics(SolveMetrics metrics, long nanos) {
+        metrics.add(SolveMetrics.Statistic.SEARCH_NANOS, nanos);
+    }
+
+    /**
+     * Copies the solution in the scratch grid into the empty cells of a board.
+     *
+     * @param board the board to fill
+     */
+    private void copyBack(SudokuBoard board) {
+        for (int i = 0; i < CELLS; i++) {
+            if (board.getCellValue(ROW[i], COL[i]) == 0) {
+                board.setCellValue(ROW[i], COL[i], grid[i]);
+            }
+        }
+    }
+
+    /**
+     * Copies the values of a board into the scratch grid of this solver.
+     *
+     * @param board the board to read
+     * @return the scratch grid, valid until the next call on this solver
+     */
+    protected int[] valuesOf(SudokuBoard board) {
+        board.copyValuesTo(grid);
+        return grid;
+    }
+
+    /**
+     * Fills the empty (zero) cells of the grid. Cells that already hold a value
+     * are never changed. If there is no solution the contents of the grid are
+     * left as they were.
+     * Precondition: grid has 81 cells with values between 0 and 9 inclusive
+     *
+     * @param grid the cell values, in row-major order
+     * @return true if the grid was solved, false otherwise
+     */
+    public abstract boolean solve(int[] grid);
+
+    /**
+     * Returns the bit standing for a value.
+     *
+     * @param value a value between 1 and 9
+     * @return the mask with only the bit of the value set
+     */
+    protected static int bit(int value) {
+        return 1 << (value - 1);
+    }
+
+    /**
+     * Returns the value standing for a single-bit mask.
+     *
+     * @param bit a mask with exactly one of the nine value bits set
+     * @return the value between 1 and 9
+     */
+    protected static int valueOf(int bit) {
+        return Integer.numberOfTrailingZeros(bit) + 1;
+    }
+}
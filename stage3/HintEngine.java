@@ -0,0 +1,336 @@
+/**
+ * Finds the next value that follows logically from a partially filled board,
+ * and the technique that justifies it, without solving the board.
+ *
+ * The engine keeps the candidates of the board between requests. When the board
+ * has only gained values since the last request, which is the usual case during
+ * play, those values are placed into the kept candidates and every elimination
+ * made for earlier hints is reused, and keeps counting towards the technique of
+ * later hints; only when a value was changed or removed are the candidates
+ * computed again. Singles are looked for first; if there are none,
+ * the cheapest technique of the DifficultyGrader ladder that eliminates
+ * candidates is applied, and the search for a single starts again. When the
+ * techniques run out, asking again before the board changes answers at once.
+ *
+ * A request applies at most MAX_ELIMINATIONS techniques, so its cost is bounded
+ * however many eliminations the next single needs. When they are not enough,
+ * the request returns a hint naming the last technique applied instead of a
+ * value, and the next request continues from the candidates it left.
+ *
+ * An instance follows one board at a time; it is not thread-safe.
+ */
+public class HintEngine {
+
+    /**
+     * Number of cells of a board
+     */
+    private static final int CELLS = CandidateGrid.CELLS;
+
+    /**
+     * Number of elimination steps a request may apply before returning without a value
+     */
+    private static final int MAX_ELIMINATIONS = 1;
+
+    /**
+     * Provides the elimination techniques and the candidate grid they work on
+     */
+    private final DifficultyGrader grader = new DifficultyGrader();
+
+    /**
+     * The candidates of the board, kept between requests
+     */
+    private final CandidateGrid grid = grader.getGrid();
+
+    /**
+     * Values of the board the candidates were last brought up to date with
+     */
+    private final int[] known = new int[CELLS];
+
+    /**
+     * Values of the board being hinted
+     */
+    private final int[] current = new int[CELLS];
+
+    /**
+     * Whether known describes the grid, false before the first request
+     */
+    private boolean loaded;
+
+    /**
+     * Whether the last request found the board to contradict itself
+     */
+    private boolean contradiction;
+
+    /**
+     * Whether the board changed since the last request
+     */
+    private boolean changed;
+
+    /**
+     * Whether the last request ran out of techniques; asking again before the
+     * board changes then answers at once
+     */
+    private boolean stuck;
+
+    /**
+     * The hardest elimination applied to the kept candidates since they were last
+     * loaded, or null; later singles may rely on it
+     */
+    private DifficultyGrader.Technique hardest;
+
+    /**
+     * Returns the next value that follows logically from the board, or the next
+     * elimination step towards it. The board is not modified.
+     * Precondition: board is not null
+     *
+     * @param board the board being played
+     * @return the hint, which places no value if MAX_ELIMINATIONS steps found no
+     * single, or null if the board is full, contradicts itself or needs guessing
+     */
+    public Hint hint(SudokuBoard board) {
+        assert board != null : "The board cannot be null";
+        board.copyValuesTo(current);
+        contradiction = !update();
+        if (contradiction || stuck && !changed) {
+            return null;
+        }
+        stuck = false;
+        DifficultyGrader.Technique technique = null;
+        for (int steps = 0; grid.getEmptyCount() > 0; steps++) {
+            Hint hint = findSingle();
+            if (hint != null || grid.hasContradiction()) {
+                contradiction = grid.hasContradiction();
+                return hint;
+            }
+            if (steps == MAX_ELIMINATIONS) {
+                //The eliminations made so far stay in the kept candidates for the next request
+                return new Hint(technique);
+            }
+            technique = grader.eliminate();
+            if (technique == null) {
+                stuck = true;
+                return null;
+            }
+            if (hardest == null || technique.compareTo(hardest) > 0) {
+                hardest = technique;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether the last request found that the values on the board cannot
+     * all be right: two of them conflict, or logic leaves some cell or value of a
+     * unit without a place.
+     *
+     * @return true if the board has a mistake
+     */
+    public boolean foundContradiction() {
+        return contradiction;
+    }
+
+    /**
+     * Brings the candidates up to date with the current values, placing new values
+     * into the kept candidates when possible and reloading them otherwise.
+     *
+     * @return false if the board contradicts itself
+     */
+    private boolean update() {
+        boolean reload = !loaded || grid.hasContradiction();
+        changed = reload;
+        for (int cell = 0; cell < CELLS && !reload; cell++) {
+            if (current[cell] == known[cell]) {
+                continue;
+            }
+            changed = true;
+            //A removed or changed value may have allowed eliminations that no longer hold
+            reload = known[cell] != 0 || (grid.getCandidates(cell) & GridSolver.bit(current[cell])) == 0
+                || !grid.place(cell, current[cell]);
+        }
+        System.arraycopy(current, 0, known, 0, CELLS);
+        loaded = true;
+        if (reload) {
+            hardest = null;
+            return grid.load(current);
+        }
+        return true;
+    }
+
+    /**
+     * Looks for a naked single, then for a hidden single.
+     *
+     * @return the single found, or null if there is none
+     */
+    private Hint findSingle() {
+        for (int cell = 0; cell < CELLS; cell++) {
+            int mask = grid.getCandidates(cell);
+            if (grid.getValue(cell) == 0 && Integer.bitCount(mask) == 1) {
+                return new Hint(cell, GridSolver.valueOf(mask), DifficultyGrader.Technique.NAKED_SINGLE, hardest);
+            }
+        }
+        for (int[] unit : CandidateGrid.UNITS) {
+            int placed = 0;
+            int seenOnce = 0;
+            int seenTwice = 0;
+            for (int cell : unit) {
+                int mask = grid.getCandidates(cell);
+                seenTwice |= seenOnce & mask;
+                seenOnce |= mask;
+                if (grid.getValue(cell) != 0) {
+                    placed |= GridSolver.bit(grid.getValue(cell));
+                }
+            }
+            if ((seenOnce | placed) != GridSolver.ALL_VALUES) {
+                //Some value has no place left in this unit
+                grid.markContradiction();
+                return null;
+            }
+            int singles = seenOnce & ~seenTwice;
+            if (singles == 0) {
+                continue;
+            }
+            int bit = singles & -singles;
+            for (int cell : unit) {
+                if ((grid.getCandidates(cell) & bit) != 0) {
+                    return new Hint(cell, GridSolver.valueOf(bit), DifficultyGrader.Technique.HIDDEN_SINGLE, hardest);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A value to place in a cell, with the techniques that justify it, or an
+     * elimination step to apply before asking again
+     */
+    public static class Hint {
+
+        /**
+         * The index of the cell in row-major order, -1 for an elimination step
+         */
+        private final int cell;
+
+        /**
+         * The value to place
+         */
+        private final int value;
+
+        /**
+         * The single that places the value, null for an elimination step
+         */
+        private final DifficultyGrader.Technique single;
+
+        /**
+         * The hardest elimination applied to the candidates the single was found in, or
+         * null; for an elimination step, the technique it applied
+         */
+        private final DifficultyGrader.Technique elimination;
+
+        /**
+         * Constructor of the Hint class.
+         *
+         * @param cell        the index of the cell in row-major order
+         * @param value       the value to place
+         * @param single      NAKED_SINGLE or HIDDEN_SINGLE
+         * @param elimination the hardest elimination applied, or null
+         */
+        private Hint(int cell, int value, DifficultyGrader.Technique single, DifficultyGrader.Technique elimination) {
+            this.cell = cell;
+            this.value = value;
+            this.single = single;
+            this.elimination = elimination;
+        }
+
+        /**
+         * Constructor of the Hint class for an elimination step that places no value.
+         * Precondition: elimination is not null
+         *
+         * @param elimination the technique the step applied
+         */
+        private Hint(DifficultyGrader.Technique elimination) {
+            this(-1, 0, null, elimination);
+            assert elimination != null : "The elimination cannot be null";
+        }
+
+        /**
+         * Returns whether the hint places a value; if not, it only reports the
+         * eliminations made and the next request continues from them.
+         *
+         * @return true if the hint has a cell and a value
+         */
+        public boolean isPlacement() {
+            return single != null;
+        }
+
+        /**
+         * Returns the row of the cell.
+         * Precondition: the hint is a placement
+         *
+         * @return the row index, between 0 and 8
+         */
+        public int getRow() {
+            assert isPlacement() : "An elimination step has no cell.";
+            return cell / SudokuBoard.SIZE;
+        }
+
+        /**
+         * Returns the column of the cell.
+         * Precondition: the hint is a placement
+         *
+         * @return the column index, between 0 and 8
+         */
+        public int getCol() {
+            assert isPlacement() : "An elimination step has no cell.";
+            return cell % SudokuBoard.SIZE;
+        }
+
+        /**
+         * Returns the value to place.
+         * Precondition: the hint is a placement
+         *
+         * @return the value, between 1 and 9
+         */
+        public int getValue() {
+            assert isPlacement() : "An elimination step has no value.";
+            return value;
+        }
+
+        /**
+         * Returns the hardest technique the hint relies on: the hardest elimination
+         * applied to the candidates since they were loaded if there was one, the
+         * single itself otherwise. For an elimination step, the technique it applied.
+         *
+         * @return the technique
+         */
+        public DifficultyGrader.Technique getTechnique() {
+            return elimination == null ? single : elimination;
+        }
+
+        /**
+         * Returns the single that places the value.
+         *
+         * @return NAKED_SINGLE or HIDDEN_SINGLE, or null for an elimination step
+         */
+        public DifficultyGrader.Technique getSingle() {
+            return single;
+        }
+
+        /**
+         * Returns a description of the hint, with 0-based row and column as typed in the game.
+         *
+         * @return the description
+         */
+        public String toString() {
+            if (!isPlacement()) {
+                return "Look for " + elimination.name().toLowerCase().replace('_', ' ')
+                    + " to remove candidates, then ask again";
+            }
+            String text = "Put " + value + " at row " + getRow() + ", column " + getCol() + " ("
+                + single.name().toLowerCase().replace('_', ' ');
+            if (elimination != null) {
+                text += ", after " + elimination.name().toLowerCase().replace('_', ' ');
+            }
+            return text + ")";
+        }
+    }
+}
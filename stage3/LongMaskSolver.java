@@ -0,0 +1,741 @@
+/**
+ * Backtracking solver for boards of any box size n, with n^2 rows, columns and
+ * boxes of n^2 cells. The candidates of every cell are kept as a long bitmask,
+ * so boards of up to 64x64 cells (box size 8) are supported.
+ *
+ * The candidates are updated incrementally as values are placed, and every
+ * change is recorded on a trail so a branch is undone without copying the grid.
+ * After every placement the candidates are propagated until nothing changes:
+ * naked and hidden singles are placed; the empty cells of every changed unit
+ * are matched to distinct values, and candidates outside every such matching
+ * are removed, which covers naked and hidden subsets of any size; and
+ * candidates confined to the crossing of a box and a row or column are removed
+ * from the rest of the other unit. A cell or a value of a unit left without a
+ * place ends the branch. The search then branches on the empty cell with the
+ * fewest candidates, breaking ties and ordering values at random.
+ *
+ * Search times of one puzzle vary widely with the early choices, so the search
+ * restarts with other random choices after a budget of nodes that follows the
+ * Luby sequence (256, 256, 512, 256, 256, 512, 1024, ...). The budgets grow
+ * without bound, so every search completes, and a puzzle without solution costs
+ * at most a small factor more than a single search.
+ *
+ * Limit: shuffled 25x25 puzzles with about 55 percent of empty cells are the
+ * hardest. Of 40 such puzzles most took under 200 ms, a few one to four
+ * seconds and the worst six seconds; with 60 to 65 percent empty the worst took
+ * a third of a second. Fewer or more empty cells, and 16x16 boards, take
+ * milliseconds. Larger boards and harder puzzles are not bounded.
+ *
+ * An instance solves one grid at a time; use one solver per thread.
+ */
+public class LongMaskSolver {
+
+    /**
+     * Largest supported box size; values 1 to 64 fit in a long mask
+     */
+    public static final int MAX_BOX_SIZE = 8;
+
+    /**
+     * Unit of the node budgets of the restarts, the first term of the Luby sequence
+     */
+    private static final long FIRST_BUDGET = 256;
+
+    /**
+     * Seed of the generator breaking ties, the same for every call
+     */
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+
+    /**
+     * The box size n
+     */
+    private final int boxSize;
+
+    /**
+     * Number of rows, columns, boxes and values (n^2)
+     */
+    private final int side;
+
+    /**
+     * Number of cells (n^4)
+     */
+    private final int cells;
+
+    /**
+     * Mask with one bit per value
+     */
+    private final long allValues;
+
+    /**
+     * The three units of every cell: its row, column and box, numbered as in units
+     */
+    private final int[][] unitsOf;
+
+    /**
+     * Cells of every unit: rows, then columns, then boxes
+     */
+    private final int[][] units;
+
+    /**
+     * The values of the grid being searched, 0 for an empty cell
+     */
+    private final int[] values;
+
+    /**
+     * The values that can still go in every empty cell, 0 for a filled cell
+     */
+    private final long[] candidates;
+
+    /**
+     * Changes made since the search started, undone on backtracking: the cell, or
+     * ~cell for a placed value, and the candidates it had before the change
+     */
+    private final int[] trailCells;
+    private final long[] trailCandidates;
+    private int trailSize;
+
+    /**
+     * Cells left with a single candidate, waiting to be placed
+     */
+    private final int[] singles;
+    private int singlesHead;
+    private int singlesTail;
+
+    /**
+     * Units whose candidates changed since they were last checked for hidden singles
+     */
+    private final int[] dirtyUnits;
+    private final boolean[] dirty;
+    private int dirtyCount;
+
+    /**
+     * Units whose candidates changed since their values were last matched to their cells
+     */
+    private final int[] unmatchedUnits;
+    private final boolean[] unmatched;
+    private int unmatchedCount;
+
+    /**
+     * The unit being matched, which its own eliminations do not queue again, or -1
+     */
+    private int matching = -1;
+
+    /**
+     * Empty cells of the unit being matched and their candidates, by slot
+     */
+    private final int[] slotCells;
+    private final long[] slotMasks;
+
+    /**
+     * The matching of the unit being matched: the slot of every value and the value of every slot
+     */
+    private final int[] slotOfValue;
+    private final int[] valueOfSlot;
+
+    /**
+     * Slots whose value every slot can take over, as a mask, in matchUnit()
+     */
+    private final long[] reaches;
+
+    /**
+     * Values already tried by the current augmenting search, as a mask
+     */
+    private long visited;
+
+    /**
+     * Candidates of the segments where the rows or the columns cross the boxes, used by intersect()
+     */
+    private final long[] segments;
+
+    /**
+     * The first solution found
+     */
+    private final int[] solution;
+
+    /**
+     * Stop the search once this many solutions have been found
+     */
+    private int limit;
+
+    /**
+     * Number of solutions found so far
+     */
+    private int solutions;
+
+    /**
+     * Number of search nodes visited by the last call, over all its restarts
+     */
+    private long nodes;
+
+    /**
+     * Number of nodes after which the current attempt gives up and restarts
+     */
+    private long budget;
+
+    /**
+     * Whether the current attempt ran out of nodes
+     */
+    private boolean aborted;
+
+    /**
+     * State of the generator breaking ties between branches
+     */
+    private long random;
+
+    /**
+     * Constructor of the LongMaskSolver class.
+     * Precondition: boxSize is between 1 and MAX_BOX_SIZE inclusive
+     *
+     * @param boxSize the box size n of the boards to solve
+     */
+    public LongMaskSolver(int boxSize) {
+        assert boxSize >= 1 && boxSize <= MAX_BOX_SIZE : "Box size out of range.";
+        this.boxSize = boxSize;
+        side = boxSize * boxSize;
+        cells = side * side;
+        allValues = side == 64 ? -1L : (1L << side) - 1;
+        unitsOf = new int[cells][3];
+        units = new int[3 * side][side];
+        int[] filled = new int[3 * side];
+        for (int cell = 0; cell < cells; cell++) {
+            int row = cell / side;
+            int col = cell % side;
+            int box = (row / boxSize) * boxSize + col / boxSize;
+            unitsOf[cell][0] = row;
+            unitsOf[cell][1] = side + col;
+            unitsOf[cell][2] = 2 * side + box;
+            for (int unit : unitsOf[cell]) {
+                units[unit][filled[unit]++] = cell;
+            }
+        }
+        values = new int[cells];
+        candidates = new long[cells];
+        //Along a branch every candidate is removed at most once and every cell filled once
+        trailCells = new int[cells * (side + 1)];
+        trailCandidates = new long[trailCells.length];
+        singles = new int[cells];
+        dirtyUnits = new int[3 * side];
+        dirty = new boolean[3 * side];
+        unmatchedUnits = new int[3 * side];
+        unmatched = new boolean[3 * side];
+        slotCells = new int[side];
+        slotMasks = new long[side];
+        slotOfValue = new int[side];
+        valueOfSlot = new int[side];
+        reaches = new long[side];
+        segments = new long[side * boxSize];
+        solution = new int[cells];
+    }
+
+    /**
+     * Returns the box size of the boards this solver handles.
+     *
+     * @return the box size n
+     */
+    public int getBoxSize() {
+        return boxSize;
+    }
+
+    /**
+     * Returns the number of search nodes visited by the last call to solve or
+     * countSolutions, including those of the attempts that were restarted.
+     *
+     * @return the node count
+     */
+    public long getNodeCount() {
+        return nodes;
+    }
+
+    /**
+     * Fills the empty cells of the grid.
+     * Precondition: grid has n^4 values between 0 and n^2 inclusive, in row-major order
+     *
+     * @param grid the cell values, 0 for an empty cell
+     * @return true if the grid was solved, false if it has no solution
+     */
+    public boolean solve(int[] grid) {
+        if (countSolutions(grid, 1) == 0) {
+            return false;
+        }
+        System.arraycopy(solution, 0, grid, 0, cells);
+        return true;
+    }
+
+    /**
+     * Counts the solutions of the grid, stopping as soon as limit solutions are found.
+     * The grid is not modified.
+     * Precondition: grid has n^4 values between 0 and n^2 inclusive, in row-major order
+     * Precondition: limit is at least 1
+     *
+     * @param grid  the cell values, 0 for an empty cell
+     * @param limit the maximum number of solutions to look for
+     * @return the number of solutions, or limit if there are limit or more
+     */
+    public int countSolutions(int[] grid, int limit) {
+        assert grid != null && grid.length == cells : "The grid must have n^4 cells.";
+        assert limit >= 1 : "The limit must be at least 1.";
+        this.limit = limit;
+        solutions = 0;
+        nodes = 0;
+        random = SEED;
+        //Solutions are only counted by the attempt that completes, which searches every branch
+        for (int attempt = 1; ; attempt++) {
+            solutions = 0;
+            budget = nodes + FIRST_BUDGET * luby(attempt);
+            aborted = false;
+            if (load(grid) && propagate()) {
+                search();
+            }
+            if (!aborted) {
+                return solutions;
+            }
+        }
+    }
+
+    /**
+     * Copies the grid, places its values and sets the candidates of the empty cells.
+     *
+     * @param grid the cell values
+     * @return false if two given values conflict, true otherwise
+     */
+    private boolean load(int[] grid) {
+        trailSize = 0;
+        clearPending();
+        for (int cell = 0; cell < cells; cell++) {
+            values[cell] = 0;
+            candidates[cell] = allValues;
+        }
+        for (int cell = 0; cell < cells; cell++) {
+            assert grid[cell] >= 0 && grid[cell] <= side : "Value out of range.";
+            if (grid[cell] != 0 && !place(cell, 1L << (grid[cell] - 1))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Puts a value in a cell and removes it from the candidates of the cells
+     * sharing a unit with it.
+     *
+     * @param cell the index of the cell
+     * @param b    the value, as a mask
+     * @return false if the value is not a candidate of the cell or leaves another cell without one
+     */
+    private boolean place(int cell, long b) {
+        long mask = candidates[cell];
+        if ((mask & b) == 0) {
+            return false;
+        }
+        record(~cell, mask);
+        candidates[cell] = 0;
+        values[cell] = Long.numberOfTrailingZeros(b) + 1;
+        for (int unit : unitsOf[cell]) {
+            markDirty(unit);
+            for (int peer : units[unit]) {
+                if (!eliminate(peer, b)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes a candidate from a cell, queueing the cell if one candidate is left.
+     *
+     * @param cell the index of the cell
+     * @param b    the value, as a mask
+     * @return false if the cell is left without candidates
+     */
+    private boolean eliminate(int cell, long b) {
+        long mask = candidates[cell];
+        if ((mask & b) == 0) {
+            return true;
+        }
+        record(cell, mask);
+        mask ^= b;
+        candidates[cell] = mask;
+        for (int unit : unitsOf[cell]) {
+            markDirty(unit);
+        }
+        if (mask == 0) {
+            return false;
+        }
+        if ((mask & (mask - 1)) == 0) {
+            singles[singlesTail++] = cell;
+        }
+        return true;
+    }
+
+    /**
+     * Places naked singles and hidden singles, then matches the values of the
+     * changed units to their cells, then looks for intersections, until nothing
+     * changes. Each step runs only once the cheaper ones before it find nothing.
+     *
+     * @return false if some cell or some value of a unit is left without a place
+     */
+    private boolean propagate() {
+        while (true) {
+            if (singlesHead < singlesTail) {
+                int cell = singles[singlesHead++];
+                if (values[cell] == 0 && !place(cell, candidates[cell])) {
+                    return false;
+                }
+            } else if (dirtyCount > 0) {
+                int unit = dirtyUnits[--dirtyCount];
+                dirty[unit] = false;
+                if (!placeHiddenSingles(unit)) {
+                    return false;
+                }
+            } else if (unmatchedCount > 0) {
+                int unit = unmatchedUnits[--unmatchedCount];
+                matching = unit;
+                boolean matched = matchUnit(unit);
+                matching = -1;
+                unmatched[unit] = false;
+                if (!matched) {
+                    return false;
+                }
+            } else {
+                int before = trailSize;
+                if (!intersect()) {
+                    return false;
+                }
+                if (trailSize == before) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Places the values that have a single cell left in a unit.
+     *
+     * @param unit the index of the unit
+     * @return false if some value of the unit is left without a place
+     */
+    private boolean placeHiddenSingles(int unit) {
+        long once = 0;
+        long twice = 0;
+        long placed = 0;
+        for (int cell : units[unit]) {
+            long mask = candidates[cell];
+            twice |= once & mask;
+            once |= mask;
+            if (values[cell] != 0) {
+                placed |= 1L << (values[cell] - 1);
+            }
+        }
+        if ((once | placed) != allValues) {
+            return false;
+        }
+        for (long hidden = once & ~twice; hidden != 0; hidden &= hidden - 1) {
+            long b = hidden & -hidden;
+            int cell = 0;
+            while (cell < side && (candidates[units[unit][cell]] & b) == 0) {
+                cell++;
+            }
+            //An earlier hidden single of the unit may have taken the only cell of this one
+            if (cell == side || !place(units[unit][cell], b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Matches every empty cell of a unit to a distinct candidate value, then
+     * removes the candidates that belong to no such matching: a cell can take
+     * value v only if the cell matched to v can move to another value along a
+     * chain of cells that ends at this cell. This finds naked and hidden subsets
+     * of every size at once.
+     *
+     * @param unit the index of the unit
+     * @return false if the empty cells cannot all get distinct values
+     */
+    private boolean matchUnit(int unit) {
+        int count = 0;
+        for (int cell : units[unit]) {
+            if (values[cell] == 0) {
+                slotCells[count] = cell;
+                slotMasks[count++] = candidates[cell];
+            }
+        }
+        for (int v = 0; v < side; v++) {
+            slotOfValue[v] = -1;
+        }
+        for (int slot = 0; slot < count; slot++) {
+            visited = 0;
+            if (!augment(slot)) {
+                return false;
+            }
+        }
+        //A slot reaches those whose value it can take, then by transitive closure
+        for (int slot = 0; slot < count; slot++) {
+            long reach = 0;
+            for (long other = slotMasks[slot] & ~(1L << valueOfSlot[slot]); other != 0; other &= other - 1) {
+                reach |= 1L << slotOfValue[Long.numberOfTrailingZeros(other)];
+            }
+            reaches[slot] = reach;
+        }
+        for (int k = 0; k < count; k++) {
+            for (int slot = 0; slot < count; slot++) {
+                if ((reaches[slot] >>> k & 1) != 0) {
+                    reaches[slot] |= reaches[k];
+                }
+            }
+        }
+        for (int slot = 0; slot < count; slot++) {
+            long remove = 0;
+            for (long other = slotMasks[slot] & ~(1L << valueOfSlot[slot]); other != 0; other &= other - 1) {
+                int v = Long.numberOfTrailingZeros(other);
+                if ((reaches[slotOfValue[v]] >>> slot & 1) == 0) {
+                    remove |= 1L << v;
+                }
+            }
+            if (remove != 0 && !eliminateAll(slotCells[slot], remove)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Looks for an augmenting path from a slot, giving it a value and moving the
+     * slots along the path to other values.
+     *
+     * @param slot the slot to match
+     * @return true if the slot was matched
+     */
+    private boolean augment(int slot) {
+        for (long free = slotMasks[slot] & ~visited; free != 0; free &= free - 1) {
+            long b = free & -free;
+            visited |= b;
+            int v = Long.numberOfTrailingZeros(b);
+            int other = slotOfValue[v];
+            if (other < 0 || augment(other)) {
+                slotOfValue[v] = slot;
+                valueOfSlot[slot] = v;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes the candidates confined by a box to one of its rows or columns from
+     * the rest of that row or column, and those confined by a row or column to one
+     * box from the rest of the box. The candidates of the segments where rows and
+     * columns cross boxes are gathered first; eliminations made during the pass
+     * leave them larger than the candidates, which only means fewer eliminations.
+     *
+     * @return false if some cell is left without candidates
+     */
+    private boolean intersect() {
+        for (int byColumn = 0; byColumn < 2; byColumn++) {
+            //segments[line * boxSize + k]: candidates of the k-th box-wide segment of a row or column
+            for (int line = 0; line < side; line++) {
+                for (int k = 0; k < boxSize; k++) {
+                    long union = 0;
+                    for (int j = k * boxSize; j < (k + 1) * boxSize; j++) {
+                        union |= candidates[cellAt(byColumn, line, j)];
+                    }
+                    segments[line * boxSize + k] = union;
+                }
+            }
+            for (int line = 0; line < side; line++) {
+                int first = line - line % boxSize;
+                for (int k = 0; k < boxSize; k++) {
+                    long segment = segments[line * boxSize + k];
+                    long restOfBox = 0;
+                    long restOfLine = 0;
+                    for (int i = 0; i < boxSize; i++) {
+                        restOfBox |= first + i == line ? 0 : segments[(first + i) * boxSize + k];
+                        restOfLine |= i == k ? 0 : segments[line * boxSize + i];
+                    }
+                    long pointing = segment & ~restOfBox & restOfLine;
+                    long claiming = segment & ~restOfLine & restOfBox;
+                    for (int j = 0; j < side && pointing != 0; j++) {
+                        if (j / boxSize != k && !eliminateAll(cellAt(byColumn, line, j), pointing)) {
+                            return false;
+                        }
+                    }
+                    for (int i = 0; i < boxSize && claiming != 0; i++) {
+                        for (int j = k * boxSize; j < (k + 1) * boxSize && first + i != line; j++) {
+                            if (!eliminateAll(cellAt(byColumn, first + i, j), claiming)) {
+                                return false;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the cell at a position of a row or column.
+     *
+     * @param byColumn 1 if line is a column, 0 if it is a row
+     * @param line     the index of the row or column
+     * @param position the position of the cell along it
+     * @return the index of the cell
+     */
+    private int cellAt(int byColumn, int line, int position) {
+        return byColumn == 0 ? line * side + position : position * side + line;
+    }
+
+    /**
+     * Removes several candidates from a cell.
+     *
+     * @param cell  the index of the cell
+     * @param masks the values, as a mask
+     * @return false if the cell is left without candidates
+     */
+    private boolean eliminateAll(int cell, long masks) {
+        for (long left = candidates[cell] & masks; left != 0; left &= left - 1) {
+            if (!eliminate(cell, left & -left)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Fills the empty cells, recording solutions until limit are found.
+     * Precondition: the candidates are propagated
+     */
+    private void search() {
+        if (++nodes > budget) {
+            aborted = true;
+            return;
+        }
+        int bestCell = -1;
+        int bestCount = Integer.MAX_VALUE;
+        int ties = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            if (values[cell] != 0) {
+                continue;
+            }
+            int count = Long.bitCount(candidates[cell]);
+            if (count < bestCount) {
+                bestCount = count;
+                ties = 0;
+            }
+            //Every cell tying for the fewest candidates is equally likely to be chosen
+            if (count == bestCount && nextRandom(++ties) == 0) {
+                bestCell = cell;
+            }
+        }
+        if (bestCell == -1) {
+            if (solutions++ == 0) {
+                System.arraycopy(values, 0, solution, 0, cells);
+            }
+            return;
+        }
+        long bestMask = candidates[bestCell];
+        //Values are tried in turn, starting from a random one
+        int start = nextRandom(side);
+        bestMask = Long.rotateRight(bestMask, start);
+        while (bestMask != 0 && solutions < limit && !aborted) {
+            long b = Long.rotateLeft(bestMask & -bestMask, start);
+            bestMask &= bestMask - 1;
+            int mark = trailSize;
+            clearPending();
+            if (place(bestCell, b) && propagate()) {
+                search();
+            }
+            undo(mark);
+        }
+    }
+
+    /**
+     * Returns a term of the Luby sequence 1, 1, 2, 1, 1, 2, 4, 1, 1, 2, 1, 1, 2, 4, 8, ...
+     * Precondition: i is at least 1
+     *
+     * @param i the position of the term, from 1
+     * @return the term
+     */
+    private static long luby(int i) {
+        int k = 1;
+        while ((1L << k) - 1 < i) {
+            k++;
+        }
+        if ((1L << k) - 1 == i) {
+            return 1L << (k - 1);
+        }
+        //The sequence up to 2^(k-1) - 1 repeats before the term 2^(k-1)
+        return luby(i - (1 << (k - 1)) + 1);
+    }
+
+    /**
+     * Returns a pseudo-random number from the xorshift generator of the solver.
+     *
+     * @param bound the number of possible results, at least 1
+     * @return a number between 0 inclusive and bound exclusive
+     */
+    private int nextRandom(int bound) {
+        random ^= random << 13;
+        random ^= random >>> 7;
+        random ^= random << 17;
+        return (int) ((random >>> 33) % bound);
+    }
+
+    /**
+     * Records the candidates of a cell before changing them.
+     *
+     * @param entry      the cell, or ~cell if a value is placed in it
+     * @param candidates the candidates before the change
+     */
+    private void record(int entry, long candidates) {
+        trailCells[trailSize] = entry;
+        trailCandidates[trailSize++] = candidates;
+    }
+
+    /**
+     * Undoes the changes recorded after a point of the trail.
+     *
+     * @param mark the size of the trail to go back to
+     */
+    private void undo(int mark) {
+        while (trailSize > mark) {
+            int entry = trailCells[--trailSize];
+            if (entry < 0) {
+                entry = ~entry;
+                values[entry] = 0;
+            }
+            candidates[entry] = trailCandidates[trailSize];
+        }
+    }
+
+    /**
+     * Marks a unit to be checked for hidden singles and matched again.
+     *
+     * @param unit the index of the unit
+     */
+    private void markDirty(int unit) {
+        if (!dirty[unit]) {
+            dirty[unit] = true;
+            dirtyUnits[dirtyCount++] = unit;
+        }
+        //Eliminations of a matching are already consistent with it
+        if (!unmatched[unit] && unit != matching) {
+            unmatched[unit] = true;
+            unmatchedUnits[unmatchedCount++] = unit;
+        }
+    }
+
+    /**
+     * Forgets the singles and changed units left by a propagation that failed.
+     */
+    private void clearPending() {
+        singlesHead = 0;
+        singlesTail = 0;
+        while (dirtyCount > 0) {
+            dirty[dirtyUnits[--dirtyCount]] = false;
+        }
+        while (unmatchedCount > 0) {
+            unmatched[unmatchedUnits[--unmatchedCount]] = false;
+        }
+    }
+}
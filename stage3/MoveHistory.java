@@ -0,0 +1,243 @@
+/**
+ * Undo and redo for the moves made on a board. Every move is stored as one int
+ * holding the cell, its previous value and its new value, so undoing or redoing
+ * a move rewrites a single cell in constant time, whatever the number of moves.
+ *
+ * Moves are kept in a circular buffer that grows as needed up to a capacity;
+ * past it the oldest moves are forgotten, so the memory used by a session stays
+ * bounded. Making a new move discards the moves that were undone.
+ */
+public class MoveHistory {
+
+    /**
+     * Default maximum number of moves remembered (256 KB of history)
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    /**
+     * Initial length of the buffer
+     */
+    private static final int INITIAL_LENGTH = 64;
+
+    /**
+     * Bits of a move holding the cell index, the previous value and the new value
+     */
+    private static final int CELL_BITS = 7;
+    private static final int VALUE_BITS = 4;
+    private static final int CELL_MASK = (1 << CELL_BITS) - 1;
+    private static final int VALUE_MASK = (1 << VALUE_BITS) - 1;
+
+    /**
+     * The board the moves are made on
+     */
+    private final SudokuBoard board;
+
+    /**
+     * Maximum number of moves remembered
+     */
+    private final int capacity;
+
+    /**
+     * The moves, in a circular buffer whose length is a power of two
+     */
+    private int[] moves = new int[INITIAL_LENGTH];
+
+    /**
+     * Position in the buffer of the oldest move remembered
+     */
+    private int first;
+
+    /**
+     * Number of moves that can be undone
+     */
+    private int done;
+
+    /**
+     * Number of moves remembered, done or undone
+     */
+    private int stored;
+
+    /**
+     * Constructor of the MoveHistory class, remembering up to DEFAULT_CAPACITY moves.
+     * Precondition: board is not null
+     *
+     * @param board the board the moves are made on
+     */
+    public MoveHistory(SudokuBoard board) {
+        this(board, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor of the MoveHistory class.
+     * Precondition: board is not null
+     * Precondition: capacity is at least 1
+     *
+     * @param board    the board the moves are made on
+     * @param capacity the maximum number of moves remembered
+     */
+    public MoveHistory(SudokuBoard board, int capacity) {
+        assert board != null : "The board cannot be null";
+        assert capacity >= 1 : "The capacity must be at least 1.";
+        this.board = board;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Sets the value of a cell, remembering the move. Setting a cell to the value
+     * it already holds is not a move.
+     * Precondition: row and col are between 0 and 8 inclusive
+     * Precondition: value is between 1 and 9 inclusive
+     * Precondition: the cell at (row, col) is not fixed
+     *
+     * @param row   the row index of the cell
+     * @param col   the column index of the cell
+     * @param value the value to set in the cell
+     */
+    public void setCellValue(int row, int col, int value) {
+        int old = board.getCellValue(row, col);
+        board.setCellValue(row, col, value);
+        record(row * SudokuBoard.SIZE + col, old, value);
+    }
+
+    /**
+     * Empties a cell, remembering the move. Emptying an empty cell is not a move.
+     * Precondition: row and col are between 0 and 8 inclusive
+     * Precondition: the cell at (row, col) is not fixed
+     *
+     * @param row the row index of the cell
+     * @param col the column index of the cell
+     */
+    public void clearCellValue(int row, int col) {
+        int old = board.getCellValue(row, col);
+        board.clearCellValue(row, col);
+        record(row * SudokuBoard.SIZE + col, old, 0);
+    }
+
+    /**
+     * Takes back the last move that was not undone.
+     *
+     * @return true if a move was undone, false if there was none
+     */
+    public boolean undo() {
+        if (done == 0) {
+            return false;
+        }
+        done--;
+        int move = moves[(first + done) & (moves.length - 1)];
+        apply(move & CELL_MASK, move >>> CELL_BITS & VALUE_MASK);
+        return true;
+    }
+
+    /**
+     * Makes again the last move undone.
+     *
+     * @return true if a move was redone, false if there was none
+     */
+    public boolean redo() {
+        if (done == stored) {
+            return false;
+        }
+        int move = moves[(first + done) & (moves.length - 1)];
+        done++;
+        apply(move & CELL_MASK, move >>> (CELL_BITS + VALUE_BITS) & VALUE_MASK);
+        return true;
+    }
+
+    /**
+     * Checks if there is a move to undo.
+     *
+     * @return true if undo() would take back a move
+     */
+    public boolean canUndo() {
+        return done > 0;
+    }
+
+    /**
+     * Checks if there is a move to redo.
+     *
+     * @return true if redo() would make a move again
+     */
+    public boolean canRedo() {
+        return done < stored;
+    }
+
+    /**
+     * Returns the number of moves that can be undone.
+     *
+     * @return the number of moves done and remembered
+     */
+    public int getUndoCount() {
+        return done;
+    }
+
+    /**
+     * Returns the number of moves that can be redone.
+     *
+     * @return the number of moves undone and not discarded
+     */
+    public int getRedoCount() {
+        return stored - done;
+    }
+
+    /**
+     * Forgets every move, keeping the board as it is.
+     */
+    public void clear() {
+        first = 0;
+        done = 0;
+        stored = 0;
+    }
+
+    /**
+     * Remembers a move, discarding the moves undone and, at capacity, the oldest move.
+     *
+     * @param cell     the index of the cell in row-major order
+     * @param oldValue the value of the cell before the move
+     * @param newValue the value of the cell after the move
+     */
+    private void record(int cell, int oldValue, int newValue) {
+        if (oldValue == newValue) {
+            return;
+        }
+        stored = done;
+        if (stored == capacity) {
+            first = (first + 1) & (moves.length - 1);
+            stored--;
+            done--;
+        } else if (stored == moves.length) {
+            grow();
+        }
+        moves[(first + stored) & (moves.length - 1)] =
+            cell | oldValue << CELL_BITS | newValue << (CELL_BITS + VALUE_BITS);
+        stored++;
+        done++;
+    }
+
+    /**
+     * Doubles the length of the buffer, moving the oldest move to the start.
+     */
+    private void grow() {
+        int[] larger = new int[moves.length * 2];
+        for (int i = 0; i < stored; i++) {
+            larger[i] = moves[(first + i) & (moves.length - 1)];
+        }
+        moves = larger;
+        first = 0;
+    }
+
+    /**
+     * Puts a value in a cell of the board.
+     *
+     * @param cell  the index of the cell in row-major order
+     * @param value the value, 0 to empty the cell
+     */
+    private void apply(int cell, int value) {
+        int row = cell / SudokuBoard.SIZE;
+        int col = cell % SudokuBoard.SIZE;
+        if (value == 0) {
+            board.clearCellValue(row, col);
+        } else {
+            board.setCellValue(row, col, value);
+        }
+    }
+}
@@ -0,0 +1,332 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+/**
+ * Solves a stream of puzzles on several threads, with the same input and output
+ * format as BatchSolver. Puzzles are read in chunks; each chunk is split
+ * recursively into tasks on a ForkJoinPool, so idle threads steal work from busy
+ * ones. Every pool thread keeps its own engine and scratch grid, so no state is
+ * shared or allocated while solving. The next chunk is read while the current
+ * one is being solved, and results are written in input order.
+ *
+ * The solver owns its pool; close it when done.
+ */
+public class ParallelBatchSolver implements AutoCloseable {
+
+    /**
+     * Number of puzzles read and solved together
+     */
+    private static final int CHUNK_SIZE = 8192;
+
+    /**
+     * Number of puzzles below which a task solves its range instead of splitting it
+     */
+    private static final int LEAF_SIZE = 32;
+
+    /**
+     * Result code of a well-formed puzzle not solved yet
+     */
+    private static final byte PENDING = -1;
+
+    /**
+     * Number of cells of a puzzle
+     */
+    private static final int CELLS = GridSolver.CELLS;
+
+    /**
+     * The pool running the solving tasks
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Engine and scratch grid of every pool thread
+     */
+    private final ThreadLocal<Worker> workers;
+
+    /**
+     * Buffer for writing the output
+     */
+    private final byte[] output = new byte[1 << 16];
+
+    /**
+     * Number of bytes of output waiting to be written
+     */
+    private int outputLength;
+
+    /**
+     * Counters of the puzzles processed so far
+     */
+    private long solved;
+    private long unsolvable;
+    private long invalid;
+
+    /**
+     * Constructor of the ParallelBatchSolver class, using one thread per available
+     * processor and constraint propagation followed by search.
+     */
+    public ParallelBatchSolver() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor of the ParallelBatchSolver class, using constraint propagation followed by search.
+     * Precondition: parallelism is at least 1
+     *
+     * @param parallelism the number of solving threads
+     */
+    public ParallelBatchSolver(int parallelism) {
+        this(parallelism, PropagatingSolver::new);
+    }
+
+    /**
+     * Constructor of the ParallelBatchSolver class.
+     * Precondition: parallelism is at least 1 and engines is not null
+     *
+     * @param parallelism the number of solving threads
+     * @param engines     creates the engine of each solving thread
+     */
+    public ParallelBatchSolver(int parallelism, Supplier<? extends GridSolver> engines) {
+        assert parallelism >= 1 : "The parallelism must be at least 1.";
+        assert engines != null : "The engine supplier cannot be null";
+        pool = new ForkJoinPool(parallelism);
+        workers = ThreadLocal.withInitial(() -> new Worker(engines.get()));
+    }
+
+    /**
+     * Reads puzzles until the end of the input, writing one result line per puzzle
+     * in input order. The streams are not closed; the output is flushed at the end.
+     *
+     * @param in  the stream of puzzles
+     * @param out the stream receiving the results
+     * @throws IOException if reading or writing fails
+     */
+    public void solveAll(InputStream in, OutputStream out) throws IOException {
+        PuzzleLineReader reader = new PuzzleLineReader(in);
+        Chunk current = new Chunk();
+        Chunk next = new Chunk();
+        current.fill(reader);
+        while (current.count > 0) {
+            ForkJoinTask<Void> solving = pool.submit(new SolveRange(current, 0, current.count));
+            next.fill(reader);
+            solving.join();
+            write(current, out);
+            Chunk done = current;
+            current = next;
+            next = done;
+        }
+        flush(out);
+        out.flush();
+    }
+
+    /**
+     * Writes the results of a solved chunk.
+     *
+     * @param chunk the chunk to write
+     * @param out   the stream receiving the results
+     * @throws IOException if writing fails
+     */
+    private void write(Chunk chunk, OutputStream out) throws IOException {
+        for (int i = 0; i < chunk.count; i++) {
+            if (output.length - outputLength < BatchSolver.MAX_RESULT_LENGTH) {
+                flush(out);
+            }
+            byte result = chunk.results[i];
+            if (result == BatchSolver.SOLVED) {
+                solved++;
+            } else if (result == BatchSolver.UNSOLVABLE) {
+                unsolvable++;
+            } else {
+                invalid++;
+            }
+            outputLength = BatchSolver.appendResult(output, outputLength, chunk.cells, i * CELLS, result);
+        }
+    }
+
+    /**
+     * Writes the output buffer to the stream.
+     *
+     * @param out the stream receiving the results
+     * @throws IOException if writing fails
+     */
+    private void flush(OutputStream out) throws IOException {
+        out.write(output, 0, outputLength);
+        outputLength = 0;
+    }
+
+    /**
+     * Returns the number of puzzles solved so far.
+     *
+     * @return the number of solved puzzles
+     */
+    public long getSolvedCount() {
+        return solved;
+    }
+
+    /**
+     * Returns the number of puzzles found to have no solution so far.
+     *
+     * @return the number of unsolvable puzzles
+     */
+    public long getUnsolvableCount() {
+        return unsolvable;
+    }
+
+    /**
+     * Returns the number of malformed lines found so far.
+     *
+     * @return the number of invalid lines
+     */
+    public long getInvalidCount() {
+        return invalid;
+    }
+
+    /**
+     * Shuts down the pool of solving threads.
+     */
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * A group of puzzles read together, packed 81 values per puzzle.
+     */
+    private static class Chunk {
+
+        /**
+         * Values of the puzzles, replaced by their solutions once solved
+         */
+        private final byte[] cells = new byte[CHUNK_SIZE * CELLS];
+
+        /**
+         * Result code of every puzzle
+         */
+        private final byte[] results = new byte[CHUNK_SIZE];
+
+        /**
+         * Number of puzzles in the chunk
+         */
+        private int count;
+
+        /**
+         * Reads up to CHUNK_SIZE puzzles.
+         *
+         * @param reader the source of puzzles
+         * @throws IOException if reading fails
+         */
+        private void fill(PuzzleLineReader reader) throws IOException {
+            count = 0;
+            int kind;
+            while (count < CHUNK_SIZE && (kind = reader.readPuzzle(cells, count * CELLS)) != PuzzleLineReader.END) {
+                results[count++] = kind == PuzzleLineReader.INVALID ? BatchSolver.INVALID : PENDING;
+            }
+        }
+    }
+
+    /**
+     * Engine and scratch grid owned by one pool thread.
+     */
+    private static class Worker {
+
+        /**
+         * The engine of the thread
+         */
+        private final GridSolver engine;
+
+        /**
+         * Scratch grid of the thread
+         */
+        private final int[] grid = new int[CELLS];
+
+        /**
+         * Constructor of the Worker class.
+         *
+         * @param engine the engine of the thread
+         */
+        private Worker(GridSolver engine) {
+            this.engine = engine;
+        }
+
+        /**
+         * Solves one puzzle of a chunk in place.
+         *
+         * @param chunk the chunk holding the puzzle
+         * @param index the position of the puzzle in the chunk
+         */
+        private void solve(Chunk chunk, int index) {
+            int offset = index * CELLS;
+            for (int i = 0; i < CELLS; i++) {
+                grid[i] = chunk.cells[offset + i];
+            }
+            if (engine.solve(grid)) {
+                for (int i = 0; i < CELLS; i++) {
+                    chunk.cells[offset + i] = (byte) grid[i];
+                }
+                chunk.results[index] = BatchSolver.SOLVED;
+            } else {
+                chunk.results[index] = BatchSolver.UNSOLVABLE;
+            }
+        }
+    }
+
+    /**
+     * Task solving a range of the puzzles of a chunk.
+     */
+    private class SolveRange extends RecursiveAction {
+
+        /**
+         * Version of the serialized form, which is never used
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The chunk holding the puzzles
+         */
+        private final Chunk chunk;
+
+        /**
+         * First puzzle of the range, inclusive
+         */
+        private final int start;
+
+        /**
+         * Last puzzle of the range, exclusive
+         */
+        private final int end;
+
+        /**
+         * Constructor of the SolveRange class.
+         *
+         * @param chunk the chunk holding the puzzles
+         * @param start first puzzle of the range, inclusive
+         * @param end   last puzzle of the range, exclusive
+         */
+        private SolveRange(Chunk chunk, int start, int end) {
+            this.chunk = chunk;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Solves the range, splitting it in halves while it is large.
+         */
+        protected void compute() {
+            if (end - start <= LEAF_SIZE) {
+                Worker worker = workers.get();
+                for (int i = start; i < end; i++) {
+                    if (chunk.results[i] == PENDING) {
+                        worker.solve(chunk, i);
+                    }
+                }
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new SolveRange(chunk, start, middle), new SolveRange(chunk, middle, end));
+        }
+    }
+}
@@ -0,0 +1,327 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Solve strategy that splits the backtracking search of a single puzzle into
+ * independent subtasks run on a fork-join pool. Cells are filled in the same
+ * row-major order as SudokuBoard.depthFirstSearch; each of the first splitDepth
+ * levels of the search tree becomes one task per candidate value, and deeper
+ * levels are searched sequentially inside each task.
+ *
+ * Every task knows its position in the sequential search order. When a task
+ * finds a solution, all tasks after it are cancelled, while the ones before it
+ * keep running in case they find an earlier solution. The result is therefore
+ * the same board the sequential search would return, even for puzzles with
+ * several solutions.
+ *
+ * An instance solves one puzzle at a time.
+ */
+public class ParallelSearchSolver extends GridSolver {
+
+    /**
+     * Number of nodes a sequential search visits between checks for cancellation
+     */
+    private static final int CANCEL_CHECK_INTERVAL = 1024;
+
+    /**
+     * Largest supported split depth; each level takes 4 bits of a task key
+     */
+    public static final int MAX_SPLIT_DEPTH = 15;
+
+    /**
+     * Key meaning that no solution has been found
+     */
+    private static final long NO_SOLUTION = Long.MAX_VALUE;
+
+    /**
+     * The pool running the subtasks
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Number of search levels split into separate subtasks
+     */
+    private final int splitDepth;
+
+    /**
+     * Puzzles with fewer empty cells than this are solved sequentially
+     */
+    private final int parallelThreshold;
+
+    /**
+     * Engine used for puzzles below the threshold
+     */
+    private final BitmaskSolver sequential = new BitmaskSolver();
+
+    /**
+     * Indexes of the empty cells of the puzzle being solved, in row-major order
+     */
+    private final int[] empties = new int[CELLS];
+
+    /**
+     * Number of entries of empties in use
+     */
+    private int emptyCount;
+
+    /**
+     * Key of the earliest solution found so far
+     */
+    private volatile long bestKey;
+
+    /**
+     * The earliest solution found so far
+     */
+    private final int[] solution = new int[CELLS];
+
+    /**
+     * Constructor of the ParallelSearchSolver class, using the common pool, splitting
+     * the first 3 levels, and running puzzles with fewer than 30 empty cells sequentially.
+     */
+    public ParallelSearchSolver() {
+        this(ForkJoinPool.commonPool(), 3, 30);
+    }
+
+    /**
+     * Constructor of the ParallelSearchSolver class.
+     * Precondition: pool is not null
+     * Precondition: splitDepth is between 1 and MAX_SPLIT_DEPTH inclusive
+     *
+     * @param pool              the pool running the subtasks
+     * @param splitDepth        the number of search levels split into separate subtasks
+     * @param parallelThreshold puzzles with fewer empty cells than this are solved sequentially
+     */
+    public ParallelSearchSolver(ForkJoinPool pool, int splitDepth, int parallelThreshold) {
+        assert pool != null : "The pool cannot be null";
+        assert splitDepth >= 1 && splitDepth <= MAX_SPLIT_DEPTH : "Split depth out of range.";
+        this.pool = pool;
+        this.splitDepth = splitDepth;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Returns the number of search levels split into separate subtasks.
+     *
+     * @return the split depth
+     */
+    public int getSplitDepth() {
+        return splitDepth;
+    }
+
+    /**
+     * Returns the number of empty cells below which puzzles are solved sequentially.
+     *
+     * @return the parallel threshold
+     */
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Fills the empty cells of the grid.
+     * Precondition: grid has 81 cells with values between 0 and 9 inclusive
+     *
+     * @param grid the cell values, in row-major order
+     * @return true if the grid was solved, false otherwise
+     */
+    public boolean solve(int[] grid) {
+        assert grid != null && grid.length == CELLS : "The grid must have 81 cells.";
+        Branch root = new Branch(grid);
+        if (!root.load()) {
+            return false;
+        }
+        if (emptyCount < parallelThreshold) {
+            return sequential.solve(grid);
+        }
+        bestKey = NO_SOLUTION;
+        pool.invoke(root);
+        if (bestKey == NO_SOLUTION) {
+            return false;
+        }
+        System.arraycopy(solution, 0, grid, 0, CELLS);
+        return true;
+    }
+
+    /**
+     * Keeps a solution if it comes before every solution found so far.
+     *
+     * @param grid the solved grid
+     * @param key  the position of the task that found it
+     */
+    private synchronized void offer(int[] grid, long key) {
+        if (key < bestKey) {
+            System.arraycopy(grid, 0, solution, 0, CELLS);
+            bestKey = key;
+        }
+    }
+
+    /**
+     * Task searching one branch of the search tree. Its key orders it among all
+     * tasks in the order the sequential search would visit them.
+     */
+    private class Branch extends RecursiveAction {
+
+        /**
+         * Version of the serialized form, which is never used
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The grid of the branch, owned by this task
+         */
+        private final int[] grid;
+
+        /**
+         * Values used in each row, column and box
+         */
+        private final int[] rowMask;
+        private final int[] colMask;
+        private final int[] boxMask;
+
+        /**
+         * Position in empties of the next cell to fill
+         */
+        private final int depth;
+
+        /**
+         * Number of levels split above this task
+         */
+        private final int level;
+
+        /**
+         * Position of the task in sequential search order
+         */
+        private final long key;
+
+        /**
+         * Nodes visited since the last cancellation check
+         */
+        private int sinceCheck;
+
+        /**
+         * Constructor of the root task.
+         *
+         * @param grid the grid to solve; it is not modified
+         */
+        private Branch(int[] grid) {
+            this.grid = grid.clone();
+            rowMask = new int[SudokuBoard.SIZE];
+            colMask = new int[SudokuBoard.SIZE];
+            boxMask = new int[SudokuBoard.SIZE];
+            depth = 0;
+            level = 0;
+            key = 0;
+        }
+
+        /**
+         * Constructor of a child task, placing one value in the parent's next cell.
+         *
+         * @param parent the task being split
+         * @param b      the bit of the value to place
+         * @param digit  the position of the value among the parent's candidates, from 1
+         */
+        private Branch(Branch parent, int b, int digit) {
+            grid = parent.grid.clone();
+            rowMask = parent.rowMask.clone();
+            colMask = parent.colMask.clone();
+            boxMask = parent.boxMask.clone();
+            int cell = empties[parent.depth];
+            rowMask[ROW[cell]] |= b;
+            colMask[COL[cell]] |= b;
+            boxMask[BOX[cell]] |= b;
+            grid[cell] = valueOf(b);
+            depth = parent.depth + 1;
+            level = parent.level + 1;
+            key = parent.key | (long) digit << (4 * (splitDepth - level));
+        }
+
+        /**
+         * Initializes the masks of the root task and the list of empty cells.
+         *
+         * @return false if two given values conflict, true otherwise
+         */
+        private boolean load() {
+            emptyCount = 0;
+            for (int i = 0; i < CELLS; i++) {
+                if (grid[i] == 0) {
+                    empties[emptyCount++] = i;
+                    continue;
+                }
+                int b = bit(grid[i]);
+                if (((rowMask[ROW[i]] | colMask[COL[i]] | boxMask[BOX[i]]) & b) != 0) {
+                    return false;
+                }
+                rowMask[ROW[i]] |= b;
+                colMask[COL[i]] |= b;
+                boxMask[BOX[i]] |= b;
+            }
+            return true;
+        }
+
+        /**
+         * Splits the branch into one subtask per candidate, or searches it sequentially
+         * once splitDepth levels have been split.
+         */
+        protected void compute() {
+            if (key > bestKey) {
+                return;
+            }
+            if (depth == emptyCount) {
+                offer(grid, key);
+                return;
+            }
+            if (level == splitDepth) {
+                search(depth);
+                return;
+            }
+            int cell = empties[depth];
+            int candidates = ~(rowMask[ROW[cell]] | colMask[COL[cell]] | boxMask[BOX[cell]]) & ALL_VALUES;
+            Branch[] children = new Branch[Integer.bitCount(candidates)];
+            for (int i = 0; i < children.length; i++) {
+                int b = candidates & -candidates;
+                candidates ^= b;
+                children[i] = new Branch(this, b, i + 1);
+            }
+            invokeAll(children);
+        }
+
+        /**
+         * Fills the empty cells from position depth onwards, in the same way as BitmaskSolver.
+         *
+         * @param depth the position in empties of the next cell to fill
+         * @return true if the search should stop, because a solution was found or the task was cancelled
+         */
+        private boolean search(int depth) {
+            if (depth == emptyCount) {
+                offer(grid, key);
+                return true;
+            }
+            if (++sinceCheck == CANCEL_CHECK_INTERVAL) {
+                sinceCheck = 0;
+                if (key > bestKey) {
+                    return true;
+                }
+            }
+            int cell = empties[depth];
+            int row = ROW[cell];
+            int col = COL[cell];
+            int box = BOX[cell];
+            int candidates = ~(rowMask[row] | colMask[col] | boxMask[box]) & ALL_VALUES;
+            while (candidates != 0) {
+                int b = candidates & -candidates;
+                candidates ^= b;
+                rowMask[row] |= b;
+                colMask[col] |= b;
+                boxMask[box] |= b;
+                grid[cell] = valueOf(b);
+                if (search(depth + 1)) {
+                    return true;
+                }
+                rowMask[row] ^= b;
+                colMask[col] ^= b;
+                boxMask[box] ^= b;
+            }
+            grid[cell] = 0;
+            return false;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Solve strategy that first fills every cell that follows logically from the
+ * givens, using a ConstraintPropagator, and only runs a backtracking search on
+ * the cells that remain empty afterwards.
+ */
+public class PropagatingSolver extends GridSolver {
+
+    /**
+     * Applies the logical techniques before searching
+     */
+    private final ConstraintPropagator propagator = new ConstraintPropagator();
+
+    /**
+     * Candidate state the propagator works on
+     */
+    private final CandidateGrid candidates = new CandidateGrid();
+
+    /**
+     * Search used on the cells propagation could not fill
+     */
+    private final BitmaskSolver search = new BitmaskSolver(BitmaskSolver.CellOrder.MINIMUM_REMAINING_VALUES);
+
+    /**
+     * Values after propagation, handed to the search
+     */
+    private final int[] remaining = new int[CELLS];
+
+    /**
+     * Whether the last solve needed the backtracking search
+     */
+    private boolean searched;
+
+    /**
+     * Time spent propagating during the last solve, measured only when metrics are wanted
+     */
+    private long propagationNanos;
+
+    /**
+     * Fills the empty cells of the grid.
+     * Precondition: grid has 81 cells with values between 0 and 9 inclusive
+     *
+     * @param grid the cell values, in row-major order
+     * @return true if the grid was solved, false otherwise
+     */
+    public boolean solve(int[] grid) {
+        assert grid != null && grid.length == CELLS : "The grid must have 81 cells.";
+        propagator.resetCounts();
+        propagator.setTimed(metrics != null);
+        searched = false;
+        long start = metrics == null ? 0 : System.nanoTime();
+        boolean consistent = candidates.load(grid) && propagator.propagate(candidates);
+        if (metrics != null) {
+            propagationNanos = System.nanoTime() - start;
+        }
+        if (!consistent) {
+            return false;
+        }
+        candidates.copyValuesTo(remaining);
+        if (candidates.getEmptyCount() > 0) {
+            searched = true;
+            if (!search.solve(remaining)) {
+                return false;
+            }
+        }
+        System.arraycopy(remaining, 0, grid, 0, CELLS);
+        return true;
+    }
+
+    /**
+     * Reports the propagation rounds, technique counts and timings, and the
+     * counters of the fallback search.
+     *
+     * @param metrics the metrics to update
+     * @param nanos   the time spent in solve(int[])
+     */
+    protected void recordMetrics(SolveMetrics metrics, long nanos) {
+        metrics.add(SolveMetrics.Statistic.PROPAGATION_NANOS, propagationNanos);
+        metrics.add(SolveMetrics.Statistic.SEARCH_NANOS, nanos - propagationNanos);
+        metrics.addPropagation(propagator);
+        if (searched) {
+            metrics.add(SolveMetrics.Statistic.NODES, search.getNodeCount());
+            metrics.add(SolveMetrics.Statistic.BACKTRACKS, search.getBacktrackCount());
+            metrics.max(SolveMetrics.Statistic.MAX_DEPTH, search.getMaxDepth());
+        }
+    }
+
+    /**
+     * Returns the propagator, whose counters tell which techniques fired during the last solve.
+     *
+     * @return the propagator used by this engine
+     */
+    public ConstraintPropagator getPropagator() {
+        return propagator;
+    }
+
+    /**
+     * Returns whether the last solve had to fall back to the backtracking search.
+     *
+     * @return true if propagation alone did not fill the board
+     */
+    public boolean usedSearch() {
+        return searched;
+    }
+
+    /**
+     * Returns the number of search nodes visited by the last solve, 0 if it was
+     * solved by propagation alone.
+     *
+     * @return the node count of the fallback search
+     */
+    public long getSearchNodeCount() {
+        return searched ? search.getNodeCount() : 0;
+    }
+}
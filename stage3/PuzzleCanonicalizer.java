@@ -0,0 +1,531 @@
+import java.util.Arrays;
+
+/**
+ * Computes the canonical form of a puzzle under the symmetries of Sudoku:
+ * relabeling the values, permuting the rows inside each band and the columns
+ * inside each stack, permuting the bands and the stacks, and transposing. Two
+ * puzzles have the same canonical form exactly when one is obtained from the
+ * other by these transformations.
+ *
+ * The canonical form is the minimal one in lexicographic order of its 81 cells
+ * in row-major order, an empty cell counting as 0. For a given placement of the
+ * rows and columns the smallest relabeling numbers the values in order of first
+ * appearance, so only the 2 x 6^8 placements are searched. The result is built
+ * one row at a time, keeping only the partial placements that tie for the
+ * smallest rows so far. The column order is left open while the rows placed are
+ * empty, and then taken from a table of the best orders for each pattern of filled
+ * cells of the first row holding values; placements that differ by swapping
+ * identical rows, columns, bands or stacks are followed only once.
+ *
+ * An instance reuses its work arrays between calls; it is not thread-safe.
+ */
+public class PuzzleCanonicalizer {
+
+    /**
+     * Number of cells of a board
+     */
+    private static final int CELLS = GridSolver.CELLS;
+
+    /**
+     * Number of rows, columns and values
+     */
+    private static final int SIZE = SudokuBoard.SIZE;
+
+    /**
+     * The permutations of three elements, in lexicographic order
+     */
+    private static final int[][] PERMUTATIONS = {
+        {0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}
+    };
+
+    /**
+     * The pairs of positions inside a group of three: (0, 1), (0, 2) and (1, 2)
+     */
+    private static final int[] PAIR_FIRST = {0, 0, 1};
+    private static final int[] PAIR_SECOND = {1, 2, 2};
+
+    /**
+     * Number of column orders: an order of the stacks and an order inside each stack
+     */
+    private static final int ORDERS = 6 * 6 * 6 * 6;
+
+    /**
+     * Original column shown at each position, for every column order: COLUMNS[order * 9 + position]
+     */
+    private static final byte[] COLUMNS = new byte[ORDERS * SIZE];
+
+    /**
+     * Position of each original column, for every column order: POSITIONS[order * 9 + column]
+     */
+    private static final byte[] POSITIONS = new byte[ORDERS * SIZE];
+
+    /**
+     * For every pattern of filled cells of a row, bit 8 - c set for a filled
+     * column c, the column orders that make the pattern smallest. They are those
+     * of entry pattern, from BEST_ORDER_START[pattern] to BEST_ORDER_START[pattern + 1].
+     */
+    private static final short[] BEST_ORDERS;
+    private static final int[] BEST_ORDER_START = new int[(1 << SIZE) + 1];
+
+    /**
+     * For every pattern of filled cells of a row, the smallest pattern a column order makes of it
+     */
+    private static final short[] SMALLEST_PATTERN = new short[1 << SIZE];
+
+    /**
+     * For every pattern, the row it shows when its values are numbered from 1 in
+     * order, packed four bits per cell, first cell highest
+     */
+    private static final long[] PATTERN_ROW = new long[1 << SIZE];
+
+    /**
+     * Column order of a placement whose rows are all empty so far, so any order will do
+     */
+    private static final int UNORDERED = 2047;
+
+    /**
+     * The rows of each band, one bit per row
+     */
+    private static final int[] BAND_ROWS = {7, 7 << 3, 7 << 6};
+
+    static {
+        for (int order = 0; order < ORDERS; order++) {
+            int[] stacks = PERMUTATIONS[order / 216];
+            for (int position = 0; position < SIZE; position++) {
+                int[] inside = PERMUTATIONS[order / pow6(2 - position / 3) % 6];
+                int column = 3 * stacks[position / 3] + inside[position % 3];
+                COLUMNS[order * SIZE + position] = (byte) column;
+                POSITIONS[order * SIZE + column] = (byte) position;
+            }
+        }
+        short[] best = new short[ORDERS * 8];
+        int length = 0;
+        for (int pattern = 0; pattern < 1 << SIZE; pattern++) {
+            int smallest = Integer.MAX_VALUE;
+            int start = length;
+            for (int order = 0; order < ORDERS; order++) {
+                int shown = 0;
+                for (int position = 0; position < SIZE; position++) {
+                    shown = shown << 1 | pattern >>> (8 - COLUMNS[order * SIZE + position]) & 1;
+                }
+                if (shown < smallest) {
+                    smallest = shown;
+                    length = start;
+                }
+                if (shown == smallest) {
+                    if (length == best.length) {
+                        best = Arrays.copyOf(best, best.length * 2);
+                    }
+                    best[length++] = (short) order;
+                }
+            }
+            BEST_ORDER_START[pattern] = start;
+            SMALLEST_PATTERN[pattern] = (short) smallest;
+            int label = 0;
+            for (int position = 0; position < SIZE; position++) {
+                boolean filled = (pattern >>> (8 - position) & 1) != 0;
+                PATTERN_ROW[pattern] = PATTERN_ROW[pattern] << 4 | (filled ? ++label : 0);
+            }
+        }
+        BEST_ORDER_START[1 << SIZE] = length;
+        BEST_ORDERS = Arrays.copyOf(best, length);
+    }
+
+    /**
+     * The puzzle and its transpose
+     */
+    private final byte[][] grids = new byte[2][CELLS];
+
+    /**
+     * For each grid, the pairs of equal columns of a stack and of equal stacks,
+     * and likewise of rows and bands, as returned by findEqualPairs()
+     */
+    private final int[] sameColumns = new int[2];
+    private final int[] sameRows = new int[2];
+
+    /**
+     * Filled cells of every row of each grid, bit 8 - c set for a filled column c,
+     * or -1 for a row where a value is repeated
+     */
+    private final int[][] patterns = new int[2][SIZE];
+
+    /**
+     * Partial placements tying for the smallest rows so far. A state holds the
+     * grid in bit 0, the column order or UNORDERED in bits 1-11, the rows used in
+     * bits 12-20 and the last row from bit 21; its labels hold the label of value
+     * v in bits 4v to 4v + 3, 0 if v has none yet, and the number of labels given
+     * from bit 40.
+     */
+    private int[] states = new int[1024];
+    private long[] labels = new long[1024];
+    private int count;
+
+    /**
+     * Placements extending the current ones by one row, swapped with them after every row
+     */
+    private int[] nextStates = new int[1024];
+    private long[] nextLabels = new long[1024];
+    private int nextCount;
+
+    /**
+     * The smallest row found for the row being placed, packed four bits per cell, first cell highest
+     */
+    private long best;
+
+    /**
+     * Computes the canonical form of a puzzle.
+     * Precondition: grid has 81 values between 0 and 9 inclusive, in row-major order
+     * Precondition: canonical has room for 81 values
+     *
+     * @param grid      the values of the puzzle, 0 for an empty cell
+     * @param canonical the array receiving the canonical form; may be grid itself
+     */
+    public void canonicalize(int[] grid, int[] canonical) {
+        assert grid != null && grid.length == CELLS : "The grid must have 81 cells.";
+        assert canonical != null && canonical.length >= CELLS : "The canonical form needs 81 cells.";
+        for (int i = 0; i < CELLS; i++) {
+            assert grid[i] >= 0 && grid[i] <= 9 : "Value out of range.";
+            grids[0][i] = (byte) grid[i];
+            grids[1][i % SIZE * SIZE + i / SIZE] = (byte) grid[i];
+        }
+        int transposes = Arrays.equals(grids[0], grids[1]) ? 1 : 2;
+        for (int t = 0; t < transposes; t++) {
+            sameRows[t] = findEqualPairs(grids[t], 1, SIZE);
+            sameColumns[t] = findEqualPairs(grids[t], SIZE, 1);
+        }
+
+        for (int t = 0; t < transposes; t++) {
+            for (int row = 0; row < SIZE; row++) {
+                int pattern = 0;
+                int seen = 0;
+                for (int col = 0; col < SIZE; col++) {
+                    int value = grids[t][row * SIZE + col];
+                    if (value != 0) {
+                        pattern = (seen >>> value & 1) != 0 || pattern < 0 ? -1 : pattern | 1 << (8 - col);
+                        seen |= 1 << value;
+                    }
+                }
+                patterns[t][row] = pattern;
+            }
+            states[t] = t | UNORDERED << 1;
+            labels[t] = 0;
+        }
+        count = transposes;
+
+        for (int placed = 0; placed < SIZE; placed++) {
+            nextCount = 0;
+            best = Long.MAX_VALUE;
+            if ((states[0] >>> 1 & 2047) == UNORDERED) {
+                //Every row so far is empty: start from the smallest row a column order can make,
+                //so that only the rows reaching it are tried with every order
+                for (int k = 0; k < count; k++) {
+                    int t = states[k] & 1;
+                    for (int rows = allowedRows(states[k], placed); rows != 0; rows &= rows - 1) {
+                        int pattern = patterns[t][Integer.numberOfTrailingZeros(rows)];
+                        if (pattern >= 0) {
+                            best = Math.min(best, PATTERN_ROW[SMALLEST_PATTERN[pattern]]);
+                        }
+                    }
+                }
+            }
+            for (int k = 0; k < count; k++) {
+                int state = states[k];
+                int t = state & 1;
+                int order = state >>> 1 & 2047;
+                int used = state >>> 12 & 511;
+                for (int rows = allowedRows(state, placed); rows != 0; rows &= rows - 1) {
+                    int row = Integer.numberOfTrailingZeros(rows);
+                    if (order == UNORDERED) {
+                        extendUnordered(t, used, row);
+                    } else {
+                        extend(t, order, used, row, labels[k]);
+                    }
+                }
+            }
+            swap();
+            store(canonical, placed);
+        }
+    }
+
+    /**
+     * Returns the rows that can extend a placement: the rest of the band of the
+     * last row, or at the start of a band the rows of the bands not used yet.
+     * Rows and bands equal to an earlier free one are left out.
+     *
+     * @param state  the packed placement
+     * @param placed the number of rows placed
+     * @return the rows, one bit per row
+     */
+    private int allowedRows(int state, int placed) {
+        int same = sameRows[state & 1];
+        int used = state >>> 12 & 511;
+        int free = 511 & ~used;
+        int rows = 0;
+        if (placed % 3 != 0) {
+            rows = BAND_ROWS[(state >>> 21) / 3] & free;
+        } else {
+            int freeBands = 0;
+            for (int band = 0; band < 3; band++) {
+                freeBands |= (BAND_ROWS[band] & used) == 0 ? 1 << band : 0;
+            }
+            for (int band = 0; band < 3; band++) {
+                if ((freeBands >>> band & 1) != 0 && !followsUnusedTwin(same >>> SIZE, band, freeBands)) {
+                    rows |= BAND_ROWS[band];
+                }
+            }
+        }
+        if (same != 0) {
+            for (int candidates = rows; candidates != 0; candidates &= candidates - 1) {
+                int row = Integer.numberOfTrailingZeros(candidates);
+                if (followsUnusedTwin(same, row, free)) {
+                    rows &= ~(1 << row);
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Computes the canonical form of a board. Every value of the board is taken as a given.
+     * Precondition: board is not null
+     *
+     * @param board the board
+     * @return a new board holding the canonical form, its values fixed
+     */
+    public SudokuBoard canonicalize(SudokuBoard board) {
+        assert board != null : "The board cannot be null";
+        int[] grid = new int[CELLS];
+        board.copyValuesTo(grid);
+        canonicalize(grid, grid);
+        return new SudokuBoard(grid);
+    }
+
+    /**
+     * Extends a placement whose rows are all empty so far by a row. A row holding
+     * no value twice is smallest when the pattern of its filled cells is, so only
+     * the column orders making the pattern smallest are tried, and none if even
+     * that row is larger than the smallest found. Empty rows leave the order open.
+     *
+     * @param t    the grid, 0 for the puzzle and 1 for its transpose
+     * @param used the rows used before, one bit per row
+     * @param row  the row to show
+     */
+    private void extendUnordered(int t, int used, int row) {
+        int pattern = patterns[t][row];
+        int same = sameColumns[t];
+        if (pattern < 0) {
+            for (int order = 0; order < ORDERS; order++) {
+                if (ordered(same, order)) {
+                    extend(t, order, used, row, 0L);
+                }
+            }
+            return;
+        }
+        if (pattern == 0) {
+            if (best != 0) {
+                best = 0;
+                nextCount = 0;
+            }
+            add(t | UNORDERED << 1 | (used | 1 << row) << 12 | row << 21, 0L);
+            return;
+        }
+        if (PATTERN_ROW[SMALLEST_PATTERN[pattern]] > best) {
+            return;
+        }
+        for (int i = BEST_ORDER_START[pattern]; i < BEST_ORDER_START[pattern + 1]; i++) {
+            if (ordered(same, BEST_ORDERS[i])) {
+                extend(t, BEST_ORDERS[i], used, row, 0L);
+            }
+        }
+    }
+
+    /**
+     * Shows a row under a column order and the labels of a placement, keeping the
+     * placement extended by the row if the row ties with the smallest found so far.
+     *
+     * @param t      the grid, 0 for the puzzle and 1 for its transpose
+     * @param order  the column order
+     * @param used   the rows used before, one bit per row
+     * @param row    the row to show
+     * @param labels the labels given so far
+     */
+    private void extend(int t, int order, int used, int row, long labels) {
+        byte[] grid = grids[t];
+        int start = row * SIZE;
+        int columns = order * SIZE;
+        int next = (int) (labels >>> 40);
+        long shown = 0;
+        boolean smaller = false;
+        for (int position = 0; position < SIZE; position++) {
+            int value = grid[start + COLUMNS[columns + position]];
+            int label = 0;
+            if (value != 0) {
+                label = (int) (labels >>> 4 * value) & 15;
+                if (label == 0) {
+                    label = ++next;
+                    labels |= (long) label << 4 * value;
+                }
+            }
+            shown = shown << 4 | label;
+            if (!smaller) {
+                long prefix = best >>> 4 * (8 - position);
+                if (shown > prefix) {
+                    return;
+                }
+                smaller = shown < prefix;
+            }
+        }
+        if (smaller) {
+            best = shown;
+            nextCount = 0;
+        }
+        add(t | order << 1 | (used | 1 << row) << 12 | row << 21, labels & ((1L << 40) - 1) | (long) next << 40);
+    }
+
+    /**
+     * Keeps a placement extended by one row.
+     *
+     * @param state  the packed grid, column order, rows used and last row
+     * @param labels the packed labels
+     */
+    private void add(int state, long labels) {
+        if (nextCount == nextStates.length) {
+            nextStates = Arrays.copyOf(nextStates, nextCount * 2);
+            nextLabels = Arrays.copyOf(nextLabels, nextCount * 2);
+        }
+        nextStates[nextCount] = state;
+        nextLabels[nextCount] = labels;
+        nextCount++;
+    }
+
+    /**
+     * Checks that a column order shows equal columns of a stack, and equal stacks,
+     * in their original order, so that orders differing only by swapping them are followed once.
+     *
+     * @param same  the equal pairs of columns and stacks, as returned by findEqualPairs()
+     * @param order the column order
+     * @return true if the order is to be followed
+     */
+    private static boolean ordered(int same, int order) {
+        if (same == 0) {
+            return true;
+        }
+        int positions = order * SIZE;
+        for (int pair = 0; pair < SIZE; pair++) {
+            int first = pair / 3 * 3 + PAIR_FIRST[pair % 3];
+            int second = pair / 3 * 3 + PAIR_SECOND[pair % 3];
+            if ((same >>> pair & 1) != 0 && POSITIONS[positions + first] > POSITIONS[positions + second]) {
+                return false;
+            }
+        }
+        for (int pair = 0; pair < 3; pair++) {
+            if ((same >>> (SIZE + pair) & 1) != 0
+                && POSITIONS[positions + 3 * PAIR_FIRST[pair]] / 3 > POSITIONS[positions + 3 * PAIR_SECOND[pair]] / 3) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if a line equals an earlier line of its group that is still free, in
+     * which case choosing it would repeat the placements of the earlier line.
+     *
+     * @param pairs the equal pairs of lines, three bits per group as returned by findEqualPairs()
+     * @param index the index of the line
+     * @param free  the free lines, one bit per line
+     * @return true if the line is to be skipped
+     */
+    private static boolean followsUnusedTwin(int pairs, int index, int free) {
+        int group = index / 3 * 3;
+        for (int pair = 0; pair < 3; pair++) {
+            if (group + PAIR_SECOND[pair] == index && (pairs >>> (group + pair) & 1) != 0
+                && (free >>> (group + PAIR_FIRST[pair]) & 1) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the pairs of equal lines inside each group of three lines, and the pairs of equal groups.
+     *
+     * @param grid  the grid
+     * @param along the distance between the cells of a line: 1 for rows, 9 for columns
+     * @param cross the distance between lines: 9 for rows, 1 for columns
+     * @return bit 3g + p set if the lines of pair p of group g are equal, and bit 9 + p if the groups of pair p are
+     */
+    private static int findEqualPairs(byte[] grid, int along, int cross) {
+        int same = 0;
+        for (int pair = 0; pair < SIZE; pair++) {
+            int group = pair / 3 * 3;
+            if (equalLines(grid, group + PAIR_FIRST[pair % 3], group + PAIR_SECOND[pair % 3], along, cross)) {
+                same |= 1 << pair;
+            }
+        }
+        for (int pair = 0; pair < 3; pair++) {
+            boolean equal = true;
+            for (int i = 0; i < 3 && equal; i++) {
+                equal = equalLines(grid, 3 * PAIR_FIRST[pair] + i, 3 * PAIR_SECOND[pair] + i, along, cross);
+            }
+            if (equal) {
+                same |= 1 << (SIZE + pair);
+            }
+        }
+        return same;
+    }
+
+    /**
+     * Checks if two lines of a grid hold the same values.
+     *
+     * @param grid   the grid
+     * @param first  the index of one line
+     * @param second the index of the other line
+     * @param along  the distance between the cells of a line
+     * @param cross  the distance between lines
+     * @return true if the lines are equal
+     */
+    private static boolean equalLines(byte[] grid, int first, int second, int along, int cross) {
+        for (int i = 0; i < SIZE; i++) {
+            if (grid[first * cross + i * along] != grid[second * cross + i * along]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Makes the placements extended by the last row the current ones.
+     */
+    private void swap() {
+        int[] swappedStates = states;
+        long[] swappedLabels = labels;
+        states = nextStates;
+        labels = nextLabels;
+        nextStates = swappedStates;
+        nextLabels = swappedLabels;
+        count = nextCount;
+    }
+
+    /**
+     * Writes the smallest row found into the canonical form.
+     *
+     * @param canonical the canonical form
+     * @param row       the index of the row
+     */
+    private void store(int[] canonical, int row) {
+        for (int position = 0; position < SIZE; position++) {
+            canonical[row * SIZE + position] = (int) (best >>> 4 * (8 - position)) & 15;
+        }
+    }
+
+    /**
+     * Returns a power of six.
+     *
+     * @param exponent the exponent, between 0 and 2
+     * @return 6 to the exponent
+     */
+    private static int pow6(int exponent) {
+        return exponent == 0 ? 1 : exponent == 1 ? 6 : 36;
+    }
+}
@@ -0,0 +1,365 @@
+import java.io.IOException;
+
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Random access to a file of puzzles written one per line, in the format read by
+ * PuzzleLineReader, without reading the file into memory. The file is memory
+ * mapped in segments, so files larger than 2 GB can be read, and pages are
+ * loaded by the operating system only when they are touched.
+ *
+ * Puzzles are numbered from 0 in file order, skipping blank lines. The position
+ * of every 64th puzzle is recorded the first time the file is scanned up to it,
+ * so finding a puzzle reads at most 63 lines past a recorded one, and the index
+ * of a file with a billion puzzles takes about 125 MB.
+ *
+ * The corpus can be read by several threads at once. For parallel processing,
+ * split() divides the file into ranges read by independent cursors.
+ */
+public class PuzzleCorpus implements AutoCloseable {
+
+    /**
+     * Number of puzzles between two recorded positions
+     */
+    private static final int INDEX_STRIDE = 64;
+
+    /**
+     * Number of cells of a puzzle line
+     */
+    private static final int CELLS = GridSolver.CELLS;
+
+    /**
+     * The mapped file
+     */
+    private final FileChannel channel;
+
+    /**
+     * Size of the file in bytes
+     */
+    private final long fileSize;
+
+    /**
+     * Each segment maps 2^segmentShift bytes of the file, except maybe the last one
+     */
+    private final int segmentShift;
+
+    /**
+     * Mask selecting the position of a byte inside its segment
+     */
+    private final long segmentMask;
+
+    /**
+     * The mapped segments, in file order
+     */
+    private final MappedByteBuffer[] segments;
+
+    /**
+     * Positions of puzzles 0, INDEX_STRIDE, 2 * INDEX_STRIDE, ...
+     */
+    private long[] checkpoints = new long[16];
+
+    /**
+     * Number of puzzles found by the scan so far
+     */
+    private long indexedCount;
+
+    /**
+     * Position where the scan for more puzzles continues
+     */
+    private long scanPosition;
+
+    /**
+     * Constructor of the PuzzleCorpus class. Maps the file in segments of 1 GB.
+     *
+     * @param fileName the name of the file of puzzles
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public PuzzleCorpus(String fileName) throws IOException {
+        this(fileName, 30);
+    }
+
+    /**
+     * Constructor of the PuzzleCorpus class.
+     * Precondition: segmentShift is between 1 and 30 inclusive
+     *
+     * @param fileName     the name of the file of puzzles
+     * @param segmentShift each segment maps 2^segmentShift bytes
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    PuzzleCorpus(String fileName, int segmentShift) throws IOException {
+        assert segmentShift >= 1 && segmentShift <= 30 : "Segment shift out of range.";
+        this.segmentShift = segmentShift;
+        segmentMask = (1L << segmentShift) - 1;
+        channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+        try {
+            fileSize = channel.size();
+            segments = new MappedByteBuffer[(int) ((fileSize + segmentMask) >>> segmentShift)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = (long) i << segmentShift;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(1L << segmentShift, fileSize - start));
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of puzzles of the file. The first call scans the whole file.
+     *
+     * @return the number of non-blank lines
+     */
+    public synchronized long size() {
+        while (scanNext()) {
+            //Keep scanning until the end of the file
+        }
+        return indexedCount;
+    }
+
+    /**
+     * Reads the cell values (0-9) of a puzzle into cells. When the line is
+     * malformed the contents of cells are unspecified.
+     * Precondition: index is between 0 and size() - 1 inclusive
+     *
+     * @param index  the number of the puzzle
+     * @param cells  the array receiving the 81 values
+     * @param offset the position in cells of the first value
+     * @return PuzzleLineReader.PUZZLE, or PuzzleLineReader.INVALID if the line is malformed
+     */
+    public int read(long index, byte[] cells, int offset) {
+        long start = locate(index);
+        return parse(start, lineEnd(start), cells, offset);
+    }
+
+    /**
+     * Builds a board from a puzzle. Non-zero values are fixed.
+     * Precondition: index is between 0 and size() - 1 inclusive
+     *
+     * @param index the number of the puzzle
+     * @return the board of the puzzle
+     * @throws IllegalArgumentException if the line of the puzzle is malformed
+     */
+    public SudokuBoard getBoard(long index) {
+        byte[] cells = new byte[CELLS];
+        if (read(index, cells, 0) != PuzzleLineReader.PUZZLE) {
+            throw new IllegalArgumentException("Puzzle " + index + " invalid: expecting 81 digits or dots.");
+        }
+        int[] grid = new int[CELLS];
+        for (int i = 0; i < CELLS; i++) {
+            grid[i] = cells[i];
+        }
+        return new SudokuBoard(grid);
+    }
+
+    /**
+     * Divides the file into ranges of about the same size, each starting at the
+     * beginning of a line, and returns a cursor over each one. Together the cursors
+     * read every puzzle exactly once, and each cursor can be used by its own thread.
+     * Precondition: parts is at least 1
+     *
+     * @param parts the number of ranges
+     * @return the cursors, in file order
+     */
+    public Cursor[] split(int parts) {
+        assert parts >= 1 : "The number of parts must be at least 1.";
+        Cursor[] cursors = new Cursor[parts];
+        long start = 0;
+        for (int i = 0; i < parts; i++) {
+            long end = i == parts - 1 ? fileSize : lineStartFrom(fileSize / parts * (i + 1));
+            cursors[i] = new Cursor(start, Math.max(start, end));
+            start = Math.max(start, end);
+        }
+        return cursors;
+    }
+
+    /**
+     * Closes the file. The mapped segments are released once they are no longer
+     * referenced, so the corpus must not be read after it is closed.
+     *
+     * @throws IOException if closing fails
+     */
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Returns the position of a puzzle, scanning the file up to it if needed.
+     *
+     * @param index the number of the puzzle
+     * @return the position of the first byte of its line
+     */
+    private synchronized long locate(long index) {
+        assert index >= 0 : "Puzzle index out of bounds.";
+        while (indexedCount <= index) {
+            if (!scanNext()) {
+                throw new IndexOutOfBoundsException("Puzzle " + index + " out of bounds: the corpus has " + indexedCount + " puzzles.");
+            }
+        }
+        long position = checkpoints[(int) (index / INDEX_STRIDE)];
+        for (long skipped = index % INDEX_STRIDE; skipped > 0; skipped--) {
+            position = skipBlankLines(lineEnd(position));
+        }
+        return position;
+    }
+
+    /**
+     * Finds the next puzzle after the scanned part of the file, recording its
+     * position if it is a multiple of INDEX_STRIDE.
+     *
+     * @return false if the end of the file was reached, true otherwise
+     */
+    private boolean scanNext() {
+        long start = skipBlankLines(scanPosition);
+        if (start == fileSize) {
+            scanPosition = fileSize;
+            return false;
+        }
+        if (indexedCount % INDEX_STRIDE == 0) {
+            int slot = (int) (indexedCount / INDEX_STRIDE);
+            if (slot == checkpoints.length) {
+                long[] larger = new long[checkpoints.length * 2];
+                System.arraycopy(checkpoints, 0, larger, 0, checkpoints.length);
+                checkpoints = larger;
+            }
+            checkpoints[slot] = start;
+        }
+        indexedCount++;
+        scanPosition = lineEnd(start);
+        return true;
+    }
+
+    /**
+     * Returns a byte of the file.
+     *
+     * @param position the position of the byte
+     * @return the byte
+     */
+    private byte byteAt(long position) {
+        return segments[(int) (position >>> segmentShift)].get((int) (position & segmentMask));
+    }
+
+    /**
+     * Returns the position following the line break that ends a line.
+     *
+     * @param position a position inside the line
+     * @return the position after the next \n, or the size of the file
+     */
+    private long lineEnd(long position) {
+        while (position < fileSize) {
+            if (byteAt(position++) == '\n') {
+                return position;
+            }
+        }
+        return fileSize;
+    }
+
+    /**
+     * Skips blank lines, which hold nothing but line breaks.
+     *
+     * @param position the beginning of a line
+     * @return the beginning of the next non-blank line, or the size of the file
+     */
+    private long skipBlankLines(long position) {
+        while (position < fileSize) {
+            byte c = byteAt(position);
+            if (c != '\n' && c != '\r') {
+                return position;
+            }
+            position++;
+        }
+        return fileSize;
+    }
+
+    /**
+     * Returns the beginning of the first line starting at or after a position.
+     *
+     * @param position any position of the file
+     * @return the beginning of a line, or the size of the file
+     */
+    private long lineStartFrom(long position) {
+        if (position == 0 || position >= fileSize) {
+            return Math.min(position, fileSize);
+        }
+        return lineEnd(position - 1);
+    }
+
+    /**
+     * Decodes a line in the same way as PuzzleLineReader.
+     *
+     * @param start  the position of the first byte of the line
+     * @param end    the position following the line
+     * @param cells  the array receiving the 81 values
+     * @param offset the position in cells of the first value
+     * @return PuzzleLineReader.PUZZLE or PuzzleLineReader.INVALID
+     */
+    private int parse(long start, long end, byte[] cells, int offset) {
+        int length = 0;
+        boolean wellFormed = true;
+        for (long position = start; position < end; position++) {
+            byte c = byteAt(position);
+            if (c == '\n' || c == '\r') {
+                continue;
+            }
+            if (length < CELLS) {
+                if (c >= '0' && c <= '9') {
+                    cells[offset + length] = (byte) (c - '0');
+                } else if (c == '.') {
+                    cells[offset + length] = 0;
+                } else {
+                    wellFormed = false;
+                }
+            }
+            length++;
+        }
+        return wellFormed && length == CELLS ? PuzzleLineReader.PUZZLE : PuzzleLineReader.INVALID;
+    }
+
+    /**
+     * Reads the puzzles of one range of the file, in order. A cursor must be used
+     * by a single thread.
+     */
+    public class Cursor {
+
+        /**
+         * Position of the next line to read
+         */
+        private long position;
+
+        /**
+         * Position following the range
+         */
+        private final long end;
+
+        /**
+         * Constructor of the Cursor class.
+         *
+         * @param start the beginning of the first line of the range
+         * @param end   the position following the range
+         */
+        private Cursor(long start, long end) {
+            this.position = start;
+            this.end = end;
+        }
+
+        /**
+         * Reads the next puzzle of the range into cells. When the line is malformed
+         * the contents of cells are unspecified.
+         *
+         * @param cells  the array receiving the 81 values
+         * @param offset the position in cells of the first value
+         * @return PuzzleLineReader.PUZZLE, PuzzleLineReader.INVALID or PuzzleLineReader.END
+         */
+        public int next(byte[] cells, int offset) {
+            long start = skipBlankLines(position);
+            if (start >= end) {
+                position = end;
+                return PuzzleLineReader.END;
+            }
+            position = lineEnd(start);
+            return parse(start, position, cells, offset);
+        }
+    }
+}
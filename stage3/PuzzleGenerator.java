@@ -0,0 +1,330 @@
+import java.util.Random;
+
+/**
+ * Generates puzzles with exactly one solution. A random full grid is built
+ * first; then its cells are emptied in random order, keeping each removal only
+ * if the puzzle still has a single solution, until the requested number of
+ * clues is reached or no more clues can be removed. Cells can be removed in
+ * symmetric pairs, so that the clues form a symmetric pattern.
+ *
+ * The same seed always produces the same sequence of puzzles. An instance is
+ * not thread-safe; use one generator per thread.
+ */
+public class PuzzleGenerator {
+
+    /**
+     * Fewest clues of a puzzle with a single solution
+     */
+    public static final int MIN_CLUES = 17;
+
+    /**
+     * Number of cells of a board
+     */
+    private static final int CELLS = GridSolver.CELLS;
+
+    /**
+     * Symmetry patterns of the clues
+     */
+    public enum Symmetry {
+        /**
+         * Cells are removed one at a time
+         */
+        NONE,
+
+        /**
+         * The clues are unchanged by a half turn of the board
+         */
+        ROTATIONAL,
+
+        /**
+         * The clues are unchanged by swapping the left and right sides of the board
+         */
+        MIRROR,
+
+        /**
+         * The clues are unchanged by swapping rows and columns
+         */
+        DIAGONAL
+    }
+
+    /**
+     * The source of randomness
+     */
+    private final Random random;
+
+    /**
+     * Engine checking that puzzles have a single solution
+     */
+    private final BitmaskSolver counter = new BitmaskSolver(BitmaskSolver.CellOrder.MINIMUM_REMAINING_VALUES);
+
+    /**
+     * The full grid of the last puzzle generated
+     */
+    private final int[] solution = new int[CELLS];
+
+    /**
+     * The puzzle being generated
+     */
+    private final int[] puzzle = new int[CELLS];
+
+    /**
+     * Cells in the order they are tried for removal
+     */
+    private final int[] order = new int[CELLS];
+
+    /**
+     * Values used in each row, column and box, by the grid while it is filled and
+     * then by the clues of the puzzle
+     */
+    private final int[] rowMask = new int[SudokuBoard.SIZE];
+    private final int[] colMask = new int[SudokuBoard.SIZE];
+    private final int[] boxMask = new int[SudokuBoard.SIZE];
+
+    /**
+     * Constructor of the PuzzleGenerator class.
+     *
+     * @param seed the seed of the source of randomness
+     */
+    public PuzzleGenerator(long seed) {
+        random = new Random(seed);
+        for (int i = 0; i < CELLS; i++) {
+            order[i] = i;
+        }
+    }
+
+    /**
+     * Generates a puzzle with a single solution and no symmetry.
+     * Precondition: targetClues is between MIN_CLUES and 81 inclusive
+     *
+     * @param targetClues the number of clues wanted
+     * @return the puzzle; its clues are fixed
+     */
+    public SudokuBoard generate(int targetClues) {
+        return generate(targetClues, Symmetry.NONE);
+    }
+
+    /**
+     * Generates a puzzle with a single solution. The puzzle has targetClues clues
+     * when they can be reached, and otherwise as few as could be reached: clues are
+     * removed until none can be removed without allowing a second solution, or
+     * without going below targetClues.
+     * Precondition: targetClues is between MIN_CLUES and 81 inclusive
+     * Precondition: symmetry is not null
+     *
+     * @param targetClues the number of clues wanted
+     * @param symmetry    the symmetry pattern of the clues
+     * @return the puzzle; its clues are fixed
+     */
+    public SudokuBoard generate(int targetClues, Symmetry symmetry) {
+        assert targetClues >= MIN_CLUES && targetClues <= CELLS : "Clue count out of range.";
+        assert symmetry != null : "The symmetry cannot be null";
+        fillGrid();
+        System.arraycopy(solution, 0, puzzle, 0, CELLS);
+        shuffle(order);
+        int clues = CELLS;
+        for (int i = 0; i < CELLS && clues > targetClues; i++) {
+            int cell = order[i];
+            if (puzzle[cell] == 0) {
+                //Already removed as the partner of an earlier cell
+                continue;
+            }
+            int partner = partner(cell, symmetry);
+            int removed = partner == cell ? 1 : 2;
+            if (clues - removed < targetClues) {
+                continue;
+            }
+            clear(cell);
+            clear(partner);
+            if (forced(cell) && forced(partner) || !hasOtherSolution(cell, partner)) {
+                clues -= removed;
+            } else {
+                restore(cell);
+                restore(partner);
+            }
+        }
+        return new SudokuBoard(puzzle);
+    }
+
+    /**
+     * Empties a cell of the puzzle.
+     *
+     * @param cell the index of the cell
+     */
+    private void clear(int cell) {
+        if (puzzle[cell] != 0) {
+            int b = GridSolver.bit(puzzle[cell]);
+            rowMask[GridSolver.ROW[cell]] ^= b;
+            colMask[GridSolver.COL[cell]] ^= b;
+            boxMask[GridSolver.BOX[cell]] ^= b;
+            puzzle[cell] = 0;
+        }
+    }
+
+    /**
+     * Puts the value of the solution back into an empty cell of the puzzle.
+     *
+     * @param cell the index of the cell
+     */
+    private void restore(int cell) {
+        if (puzzle[cell] == 0) {
+            int b = GridSolver.bit(solution[cell]);
+            rowMask[GridSolver.ROW[cell]] |= b;
+            colMask[GridSolver.COL[cell]] |= b;
+            boxMask[GridSolver.BOX[cell]] |= b;
+            puzzle[cell] = solution[cell];
+        }
+    }
+
+    /**
+     * Checks whether the clues in the row, column and box of an empty cell leave a
+     * single candidate. If every removed cell is forced this way, the puzzle still
+     * has a single solution and the solver is not needed.
+     *
+     * @param cell the index of the cell
+     * @return true if the cell has one candidate
+     */
+    private boolean forced(int cell) {
+        int candidates = ~(rowMask[GridSolver.ROW[cell]] | colMask[GridSolver.COL[cell]] | boxMask[GridSolver.BOX[cell]])
+            & GridSolver.ALL_VALUES;
+        return (candidates & (candidates - 1)) == 0;
+    }
+
+    /**
+     * Checks whether the puzzle, just emptied at cell and partner, has a solution
+     * other than the full grid. Since the puzzle had a single solution before, any
+     * other solution differs from the grid at cell or at partner, so only the
+     * search trees with another value in those cells are explored.
+     *
+     * @param cell    the emptied cell
+     * @param partner the other emptied cell, or cell itself
+     * @return true if the puzzle has more than one solution
+     */
+    private boolean hasOtherSolution(int cell, int partner) {
+        boolean found = hasSolutionWithout(cell);
+        if (!found && partner != cell) {
+            //Every other solution keeps the value of cell, so it must change the partner
+            puzzle[cell] = solution[cell];
+            found = hasSolutionWithout(partner);
+            puzzle[cell] = 0;
+        }
+        return found;
+    }
+
+    /**
+     * Checks whether the puzzle has a solution with a value other than the full
+     * grid's in an empty cell.
+     *
+     * @param cell the empty cell whose value must change
+     * @return true if such a solution exists
+     */
+    private boolean hasSolutionWithout(int cell) {
+        int candidates = ~(rowMask[GridSolver.ROW[cell]] | colMask[GridSolver.COL[cell]] | boxMask[GridSolver.BOX[cell]])
+            & GridSolver.ALL_VALUES & ~GridSolver.bit(solution[cell]);
+        boolean found = false;
+        while (candidates != 0 && !found) {
+            int b = candidates & -candidates;
+            candidates ^= b;
+            puzzle[cell] = GridSolver.valueOf(b);
+            found = counter.countSolutions(puzzle, 1) > 0;
+        }
+        puzzle[cell] = 0;
+        return found;
+    }
+
+    /**
+     * Returns the solution of the last puzzle generated.
+     * Precondition: a puzzle has been generated
+     *
+     * @return the full grid the puzzle was made from
+     */
+    public SudokuBoard getSolution() {
+        assert solution[0] != 0 : "No puzzle has been generated.";
+        return new SudokuBoard(solution);
+    }
+
+    /**
+     * Returns the cell matching a cell under a symmetry.
+     *
+     * @param cell     the index of the cell in row-major order
+     * @param symmetry the symmetry pattern
+     * @return the index of the matching cell, which is cell itself for cells on the axis
+     */
+    static int partner(int cell, Symmetry symmetry) {
+        int row = cell / SudokuBoard.SIZE;
+        int col = cell % SudokuBoard.SIZE;
+        switch (symmetry) {
+            case ROTATIONAL:
+                return CELLS - 1 - cell;
+            case MIRROR:
+                return row * SudokuBoard.SIZE + (SudokuBoard.SIZE - 1 - col);
+            case DIAGONAL:
+                return col * SudokuBoard.SIZE + row;
+            default:
+                return cell;
+        }
+    }
+
+    /**
+     * Fills the solution with a random full grid.
+     */
+    private void fillGrid() {
+        for (int i = 0; i < SudokuBoard.SIZE; i++) {
+            rowMask[i] = 0;
+            colMask[i] = 0;
+            boxMask[i] = 0;
+        }
+        fill(0);
+    }
+
+    /**
+     * Fills the cells from cell onwards, trying the candidates of each cell in random order.
+     *
+     * @param cell the index of the next cell to fill
+     * @return true if the grid was completed
+     */
+    private boolean fill(int cell) {
+        if (cell == CELLS) {
+            return true;
+        }
+        int row = GridSolver.ROW[cell];
+        int col = GridSolver.COL[cell];
+        int box = GridSolver.BOX[cell];
+        int candidates = ~(rowMask[row] | colMask[col] | boxMask[box]) & GridSolver.ALL_VALUES;
+        while (candidates != 0) {
+            //Pick one of the remaining candidates at random
+            int skip = random.nextInt(Integer.bitCount(candidates));
+            int b = candidates;
+            for (int i = 0; i < skip; i++) {
+                b &= b - 1;
+            }
+            b &= -b;
+            candidates ^= b;
+            rowMask[row] |= b;
+            colMask[col] |= b;
+            boxMask[box] |= b;
+            solution[cell] = GridSolver.valueOf(b);
+            if (fill(cell + 1)) {
+                return true;
+            }
+            rowMask[row] ^= b;
+            colMask[col] ^= b;
+            boxMask[box] ^= b;
+        }
+        solution[cell] = 0;
+        return false;
+    }
+
+    /**
+     * Shuffles an array in place.
+     *
+     * @param values the array to shuffle
+     */
+    private void shuffle(int[] values) {
+        for (int i = values.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = values[i];
+            values[i] = values[j];
+            values[j] = swap;
+        }
+    }
+}
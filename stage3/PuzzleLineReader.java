@@ -0,0 +1,106 @@
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads puzzles written one per line, 81 characters per puzzle in row-major
+ * order. Digits 1-9 are givens, and '0' or '.' are empty cells. Blank lines are
+ * skipped. The input is read in fixed-size chunks and decoded byte by byte, so
+ * no String is created per line.
+ */
+public class PuzzleLineReader {
+
+    /**
+     * Result of readPuzzle when a well-formed puzzle was read
+     */
+    public static final int PUZZLE = 0;
+
+    /**
+     * Result of readPuzzle when a malformed line was read
+     */
+    public static final int INVALID = 1;
+
+    /**
+     * Result of readPuzzle at the end of the input
+     */
+    public static final int END = 2;
+
+    /**
+     * Number of cells of a puzzle line
+     */
+    private static final int CELLS = GridSolver.CELLS;
+
+    /**
+     * The stream of puzzles
+     */
+    private final InputStream in;
+
+    /**
+     * Buffer for reading the input
+     */
+    private final byte[] buffer = new byte[1 << 16];
+
+    /**
+     * Position of the next unread byte in the buffer
+     */
+    private int position;
+
+    /**
+     * Number of valid bytes in the buffer
+     */
+    private int limit;
+
+    /**
+     * Constructor of the PuzzleLineReader class.
+     * Precondition: in is not null
+     *
+     * @param in the stream of puzzles; it is not closed by the reader
+     */
+    public PuzzleLineReader(InputStream in) {
+        assert in != null : "The input stream cannot be null";
+        this.in = in;
+    }
+
+    /**
+     * Reads the next non-blank line and stores its cell values (0-9) in cells.
+     * When the line is malformed the contents of cells are unspecified.
+     *
+     * @param cells  the array receiving the 81 values
+     * @param offset the position in cells of the first value
+     * @return PUZZLE, INVALID or END
+     * @throws IOException if reading fails
+     */
+    public int readPuzzle(byte[] cells, int offset) throws IOException {
+        int length = 0;
+        boolean wellFormed = true;
+        while (true) {
+            if (position == limit) {
+                limit = in.read(buffer);
+                position = 0;
+                if (limit == -1) {
+                    limit = 0;
+                    if (length == 0) {
+                        return END;
+                    }
+                    return wellFormed && length == CELLS ? PUZZLE : INVALID;
+                }
+            }
+            byte c = buffer[position++];
+            if (c == '\n') {
+                if (length > 0) {
+                    return wellFormed && length == CELLS ? PUZZLE : INVALID;
+                }
+            } else if (c != '\r') {
+                if (length < CELLS) {
+                    if (c >= '0' && c <= '9') {
+                        cells[offset + length] = (byte) (c - '0');
+                    } else if (c == '.') {
+                        cells[offset + length] = 0;
+                    } else {
+                        wellFormed = false;
+                    }
+                }
+                length++;
+            }
+        }
+    }
+}
@@ -0,0 +1,367 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Solve strategy that remembers the solutions found by another strategy, so a
+ * puzzle seen before is answered without searching. Puzzles without a solution
+ * are remembered too.
+ *
+ * A puzzle is keyed by the values of its 81 cells packed four bits each into six
+ * longs, and its solution is stored packed the same way. The cache holds at most
+ * a fixed number of puzzles; past it, the least recently used one is forgotten.
+ *
+ * The cache is thread-safe as long as the strategy solving misses is: lookups
+ * and insertions are synchronized, and solving happens outside the lock, so two
+ * threads missing the same puzzle may both solve it. For engines that are not
+ * thread-safe, using() gives each thread its own view sharing the same entries.
+ */
+public class SolutionCache implements SudokuBoard.SolveStrategy {
+
+    /**
+     * Default maximum number of puzzles remembered (about 3 MB)
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+
+    /**
+     * Number of cells of a board
+     */
+    private static final int CELLS = GridSolver.CELLS;
+
+    /**
+     * Number of longs holding a packed board, at four bits per cell
+     */
+    private static final int WORDS = (CELLS + 15) / 16;
+
+    /**
+     * Solution stored for puzzles without one
+     */
+    private static final long[] UNSOLVABLE = new long[0];
+
+    /**
+     * Scratch values of the board being solved, one array per thread
+     */
+    private static final ThreadLocal<int[]> VALUES = ThreadLocal.withInitial(() -> new int[CELLS]);
+
+    /**
+     * The entries and counters, shared by every view of the cache
+     */
+    private final Store store;
+
+    /**
+     * Strategy solving the puzzles not in the cache
+     */
+    private final SudokuBoard.SolveStrategy engine;
+
+    /**
+     * Constructor of the SolutionCache class, remembering up to DEFAULT_CAPACITY puzzles.
+     * Precondition: engine is not null
+     *
+     * @param engine the strategy solving the puzzles not in the cache
+     */
+    public SolutionCache(SudokuBoard.SolveStrategy engine) {
+        this(engine, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor of the SolutionCache class.
+     * Precondition: engine is not null
+     * Precondition: capacity is at least 1
+     *
+     * @param engine   the strategy solving the puzzles not in the cache
+     * @param capacity the maximum number of puzzles remembered
+     */
+    public SolutionCache(SudokuBoard.SolveStrategy engine, int capacity) {
+        this(engine, new Store(capacity));
+        assert capacity >= 1 : "The capacity must be at least 1.";
+    }
+
+    /**
+     * Constructor of a view of a store.
+     *
+     * @param engine the strategy solving the puzzles not in the cache
+     * @param store  the entries and counters
+     */
+    private SolutionCache(SudokuBoard.SolveStrategy engine, Store store) {
+        assert engine != null : "The solve strategy cannot be null";
+        this.engine = engine;
+        this.store = store;
+    }
+
+    /**
+     * Returns a cache sharing the entries and counters of this one, solving misses
+     * with another strategy. Engines that are not thread-safe can so share one
+     * cache, each thread using its own view.
+     * Precondition: engine is not null
+     *
+     * @param engine the strategy solving the puzzles not in the cache
+     * @return the view
+     */
+    public SolutionCache using(SudokuBoard.SolveStrategy engine) {
+        return new SolutionCache(engine, store);
+    }
+
+    /**
+     * Fills the empty cells of the board from the cache, or with the engine if the
+     * board is not in the cache, remembering the outcome.
+     *
+     * @param board the board to solve in place
+     * @return true if the board was solved, false otherwise
+     */
+    public boolean solve(SudokuBoard board) {
+        return solve(board, null);
+    }
+
+    /**
+     * Fills the empty cells of the board as solve(board) does. Only misses report
+     * engine metrics; a hit records no search.
+     *
+     * @param board   the board to solve in place
+     * @param metrics the metrics receiving the counters of the engine, or null
+     * @return true if the board was solved, false otherwise
+     */
+    public boolean solve(SudokuBoard board, SolveMetrics metrics) {
+        int[] values = VALUES.get();
+        board.copyValuesTo(values);
+        Key key = new Key(pack(values));
+        long[] solution = store.get(key);
+        if (solution == null) {
+            boolean solved = metrics == null ? engine.solve(board) : engine.solve(board, metrics);
+            if (solved) {
+                board.copyValuesTo(values);
+                solution = pack(values);
+            } else {
+                solution = UNSOLVABLE;
+            }
+            store.put(key, solution);
+            return solved;
+        }
+        if (solution == UNSOLVABLE) {
+            return false;
+        }
+        for (int i = 0; i < CELLS; i++) {
+            if (values[i] == 0) {
+                board.setCellValue(i / SudokuBoard.SIZE, i % SudokuBoard.SIZE,
+                    (int) (solution[i >>> 4] >>> ((i & 15) << 2)) & 15);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of puzzles answered from the cache, solved or not.
+     *
+     * @return the number of hits
+     */
+    public long getHitCount() {
+        synchronized (store) {
+            return store.hits;
+        }
+    }
+
+    /**
+     * Returns the number of puzzles answered from the cache as having no solution.
+     *
+     * @return the number of hits on unsolvable puzzles
+     */
+    public long getUnsolvableHitCount() {
+        synchronized (store) {
+            return store.unsolvableHits;
+        }
+    }
+
+    /**
+     * Returns the number of puzzles that were not in the cache and had to be solved.
+     *
+     * @return the number of misses
+     */
+    public long getMissCount() {
+        synchronized (store) {
+            return store.misses;
+        }
+    }
+
+    /**
+     * Returns the number of puzzles forgotten to make room for others.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictionCount() {
+        synchronized (store) {
+            return store.evictions;
+        }
+    }
+
+    /**
+     * Returns the fraction of lookups answered from the cache.
+     *
+     * @return the hit rate, 0 if there was no lookup
+     */
+    public double getHitRate() {
+        synchronized (store) {
+            long lookups = store.hits + store.misses;
+            return lookups == 0 ? 0 : (double) store.hits / lookups;
+        }
+    }
+
+    /**
+     * Returns the number of puzzles remembered.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        synchronized (store) {
+            return store.entries.size();
+        }
+    }
+
+    /**
+     * Forgets every puzzle and sets the counters back to 0.
+     */
+    public void clear() {
+        synchronized (store) {
+            store.entries.clear();
+            store.hits = 0;
+            store.unsolvableHits = 0;
+            store.misses = 0;
+            store.evictions = 0;
+        }
+    }
+
+    /**
+     * Returns a one-line summary of the counters.
+     *
+     * @return the summary
+     */
+    public String toString() {
+        synchronized (store) {
+            return store.entries.size() + " puzzles, " + store.hits + " hits (" + store.unsolvableHits
+                + " unsolvable), " + store.misses + " misses, " + store.evictions + " evictions";
+        }
+    }
+
+    /**
+     * Packs the values of a board four bits per cell.
+     *
+     * @param values the 81 values, in row-major order
+     * @return the packed values, cell i in bits 4(i mod 16) to 4(i mod 16) + 3 of long i / 16
+     */
+    private static long[] pack(int[] values) {
+        long[] words = new long[WORDS];
+        for (int i = 0; i < CELLS; i++) {
+            words[i >>> 4] |= (long) values[i] << ((i & 15) << 2);
+        }
+        return words;
+    }
+
+    /**
+     * A packed board used as a map key
+     */
+    private static final class Key {
+
+        /**
+         * The packed values
+         */
+        private final long[] words;
+
+        /**
+         * The hash code, computed once
+         */
+        private final int hash;
+
+        /**
+         * Constructor of the Key class.
+         *
+         * @param words the packed values
+         */
+        private Key(long[] words) {
+            this.words = words;
+            this.hash = Arrays.hashCode(words);
+        }
+
+        /**
+         * Returns the hash code of the packed values.
+         *
+         * @return the hash code
+         */
+        public int hashCode() {
+            return hash;
+        }
+
+        /**
+         * Checks if another key holds the same values.
+         *
+         * @param other the object to compare with
+         * @return true if other is a key with the same packed values
+         */
+        public boolean equals(Object other) {
+            return other instanceof Key && hash == ((Key) other).hash && Arrays.equals(words, ((Key) other).words);
+        }
+    }
+
+    /**
+     * The entries of a cache in least recently used order, and its counters.
+     * Every access is synchronized on the store.
+     */
+    private static final class Store {
+
+        /**
+         * Solutions by puzzle, least recently used first
+         */
+        private final LinkedHashMap<Key, long[]> entries;
+
+        /**
+         * Counters of lookups and evictions
+         */
+        private long hits;
+        private long unsolvableHits;
+        private long misses;
+        private long evictions;
+
+        /**
+         * Constructor of the Store class.
+         *
+         * @param capacity the maximum number of puzzles remembered
+         */
+        private Store(int capacity) {
+            entries = new LinkedHashMap<Key, long[]>(16, 0.75f, true) {
+                protected boolean removeEldestEntry(Map.Entry<Key, long[]> eldest) {
+                    if (size() <= capacity) {
+                        return false;
+                    }
+                    evictions++;
+                    return true;
+                }
+            };
+        }
+
+        /**
+         * Looks up a puzzle, counting the hit or miss.
+         *
+         * @param key the packed puzzle
+         * @return its packed solution, UNSOLVABLE, or null if the puzzle is not remembered
+         */
+        private synchronized long[] get(Key key) {
+            long[] solution = entries.get(key);
+            if (solution == null) {
+                misses++;
+            } else {
+                hits++;
+                if (solution == UNSOLVABLE) {
+                    unsolvableHits++;
+                }
+            }
+            return solution;
+        }
+
+        /**
+         * Remembers the outcome of a puzzle.
+         *
+         * @param key      the packed puzzle
+         * @param solution its packed solution, or UNSOLVABLE
+         */
+        private synchronized void put(Key key, long[] solution) {
+            entries.put(key, solution);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+import java.io.IOException;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load test of the SolveServer: clients on localhost send puzzles as fast as
+ * they can for a fixed time, and the throughput and latency percentiles of the
+ * requests are reported.
+ *
+ * The puzzles are generated from the bundled ones as in SudokuBenchmark. Each
+ * request carries a batch of them, one by default. Unless a port is given, a
+ * server is started in the same JVM for the duration of the test.
+ */
+public class SolveLoadHarness {
+
+    /**
+     * The bundled puzzle files
+     */
+    private static final String[] PUZZLES = {
+        "puzzle_1.txt", "puzzle_2.txt", "puzzle_3.txt", "puzzle_4.txt", "puzzle_5.txt",
+        "solvable_puzzle_1.txt", "solvable_puzzle_2.txt"
+    };
+
+    /**
+     * Number of puzzles in the generated corpus
+     */
+    private static final int CORPUS_SIZE = 1000;
+
+    /**
+     * Runs the load test.
+     * @param args optional number of clients (default 16), puzzles per request
+     *             (default 1), seconds to run (default 5) and port of a running
+     *             server (default: start one)
+     * @throws IOException if the server cannot be started
+     * @throws InterruptedException if interrupted while waiting for the clients
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int batch = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        long seconds = args.length > 2 ? Long.parseLong(args[2]) : 5;
+        SolveServer server = null;
+        int port;
+        if (args.length > 3) {
+            port = Integer.parseInt(args[3]);
+        } else {
+            SolveServer.enableNoDelay();
+            server = new SolveServer(0, Runtime.getRuntime().availableProcessors());
+            port = server.getPort();
+            System.out.println("Started server on port " + port
+                + (server.usesVirtualThreads() ? " (virtual threads)" : " (platform threads)"));
+        }
+        try {
+            SolveLoadHarness harness = new SolveLoadHarness(port, requestBodies(batch));
+            //The first second warms up the server and the clients
+            harness.run(clients, 1000);
+            harness.run(clients, seconds * 1000).print(clients, batch);
+            if (server != null) {
+                System.out.println("Cache: " + server.getCache());
+            }
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    /**
+     * Address of the solve endpoint
+     */
+    private final URI uri;
+
+    /**
+     * Request bodies, sent in turn by the clients
+     */
+    private final byte[][] bodies;
+
+    /**
+     * The HTTP client shared by all client threads
+     */
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    /**
+     * Constructor of the SolveLoadHarness class.
+     * Precondition: bodies is not empty
+     *
+     * @param port   the port of the server on localhost
+     * @param bodies the request bodies to send
+     */
+    public SolveLoadHarness(int port, byte[][] bodies) {
+        assert bodies.length > 0 : "There must be something to send.";
+        this.uri = URI.create("http://127.0.0.1:" + port + SolveServer.PATH);
+        this.bodies = bodies;
+    }
+
+    /**
+     * Sends requests from several client threads for a fixed time.
+     * Precondition: clients and millis are positive
+     *
+     * @param clients the number of client threads, each with one request at a time
+     * @param millis  the time to run, in milliseconds
+     * @return the latencies and outcome of the requests
+     * @throws InterruptedException if interrupted while waiting for the clients
+     */
+    public Result run(int clients, long millis) throws InterruptedException {
+        assert clients > 0 && millis > 0 : "Clients and time must be positive.";
+        long[][] latencies = new long[clients][];
+        int[] counts = new int[clients];
+        AtomicInteger failures = new AtomicInteger();
+        AtomicInteger next = new AtomicInteger();
+        long start = System.nanoTime();
+        long end = start + millis * 1_000_000;
+        Thread[] threads = new Thread[clients];
+        for (int c = 0; c < clients; c++) {
+            int id = c;
+            threads[c] = new Thread(() -> {
+                long[] own = new long[1024];
+                int count = 0;
+                while (System.nanoTime() < end) {
+                    byte[] body = bodies[Math.floorMod(next.getAndIncrement(), bodies.length)];
+                    HttpRequest request = HttpRequest.newBuilder(uri)
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(body)).build();
+                    long sent = System.nanoTime();
+                    try {
+                        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                        if (response.statusCode() != 200) {
+                            failures.incrementAndGet();
+                            continue;
+                        }
+                    } catch (IOException e) {
+                        failures.incrementAndGet();
+                        continue;
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    if (count == own.length) {
+                        own = Arrays.copyOf(own, count * 2);
+                    }
+                    own[count++] = System.nanoTime() - sent;
+                }
+                latencies[id] = own;
+                counts[id] = count;
+            });
+            threads[c].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        long[] all = new long[total];
+        int position = 0;
+        for (int c = 0; c < clients; c++) {
+            if (latencies[c] != null) {
+                System.arraycopy(latencies[c], 0, all, position, counts[c]);
+                position += counts[c];
+            }
+        }
+        Arrays.sort(all, 0, position);
+        return new Result(Arrays.copyOf(all, position), failures.get(), elapsed);
+    }
+
+    /**
+     * Builds request bodies of a number of puzzles from a corpus generated from the bundled ones.
+     *
+     * @param batch the number of puzzles per request
+     * @return the bodies, each holding batch puzzles, one per line
+     */
+    private static byte[][] requestBodies(int batch) {
+        SudokuBoard[] boards = new SudokuBoard[PUZZLES.length];
+        for (int i = 0; i < PUZZLES.length; i++) {
+            boards[i] = new SudokuBoard(PUZZLES[i]);
+        }
+        SudokuBoard[] corpus = SudokuBenchmark.generateCorpus(boards, CORPUS_SIZE, new Random(42));
+        byte[][] bodies = new byte[Math.max(1, CORPUS_SIZE / batch)][];
+        int next = 0;
+        for (int b = 0; b < bodies.length; b++) {
+            StringBuilder body = new StringBuilder();
+            for (int i = 0; i < batch; i++) {
+                SudokuBoard board = corpus[next++ % corpus.length];
+                board.setCompactToStringStrategy();
+                body.append(board.toString()).append('\n');
+            }
+            bodies[b] = body.toString().getBytes(StandardCharsets.US_ASCII);
+        }
+        return bodies;
+    }
+
+    /**
+     * The outcome of a load test
+     */
+    public static class Result {
+
+        /**
+         * Latencies of the successful requests in nanoseconds, in increasing order
+         */
+        private final long[] latencies;
+
+        /**
+         * Number of failed requests
+         */
+        private final int failures;
+
+        /**
+         * Duration of the test, in nanoseconds
+         */
+        private final long elapsedNanos;
+
+        /**
+         * Constructor of the Result class.
+         *
+         * @param latencies    the sorted latencies of the successful requests
+         * @param failures     the number of failed requests
+         * @param elapsedNanos the duration of the test
+         */
+        private Result(long[] latencies, int failures, long elapsedNanos) {
+            this.latencies = latencies;
+            this.failures = failures;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Returns the number of successful requests.
+         *
+         * @return the number of requests answered with status 200
+         */
+        public int getCount() {
+            return latencies.length;
+        }
+
+        /**
+         * Returns the number of failed requests.
+         *
+         * @return the number of requests with an error or another status
+         */
+        public int getFailures() {
+            return failures;
+        }
+
+        /**
+         * Returns the successful requests per second.
+         *
+         * @return the throughput
+         */
+        public double getThroughput() {
+            return latencies.length * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * Returns a latency percentile, by the nearest-rank method.
+         * Precondition: percent is between 0 and 100 inclusive
+         *
+         * @param percent the percentile, 50 for the median
+         * @return the latency in nanoseconds, 0 if no request succeeded
+         */
+        public long getPercentile(double percent) {
+            assert percent >= 0 && percent <= 100 : "Percent out of range.";
+            if (latencies.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(percent / 100 * latencies.length);
+            return latencies[Math.max(rank, 1) - 1];
+        }
+
+        /**
+         * Prints the throughput and latencies.
+         *
+         * @param clients the number of client threads
+         * @param batch   the number of puzzles per request
+         */
+        private void print(int clients, int batch) {
+            System.out.printf("%d clients, %d puzzles per request: %d requests, %d failed%n",
+                clients, batch, getCount(), failures);
+            System.out.printf("%12.0f requests/s %12.0f puzzles/s%n", getThroughput(), getThroughput() * batch);
+            System.out.printf("latency p50 %8.1f us, p99 %8.1f us, max %8.1f us%n",
+                getPercentile(50) / 1e3, getPercentile(99) / 1e3, getPercentile(100) / 1e3);
+        }
+    }
+}
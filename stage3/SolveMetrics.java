@@ -0,0 +1,207 @@
+/**
+ * What happened during one solve: search nodes, backtracks, depth, propagation
+ * rounds, per-technique counts and timings, and the wall time of each phase.
+ *
+ * Metrics are opt-in. Solving without a SolveMetrics takes the plain path, and
+ * engines only read the clock when one is given, so leaving the instrumentation
+ * in costs next to nothing. Engines report what they know; statistics an engine
+ * does not track stay 0. An instance is reset at the start of every run and can
+ * be reused; it is not thread-safe.
+ */
+public class SolveMetrics {
+
+    /**
+     * The quantities recorded for a solve
+     */
+    public enum Statistic {
+        /**
+         * Values tentatively placed by the search
+         */
+        NODES,
+
+        /**
+         * Search nodes abandoned because they led to no solution
+         */
+        BACKTRACKS,
+
+        /**
+         * Deepest level reached by the search, in cells filled by it
+         */
+        MAX_DEPTH,
+
+        /**
+         * Passes of the propagator over the grid
+         */
+        PROPAGATION_ROUNDS,
+
+        /**
+         * Time spent copying the board into the engine
+         */
+        LOAD_NANOS,
+
+        /**
+         * Time spent in logical propagation
+         */
+        PROPAGATION_NANOS,
+
+        /**
+         * Time spent in the backtracking search
+         */
+        SEARCH_NANOS,
+
+        /**
+         * Wall time of the whole solve
+         */
+        TOTAL_NANOS
+    }
+
+    /**
+     * The propagation techniques, cached to avoid copying the array on every solve
+     */
+    private static final ConstraintPropagator.Technique[] TECHNIQUES = ConstraintPropagator.Technique.values();
+
+    /**
+     * Value of every statistic, by ordinal
+     */
+    private final long[] values = new long[Statistic.values().length];
+
+    /**
+     * Number of times each propagation technique fired, by ordinal
+     */
+    private final long[] techniqueCounts = new long[TECHNIQUES.length];
+
+    /**
+     * Time spent in each propagation technique, by ordinal
+     */
+    private final long[] techniqueNanos = new long[TECHNIQUES.length];
+
+    /**
+     * Whether the last run found a solution
+     */
+    private boolean solved;
+
+    /**
+     * Solves a board in place with a strategy, recording metrics. The metrics
+     * are reset first; the total time and the outcome are recorded at the end.
+     * Precondition: strategy and board are not null
+     *
+     * @param strategy the strategy to run
+     * @param board    the board to solve in place
+     * @return true if the board was solved, false otherwise
+     */
+    public boolean run(SudokuBoard.SolveStrategy strategy, SudokuBoard board) {
+        assert strategy != null : "The solve strategy cannot be null";
+        assert board != null : "The board cannot be null";
+        reset();
+        long start = System.nanoTime();
+        solved = strategy.solve(board, this);
+        values[Statistic.TOTAL_NANOS.ordinal()] += System.nanoTime() - start;
+        return solved;
+    }
+
+    /**
+     * Sets every statistic back to 0.
+     */
+    public void reset() {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 0;
+        }
+        for (int i = 0; i < techniqueCounts.length; i++) {
+            techniqueCounts[i] = 0;
+            techniqueNanos[i] = 0;
+        }
+        solved = false;
+    }
+
+    /**
+     * Adds an amount to a statistic. Used by engines to report what they did.
+     *
+     * @param statistic the statistic
+     * @param amount    the amount to add
+     */
+    public void add(Statistic statistic, long amount) {
+        values[statistic.ordinal()] += amount;
+    }
+
+    /**
+     * Raises a statistic to a value if it is below it. Used for maximums such as MAX_DEPTH.
+     *
+     * @param statistic the statistic
+     * @param value     the value reached
+     */
+    public void max(Statistic statistic, long value) {
+        values[statistic.ordinal()] = Math.max(values[statistic.ordinal()], value);
+    }
+
+    /**
+     * Adds the counters of a propagator: rounds, and the count and time of every technique.
+     * Precondition: propagator is not null
+     *
+     * @param propagator the propagator used during the solve
+     */
+    public void addPropagation(ConstraintPropagator propagator) {
+        values[Statistic.PROPAGATION_ROUNDS.ordinal()] += propagator.getRounds();
+        for (ConstraintPropagator.Technique technique : TECHNIQUES) {
+            techniqueCounts[technique.ordinal()] += propagator.getCount(technique);
+            techniqueNanos[technique.ordinal()] += propagator.getNanos(technique);
+        }
+    }
+
+    /**
+     * Returns the value of a statistic.
+     *
+     * @param statistic the statistic
+     * @return its value for the last run
+     */
+    public long get(Statistic statistic) {
+        return values[statistic.ordinal()];
+    }
+
+    /**
+     * Returns how many times a propagation technique fired.
+     *
+     * @param technique the technique
+     * @return the number of placements or eliminations made with it
+     */
+    public long getTechniqueCount(ConstraintPropagator.Technique technique) {
+        return techniqueCounts[technique.ordinal()];
+    }
+
+    /**
+     * Returns the time spent in a propagation technique.
+     *
+     * @param technique the technique
+     * @return the time in nanoseconds
+     */
+    public long getTechniqueNanos(ConstraintPropagator.Technique technique) {
+        return techniqueNanos[technique.ordinal()];
+    }
+
+    /**
+     * Returns whether the last run found a solution.
+     *
+     * @return true if the board was solved
+     */
+    public boolean isSolved() {
+        return solved;
+    }
+
+    /**
+     * Returns a one-line summary of the metrics, listing non-zero technique counts.
+     *
+     * @return the summary
+     */
+    public String toString() {
+        StringBuilder output = new StringBuilder(solved ? "solved" : "not solved");
+        for (Statistic statistic : Statistic.values()) {
+            output.append(", ").append(statistic.name().toLowerCase()).append('=').append(get(statistic));
+        }
+        for (ConstraintPropagator.Technique technique : ConstraintPropagator.Technique.values()) {
+            if (getTechniqueCount(technique) > 0) {
+                output.append(", ").append(technique.name().toLowerCase()).append('=').append(getTechniqueCount(technique))
+                    .append(" in ").append(getTechniqueNanos(technique)).append("ns");
+            }
+        }
+        return output.toString();
+    }
+}
@@ -0,0 +1,288 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local HTTP service solving puzzles in the one-line format of BatchSolver.
+ *
+ * POST /solve with puzzles in the body, one per line, answers with one result
+ * line per puzzle, exactly as BatchSolver writes them. GET /solve?puzzle=... does
+ * the same for a single puzzle given in the query.
+ *
+ * Every request runs on its own virtual thread when the JVM has them (Java 21
+ * and later), and on a bounded pool of platform threads otherwise. Solving is
+ * limited to a fixed number of requests at a time: each one borrows a solver
+ * from a pool of that size, only after its body has been read, so slow clients
+ * never hold a solver. The solvers share a SolutionCache, so repeated puzzles
+ * are answered without searching. The server listens on the loopback address only.
+ *
+ * The server owns its threads; close it when done.
+ */
+public class SolveServer implements AutoCloseable {
+
+    /**
+     * Path of the solve endpoint
+     */
+    public static final String PATH = "/solve";
+
+    /**
+     * Largest request body accepted, in bytes (about 12000 puzzles)
+     */
+    static final int MAX_BODY = 1 << 20;
+
+    /**
+     * Maximum number of puzzles whose solutions are remembered
+     */
+    static final int CACHE_CAPACITY = 1 << 16;
+
+    /**
+     * Platform threads handling requests per solver, when there are no virtual threads
+     */
+    private static final int THREADS_PER_SOLVER = 4;
+
+    /**
+     * Name of the property turning off Nagle's algorithm in the JDK HTTP server
+     */
+    private static final String NO_DELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    /**
+     * The HTTP server
+     */
+    private final HttpServer server;
+
+    /**
+     * The threads handling requests
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Solvers not in use; a request waits here when all of them are busy
+     */
+    private final BlockingQueue<BatchSolver> solvers;
+
+    /**
+     * Solutions of the puzzles seen, shared by all solvers
+     */
+    private final SolutionCache cache;
+
+    /**
+     * Whether requests run on virtual threads
+     */
+    private final boolean virtualThreads;
+
+    /**
+     * Constructor of the SolveServer class. Starts serving at once.
+     * Precondition: port is between 0 and 65535 inclusive
+     * Precondition: maxConcurrentSolves is at least 1
+     *
+     * @param port                the port to listen on, 0 to pick a free one
+     * @param maxConcurrentSolves the number of requests solved at the same time
+     * @throws IOException if the server cannot listen on the port
+     */
+    public SolveServer(int port, int maxConcurrentSolves) throws IOException {
+        assert port >= 0 && port <= 65535 : "Port out of range.";
+        assert maxConcurrentSolves >= 1 : "The solve limit must be at least 1.";
+        solvers = new ArrayBlockingQueue<>(maxConcurrentSolves);
+        cache = new SolutionCache(new PropagatingSolver(), CACHE_CAPACITY);
+        solvers.add(new BatchSolver(cache));
+        for (int i = 1; i < maxConcurrentSolves; i++) {
+            solvers.add(new BatchSolver(cache.using(new PropagatingSolver())));
+        }
+        ExecutorService virtual = newVirtualThreadExecutor();
+        virtualThreads = virtual != null;
+        executor = virtualThreads ? virtual : Executors.newFixedThreadPool(THREADS_PER_SOLVER * maxConcurrentSolves);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext(PATH, this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Returns an executor starting a virtual thread per task, if the JVM has them.
+     * Looked up by reflection so the class still compiles and runs on older JVMs.
+     *
+     * @return the executor, or null if virtual threads are not available
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Turns off Nagle's algorithm for the JDK HTTP servers of this JVM, unless the
+     * property was given on the command line. The server writes the headers and the
+     * body of a response separately, so with the default each small response waits
+     * for a delayed acknowledgement, about 40 ms on Linux. The property is read once,
+     * when the first server of the JVM is created, and affects every server, so it is
+     * left to the program starting the server: the command line entry points call
+     * this before creating one.
+     */
+    public static void enableNoDelay() {
+        if (System.getProperty(NO_DELAY_PROPERTY) == null) {
+            System.setProperty(NO_DELAY_PROPERTY, "true");
+        }
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Returns whether requests run on virtual threads.
+     *
+     * @return true on JVMs with virtual threads
+     */
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Returns the cache of solutions shared by the solvers, for its counters.
+     *
+     * @return the cache
+     */
+    public SolutionCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Stops the server, waiting up to one second for requests in progress.
+     */
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Handles a request to the solve endpoint.
+     *
+     * @param exchange the request and its response
+     * @throws IOException if reading the request or writing the response fails
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            byte[] puzzles;
+            String method = exchange.getRequestMethod();
+            if (method.equals("POST")) {
+                puzzles = readBody(exchange.getRequestBody());
+                if (puzzles == null) {
+                    respond(exchange, 413, "Request body larger than " + MAX_BODY + " bytes.\n");
+                    return;
+                }
+            } else if (method.equals("GET")) {
+                puzzles = queryPuzzle(exchange.getRequestURI().getRawQuery());
+                if (puzzles == null) {
+                    respond(exchange, 400, "Missing puzzle parameter.\n");
+                    return;
+                }
+            } else {
+                exchange.getResponseHeaders().set("Allow", "GET, POST");
+                respond(exchange, 405, "Use GET or POST.\n");
+                return;
+            }
+            byte[] results;
+            try {
+                results = solve(puzzles);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                respond(exchange, 503, "Server shutting down.\n");
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=US-ASCII");
+            exchange.sendResponseHeaders(200, results.length);
+            exchange.getResponseBody().write(results);
+        }
+    }
+
+    /**
+     * Solves puzzles with a solver borrowed from the pool, waiting for one if all are busy.
+     *
+     * @param puzzles the puzzles, one per line
+     * @return the result lines
+     * @throws InterruptedException if interrupted while waiting for a solver
+     * @throws IOException never, as the streams are in memory
+     */
+    private byte[] solve(byte[] puzzles) throws InterruptedException, IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(puzzles.length + puzzles.length / 4);
+        BatchSolver solver = solvers.take();
+        try {
+            solver.solveAll(new ByteArrayInputStream(puzzles), out);
+        } finally {
+            solvers.add(solver);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads a request body.
+     *
+     * @param in the body
+     * @return its bytes, or null if it is longer than MAX_BODY
+     * @throws IOException if reading fails
+     */
+    private static byte[] readBody(InputStream in) throws IOException {
+        byte[] body = in.readNBytes(MAX_BODY + 1);
+        return body.length > MAX_BODY ? null : body;
+    }
+
+    /**
+     * Extracts the puzzle parameter of a query string.
+     *
+     * @param query the raw query string, or null
+     * @return the puzzle, or null if there is no puzzle parameter
+     */
+    private static byte[] queryPuzzle(String query) {
+        if (query == null) {
+            return null;
+        }
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith("puzzle=")) {
+                return URLDecoder.decode(parameter.substring(7), StandardCharsets.US_ASCII).getBytes(StandardCharsets.US_ASCII);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sends a short text response.
+     *
+     * @param exchange the exchange to answer
+     * @param status   the HTTP status code
+     * @param text     the body
+     * @throws IOException if writing fails
+     */
+    private static void respond(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.US_ASCII);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=US-ASCII");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+}
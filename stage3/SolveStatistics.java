@@ -0,0 +1,227 @@
+/**
+ * Aggregates the SolveMetrics of many solves, such as those of a batch, into
+ * totals, means, percentiles and power-of-two histograms of every statistic.
+ * Samples are not kept: each statistic is counted into a fixed log-linear
+ * histogram, so memory stays the same however many solves are added. Totals
+ * and maxima are exact; percentiles are exact below 128 and otherwise at most
+ * 1/64 above the exact value. Not thread-safe.
+ */
+public class SolveStatistics {
+
+    /**
+     * The statistics recorded per solve
+     */
+    private static final SolveMetrics.Statistic[] STATISTIC_VALUES = SolveMetrics.Statistic.values();
+
+    /**
+     * Number of statistics recorded per solve
+     */
+    private static final int STATISTICS = STATISTIC_VALUES.length;
+
+    /**
+     * Number of histogram buckets: one for 0 and one per bit length of a long
+     */
+    public static final int BUCKETS = 64;
+
+    /**
+     * Number of bits telling apart the fine buckets of a power of two: every power
+     * of two from 2^(SUB_BITS + 1) up is split into 2^SUB_BITS buckets of equal width
+     */
+    private static final int SUB_BITS = 6;
+
+    /**
+     * Number of fine buckets per power of two
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    /**
+     * Number of fine buckets, enough for every non-negative long
+     */
+    private static final int FINE_BUCKETS = (64 - SUB_BITS) << SUB_BITS;
+
+    /**
+     * Number of samples in each fine bucket of every statistic, by ordinal
+     */
+    private final int[][] counts = new int[STATISTICS][FINE_BUCKETS];
+
+    /**
+     * Sum and largest sample of every statistic, by ordinal
+     */
+    private final long[] totals = new long[STATISTICS];
+    private final long[] maxima = new long[STATISTICS];
+
+    /**
+     * Number of solves added
+     */
+    private int count;
+
+    /**
+     * Number of solves that found a solution
+     */
+    private int solvedCount;
+
+    /**
+     * Adds the metrics of a solve.
+     * Precondition: metrics is not null
+     * Precondition: no statistic of metrics is negative
+     *
+     * @param metrics the metrics of one solve
+     */
+    public void add(SolveMetrics metrics) {
+        assert metrics != null : "The metrics cannot be null";
+        for (SolveMetrics.Statistic statistic : STATISTIC_VALUES) {
+            long value = metrics.get(statistic);
+            assert value >= 0 : "Statistics cannot be negative.";
+            int i = statistic.ordinal();
+            counts[i][bucketOf(value)]++;
+            totals[i] += value;
+            maxima[i] = Math.max(maxima[i], value);
+        }
+        count++;
+        if (metrics.isSolved()) {
+            solvedCount++;
+        }
+    }
+
+    /**
+     * Returns the number of solves added.
+     *
+     * @return the number of samples
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the number of solves added that found a solution.
+     *
+     * @return the number of solved boards
+     */
+    public int getSolvedCount() {
+        return solvedCount;
+    }
+
+    /**
+     * Returns the sum of a statistic over all solves.
+     *
+     * @param statistic the statistic
+     * @return the total
+     */
+    public long getTotal(SolveMetrics.Statistic statistic) {
+        return totals[statistic.ordinal()];
+    }
+
+    /**
+     * Returns the mean of a statistic over all solves.
+     *
+     * @param statistic the statistic
+     * @return the mean, 0 if no solve was added
+     */
+    public double getMean(SolveMetrics.Statistic statistic) {
+        return count == 0 ? 0 : (double) getTotal(statistic) / count;
+    }
+
+    /**
+     * Returns a percentile of a statistic, by the nearest-rank method: the smallest
+     * sample such that at least percent percent of the samples are not above it.
+     * Samples of 128 or more are only known up to their fine bucket, so the largest
+     * value of the bucket is returned, at most 1/64 above the exact percentile and
+     * never above the maximum.
+     * Precondition: at least one solve was added
+     * Precondition: percent is between 0 and 100 inclusive
+     *
+     * @param statistic the statistic
+     * @param percent   the percentile, 50 for the median, 100 for the maximum
+     * @return the percentile
+     */
+    public long getPercentile(SolveMetrics.Statistic statistic, double percent) {
+        assert count > 0 : "No solve has been added.";
+        assert percent >= 0 && percent <= 100 : "Percent out of range.";
+        int i = statistic.ordinal();
+        long rank = Math.max(1, (long) Math.ceil(percent / 100 * count));
+        long seen = counts[i][0];
+        int bucket = 0;
+        while (seen < rank) {
+            seen += counts[i][++bucket];
+        }
+        return Math.min(largestOf(bucket), maxima[i]);
+    }
+
+    /**
+     * Returns the largest sample of a statistic.
+     * Precondition: at least one solve was added
+     *
+     * @param statistic the statistic
+     * @return the maximum
+     */
+    public long getMax(SolveMetrics.Statistic statistic) {
+        assert count > 0 : "No solve has been added.";
+        return maxima[statistic.ordinal()];
+    }
+
+    /**
+     * Returns a histogram of a statistic. Bucket 0 counts the samples equal to 0,
+     * and bucket b > 0 those from 2^(b-1) to 2^b - 1 inclusive.
+     *
+     * @param statistic the statistic
+     * @return the BUCKETS counts
+     */
+    public int[] getHistogram(SolveMetrics.Statistic statistic) {
+        int[] histogram = new int[BUCKETS];
+        int[] fine = counts[statistic.ordinal()];
+        //The samples of a fine bucket all have the bit length of its largest one
+        for (int bucket = 0; bucket < FINE_BUCKETS; bucket++) {
+            histogram[64 - Long.numberOfLeadingZeros(largestOf(bucket))] += fine[bucket];
+        }
+        return histogram;
+    }
+
+    /**
+     * Returns a table with the mean, median, 90th and 99th percentiles and maximum
+     * of every statistic.
+     *
+     * @return the table, one line per statistic after a heading line
+     */
+    public String toString() {
+        StringBuilder output = new StringBuilder();
+        output.append(count).append(" solves, ").append(solvedCount).append(" solved\n");
+        if (count == 0) {
+            return output.toString();
+        }
+        output.append(String.format("%-20s %14s %12s %12s %12s %12s%n", "statistic", "mean", "p50", "p90", "p99", "max"));
+        for (SolveMetrics.Statistic statistic : SolveMetrics.Statistic.values()) {
+            output.append(String.format("%-20s %14.1f %12d %12d %12d %12d%n", statistic.name().toLowerCase(),
+                getMean(statistic), getPercentile(statistic, 50), getPercentile(statistic, 90),
+                getPercentile(statistic, 99), getMax(statistic)));
+        }
+        return output.toString();
+    }
+
+    /**
+     * Returns the fine bucket of a sample. Samples below 2^(SUB_BITS + 1) have a
+     * bucket each; larger ones share it with those having the same SUB_BITS + 1
+     * highest bits.
+     *
+     * @param value the sample, not negative
+     * @return the index of its fine bucket
+     */
+    private static int bucketOf(long value) {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BITS);
+        return (shift << SUB_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * Returns the largest sample that falls into a fine bucket.
+     *
+     * @param bucket the index of the fine bucket
+     * @return the largest sample of the bucket
+     */
+    private static long largestOf(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket >>> SUB_BITS) - 1;
+        long top = (bucket & (SUB_BUCKETS - 1)) + SUB_BUCKETS;
+        return ((top + 1) << shift) - 1;
+    }
+}
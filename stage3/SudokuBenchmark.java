@@ -0,0 +1,608 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.lang.management.ManagementFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Micro-benchmarks of the Sudoku classes: loading boards from files, validation,
+ * copying, rendering and solving, on every bundled puzzle and on a larger corpus
+ * generated from them.
+ *
+ * Every benchmark is first run for a warm-up period, so the JIT compiler has
+ * optimized it, and then measured for a fixed period. For each benchmark the
+ * throughput (operations per second), the average time per operation and the
+ * bytes allocated per operation and per second are reported. Allocation is read
+ * from the JVM's per-thread allocation counter.
+ */
+public class SudokuBenchmark {
+
+    /**
+     * The bundled puzzle files
+     */
+    private static final String[] PUZZLES = {
+        "puzzle_1.txt", "puzzle_2.txt", "puzzle_3.txt", "puzzle_4.txt", "puzzle_5.txt",
+        "solvable_puzzle_1.txt", "solvable_puzzle_2.txt"
+    };
+
+    /**
+     * Number of puzzles in the generated corpus
+     */
+    private static final int CORPUS_SIZE = 200;
+
+    /**
+     * Operation measured by a benchmark
+     */
+    public interface Operation {
+
+        /**
+         * Runs the operation once.
+         * @return any value depending on the work done, so it cannot be optimized away
+         */
+        long run();
+    }
+
+    /**
+     * Warm-up time of every benchmark, in nanoseconds
+     */
+    private final long warmupNanos;
+
+    /**
+     * Measurement time of every benchmark, in nanoseconds
+     */
+    private final long measureNanos;
+
+    /**
+     * Sink of the values returned by operations
+     */
+    private long sink;
+
+    /**
+     * Runs all benchmarks.
+     * @param args optional warm-up and measurement times in milliseconds (default 500 and 1000)
+     */
+    public static void main(String[] args) {
+        long warmup = args.length > 0 ? Long.parseLong(args[0]) : 500;
+        long measure = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        new SudokuBenchmark(warmup, measure).runAll();
+    }
+
+    /**
+     * Constructor of the SudokuBenchmark class.
+     * Precondition: both times are positive
+     *
+     * @param warmupMillis  warm-up time of every benchmark, in milliseconds
+     * @param measureMillis measurement time of every benchmark, in milliseconds
+     */
+    public SudokuBenchmark(long warmupMillis, long measureMillis) {
+        assert warmupMillis > 0 && measureMillis > 0 : "Times must be positive.";
+        warmupNanos = warmupMillis * 1000000L;
+        measureNanos = measureMillis * 1000000L;
+    }
+
+    /**
+     * Runs every benchmark, printing one line per benchmark.
+     */
+    public void runAll() {
+        System.out.printf("%-44s %14s %14s %12s %12s%n", "Benchmark", "ops/s", "ns/op", "B/op", "MB/s alloc");
+        SudokuBoard[] boards = new SudokuBoard[PUZZLES.length];
+        for (int i = 0; i < PUZZLES.length; i++) {
+            boards[i] = new SudokuBoard(PUZZLES[i]);
+        }
+        SudokuBoard board = boards[1];
+
+        for (String puzzle : PUZZLES) {
+            measure("load " + puzzle, () -> new SudokuBoard(puzzle).getCellValue(0, 0));
+            measure("load " + puzzle + " (line reader, regex)", () -> loadWithRegex(puzzle).getCellValue(0, 0));
+        }
+        measure("validValueInCell (81 cells)", () -> {
+            long valid = 0;
+            for (int row = 0; row < SudokuBoard.SIZE; row++) {
+                for (int col = 0; col < SudokuBoard.SIZE; col++) {
+                    valid += board.validValueInCell(row, col) ? 1 : 0;
+                }
+            }
+            return valid;
+        });
+        SudokuBoard solved = board.solve();
+        measure("isSolved (unsolved board)", () -> board.isSolved() ? 1 : 0);
+        measure("isSolved (solved board)", () -> solved.isSolved() ? 1 : 0);
+        measure("copy constructor", () -> new SudokuBoard(board).getCellValue(8, 8));
+        measure("toString default", () -> board.toString().length());
+        SudokuBoard colored = new SudokuBoard(board);
+        colored.setColoredToStringStrategy();
+        measure("toString colored", () -> colored.toString().length());
+        SudokuBoard compact = new SudokuBoard(board);
+        compact.setCompactToStringStrategy();
+        measure("toString compact", () -> compact.toString().length());
+        StringBuilder text = new StringBuilder();
+        measure("appendTo reused StringBuilder", () -> {
+            text.setLength(0);
+            try {
+                board.appendTo(text);
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            return text.length();
+        });
+
+        for (int i = 0; i < PUZZLES.length; i++) {
+            SudokuBoard puzzle = boards[i];
+            measure("solve " + PUZZLES[i], () -> solveResult(puzzle.solve()));
+        }
+        for (int i = 0; i < PUZZLES.length; i++) {
+            SudokuBoard puzzle = boards[i];
+            measure("countSolutions(2) " + PUZZLES[i], () -> puzzle.countSolutions(2));
+        }
+
+        SudokuBoard[] corpus = generateCorpus(boards, CORPUS_SIZE, new Random(42));
+        measureCorpus("recursive depth-first search", corpus, new SudokuBoard.DepthFirstSearchSolve());
+        measureCorpus("iterative depth-first search (default)", corpus, null);
+        measureCorpus("bitmask", corpus, new BitmaskSolver());
+        measureCorpus("bitmask MRV", corpus, new BitmaskSolver(BitmaskSolver.CellOrder.MINIMUM_REMAINING_VALUES));
+        measureCorpus("propagation + search", corpus, new PropagatingSolver());
+        measureCorpus("dancing links", corpus, new DancingLinksSolver());
+        //The same engine again, with and without metrics, to show what recording them costs
+        measureCorpus("propagation + search, no metrics", corpus, new PropagatingSolver());
+        SolveMetrics metrics = new SolveMetrics();
+        measure("corpus solve, propagation + search, metrics", () -> {
+            long total = 0;
+            for (SudokuBoard puzzle : corpus) {
+                total += solveResult(puzzle.solve(metrics));
+            }
+            return total;
+        });
+        //Every puzzle remembered, then a cache too small for a cycle through the corpus, so every lookup misses
+        measureCorpus("propagation + search, cache hits", corpus, new SolutionCache(new PropagatingSolver(), CORPUS_SIZE));
+        measureCorpus("propagation + search, cache misses", corpus, new SolutionCache(new PropagatingSolver(), CORPUS_SIZE / 2));
+        measure("corpus countSolutions(2)", () -> {
+            long total = 0;
+            for (SudokuBoard puzzle : corpus) {
+                total += puzzle.countSolutions(2);
+            }
+            return total;
+        });
+
+        PuzzleGenerator generator = new PuzzleGenerator(42);
+        for (PuzzleGenerator.Symmetry symmetry : PuzzleGenerator.Symmetry.values()) {
+            measure("generate 30 clues, " + symmetry, () -> generator.generate(30, symmetry).getCellValue(0, 0));
+        }
+        measure("generate minimal, NONE", () -> generator.generate(PuzzleGenerator.MIN_CLUES).getCellValue(0, 0));
+
+        PuzzleGenerator seeded = new PuzzleGenerator(7);
+        SudokuBoard[] minimal = new SudokuBoard[200];
+        for (int i = 0; i < minimal.length; i++) {
+            minimal[i] = seeded.generate(PuzzleGenerator.MIN_CLUES);
+        }
+        DifficultyGrader grader = new DifficultyGrader();
+        measure("grade 200 minimal puzzles", () -> {
+            long total = 0;
+            for (SudokuBoard puzzle : minimal) {
+                total += grader.grade(puzzle).getScore();
+            }
+            return total;
+        });
+
+        PuzzleCanonicalizer canonicalizer = new PuzzleCanonicalizer();
+        int[][] minimalGrids = new int[minimal.length][GridSolver.CELLS];
+        for (int i = 0; i < minimal.length; i++) {
+            minimal[i].copyValuesTo(minimalGrids[i]);
+        }
+        int[] canonical = new int[GridSolver.CELLS];
+        measure("canonicalize 200 minimal puzzles", () -> {
+            long total = 0;
+            for (int[] grid : minimalGrids) {
+                canonicalizer.canonicalize(grid, canonical);
+                total += canonical[GridSolver.CELLS - 1];
+            }
+            return total;
+        });
+        StringBuilder lines = new StringBuilder();
+        for (SudokuBoard puzzle : corpus) {
+            SudokuBoard line = new SudokuBoard(puzzle);
+            line.setCompactToStringStrategy();
+            lines.append(line.toString()).append('\n');
+        }
+        byte[] corpusBytes = lines.toString().getBytes();
+        measure("dedupe corpus", () -> {
+            CorpusDeduplicator deduplicator = new CorpusDeduplicator();
+            try {
+                deduplicator.dedupe(new ByteArrayInputStream(corpusBytes), OutputStream.nullOutputStream());
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            return deduplicator.getClassCount();
+        });
+
+
+        //A different board on every call, so the candidates are computed again each time
+        HintEngine engine = new HintEngine();
+        int[] next = new int[1];
+        measure("hint, new board each time", () -> {
+            HintEngine.Hint hint = engine.hint(minimal[next[0]++ % minimal.length]);
+            return hint == null || !hint.isPlacement() ? 0 : hint.getValue();
+        });
+        measure("hints playing a minimal puzzle to the end", () -> {
+            SudokuBoard game = new SudokuBoard(minimal[next[0]++ % minimal.length]);
+            long hints = 0;
+            HintEngine.Hint hint;
+            while ((hint = engine.hint(game)) != null) {
+                if (hint.isPlacement()) {
+                    game.setCellValue(hint.getRow(), hint.getCol(), hint.getValue());
+                }
+                hints++;
+            }
+            return hints;
+        });
+        measureHintLatency(minimal);
+
+        measureGeneralized(4, 0.6, new Random(42));
+        measureGeneralized(5, 0.45, new Random(42));
+        measureGeneralized(5, 0.55, new Random(42));
+        measureGeneralized(5, 0.65, new Random(42));
+    }
+
+    /**
+     * Measures loading checks and solving on puzzles of a larger box size, made
+     * by generatePuzzle(). Puzzles with 55 to 65 percent of empty cells are the
+     * hardest for the solver; their solve times vary widely, so each operation
+     * solves all the puzzles.
+     *
+     * @param boxSize the box size n of the boards
+     * @param holes   the fraction of cells to remove
+     * @param random  the source of randomness
+     */
+    private void measureGeneralized(int boxSize, double holes, Random random) {
+        int size = boxSize * boxSize;
+        GeneralizedSudokuBoard[] puzzles = new GeneralizedSudokuBoard[20];
+        for (int n = 0; n < puzzles.length; n++) {
+            puzzles[n] = new GeneralizedSudokuBoard(boxSize, generatePuzzle(boxSize, holes, random));
+        }
+        String name = size + "x" + size + ", " + Math.round(holes * 100) + "% empty";
+        measure("isSolved + validValueInCell " + name, () -> {
+            long total = 0;
+            for (GeneralizedSudokuBoard puzzle : puzzles) {
+                total += puzzle.isSolved() ? 1 : 0;
+                for (int row = 0; row < size; row++) {
+                    total += puzzle.validValueInCell(row, row) ? 1 : 0;
+                }
+            }
+            return total;
+        });
+        measure("solve 20 puzzles " + name, () -> {
+            long total = 0;
+            for (GeneralizedSudokuBoard puzzle : puzzles) {
+                total += puzzle.solve().getCellValue(0, 0);
+            }
+            return total;
+        });
+    }
+
+    /**
+     * Measures the time of single hint requests while playing puzzles to the end,
+     * and prints the median, the 99th percentile and the maximum: a hint is asked
+     * for in the game loop, so the slowest requests matter more than the mean.
+     * The requests are the same on every pass, so each is timed by its fastest of
+     * five passes, which leaves out pauses of the JVM.
+     *
+     * @param puzzles the puzzles to play
+     */
+    private void measureHintLatency(SudokuBoard[] puzzles) {
+        long[] times = new long[puzzles.length * GridSolver.CELLS];
+        Arrays.fill(times, Long.MAX_VALUE);
+        int count = 0;
+        for (int pass = 0; pass < 5; pass++) {
+            count = 0;
+            HintEngine engine = new HintEngine();
+            for (SudokuBoard puzzle : puzzles) {
+                SudokuBoard game = new SudokuBoard(puzzle);
+                while (true) {
+                    long start = System.nanoTime();
+                    HintEngine.Hint hint = engine.hint(game);
+                    long time = System.nanoTime() - start;
+                    if (count == times.length) {
+                        times = Arrays.copyOf(times, 2 * count);
+                        Arrays.fill(times, count, times.length, Long.MAX_VALUE);
+                    }
+                    times[count] = Math.min(times[count], time);
+                    count++;
+                    if (hint == null) {
+                        break;
+                    }
+                    if (hint.isPlacement()) {
+                        game.setCellValue(hint.getRow(), hint.getCol(), hint.getValue());
+                    }
+                }
+            }
+        }
+        Arrays.sort(times, 0, count);
+        System.out.printf("%-44s %14s %14d%n", "hint latency p50 (" + count + " requests)", "", times[count / 2]);
+        System.out.printf("%-44s %14s %14d%n", "hint latency p99", "", times[count * 99 / 100]);
+        System.out.printf("%-44s %14s %14d%n", "hint latency max", "", times[count - 1]);
+    }
+
+    /**
+     * Measures solving every puzzle of the corpus with a strategy.
+     *
+     * @param name     the name of the strategy
+     * @param corpus   the puzzles to solve
+     * @param strategy the strategy, or null for the default one
+     */
+    private void measureCorpus(String name, SudokuBoard[] corpus, SudokuBoard.SolveStrategy strategy) {
+        for (SudokuBoard puzzle : corpus) {
+            if (strategy == null) {
+                puzzle.setDefaultSolveStrategy();
+            } else {
+                puzzle.setSolveStrategy(strategy);
+            }
+        }
+        measure("corpus solve, " + name, () -> {
+            long total = 0;
+            for (SudokuBoard puzzle : corpus) {
+                total += solveResult(puzzle.solve());
+            }
+            return total;
+        });
+    }
+
+    /**
+     * Runs an operation for the warm-up period, then measures it and prints the results.
+     *
+     * @param name      the name of the benchmark
+     * @param operation the operation to measure
+     * @return the average time per operation, in nanoseconds
+     */
+    public double measure(String name, Operation operation) {
+        run(operation, warmupNanos);
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long operations = run(operation, measureNanos);
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        double nanosPerOp = (double) elapsed / operations;
+        System.out.printf("%-44s %14.1f %14.1f %12.1f %12.1f%n", name,
+            operations * 1e9 / elapsed, nanosPerOp, (double) allocated / operations,
+            allocated / 1e6 / (elapsed / 1e9));
+        return nanosPerOp;
+    }
+
+    /**
+     * Runs an operation repeatedly for a period of time.
+     *
+     * @param operation the operation to run
+     * @param nanos     the length of the period
+     * @return the number of times the operation ran
+     */
+    private long run(Operation operation, long nanos) {
+        long operations = 0;
+        int batch = 1;
+        long now = System.nanoTime();
+        long deadline = now + nanos;
+        do {
+            long batchStart = now;
+            for (int i = 0; i < batch; i++) {
+                sink += operation.run();
+            }
+            operations += batch;
+            now = System.nanoTime();
+            //Grow the batch while it is short, so reading the clock does not dominate fast operations
+            if (now - batchStart < 10000 && batch < (1 << 20)) {
+                batch <<= 1;
+            }
+        } while (now < deadline);
+        return operations;
+    }
+
+    /**
+     * Returns the number of bytes allocated so far by the current thread.
+     *
+     * @return the allocated bytes, or 0 if the JVM cannot report them
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    /**
+     * Loads a board the way the file constructor did before it scanned bytes:
+     * line by line through a BufferedReader, removing non-digits with a regular
+     * expression. Kept as the baseline of the loading benchmarks.
+     *
+     * @param fileName the name of the puzzle file
+     * @return the loaded board
+     */
+    private static SudokuBoard loadWithRegex(String fileName) {
+        int[] grid = new int[GridSolver.CELLS];
+        try (BufferedReader br = new BufferedReader(new FileReader(fileName))) {
+            String line;
+            int row = 0;
+            while ((line = br.readLine()) != null && row < SudokuBoard.SIZE) {
+                String digits = line.replaceAll("[^0-9]", "");
+                if (digits.length() != SudokuBoard.SIZE) {
+                    throw new IllegalArgumentException("Row " + (row) + " invalid: expecting 9 digits.");
+                }
+                for (int col = 0; col < SudokuBoard.SIZE; col++) {
+                    grid[row * SudokuBoard.SIZE + col] = Character.getNumericValue(digits.charAt(col));
+                }
+                row++;
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("File could not be opened: " + fileName, e);
+        }
+        return new SudokuBoard(grid);
+    }
+
+    /**
+     * Turns the result of solve() into a value for the sink.
+     *
+     * @param solved the solved board, or null
+     * @return a value depending on the board
+     */
+    private static long solveResult(SudokuBoard solved) {
+        return solved == null ? 0 : solved.getCellValue(8, 8);
+    }
+
+    /**
+     * Generates puzzles equivalent to the solvable bundled ones by relabeling values,
+     * permuting rows inside bands and columns inside stacks, permuting bands and
+     * stacks, and transposing. The generated puzzles are as hard as their originals.
+     *
+     * @param boards the bundled puzzles
+     * @param count  the number of puzzles to generate
+     * @param random the source of randomness
+     * @return the generated puzzles
+     */
+    public static SudokuBoard[] generateCorpus(SudokuBoard[] boards, int count, Random random) {
+        List<int[]> solvable = new ArrayList<>();
+        for (SudokuBoard board : boards) {
+            if (board.countSolutions(1) > 0) {
+                int[] grid = new int[GridSolver.CELLS];
+                board.copyValuesTo(grid);
+                solvable.add(grid);
+            }
+        }
+        SudokuBoard[] corpus = new SudokuBoard[count];
+        for (int n = 0; n < count; n++) {
+            int[] source = solvable.get(random.nextInt(solvable.size()));
+            int[] rows = randomLinePermutation(random);
+            int[] cols = randomLinePermutation(random);
+            int[] labels = new int[SudokuBoard.SIZE + 1];
+            for (int v = 1; v <= SudokuBoard.SIZE; v++) {
+                labels[v] = v;
+            }
+            for (int v = SudokuBoard.SIZE; v > 1; v--) {
+                int w = 1 + random.nextInt(v);
+                int swap = labels[v];
+                labels[v] = labels[w];
+                labels[w] = swap;
+            }
+            boolean transpose = random.nextBoolean();
+            int[] grid = new int[GridSolver.CELLS];
+            for (int row = 0; row < SudokuBoard.SIZE; row++) {
+                for (int col = 0; col < SudokuBoard.SIZE; col++) {
+                    int from = transpose ? cols[col] * SudokuBoard.SIZE + rows[row] : rows[row] * SudokuBoard.SIZE + cols[col];
+                    grid[row * SudokuBoard.SIZE + col] = labels[source[from]];
+                }
+            }
+            corpus[n] = new SudokuBoard(grid);
+        }
+        return corpus;
+    }
+
+    /**
+     * Generates a puzzle of any box size: a full grid is shuffled by relabeling
+     * values, permuting rows inside bands and columns inside stacks, and permuting
+     * bands and stacks, then each cell is emptied with a given probability. With
+     * 55 to 65 percent of empty cells the puzzles of box size 5 are hard to search,
+     * though not always uniquely solvable.
+     * Precondition: boxSize is between 2 and LongMaskSolver.MAX_BOX_SIZE inclusive
+     *
+     * @param boxSize the box size n
+     * @param holes   the probability of emptying a cell
+     * @param random  the source of randomness
+     * @return the n^4 values of the puzzle in row-major order, 0 for an empty cell
+     */
+    public static int[] generatePuzzle(int boxSize, double holes, Random random) {
+        int size = boxSize * boxSize;
+        int[] full = new int[size * size];
+        new LongMaskSolver(boxSize).solve(full);
+        int[] rows = randomLinePermutation(boxSize, random);
+        int[] cols = randomLinePermutation(boxSize, random);
+        int[] labels = permutation(size, random);
+        int[] grid = new int[size * size];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int value = labels[full[rows[row] * size + cols[col]] - 1] + 1;
+                grid[row * size + col] = random.nextDouble() < holes ? 0 : value;
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Returns a random permutation of the rows (or columns) of a board of any box
+     * size that keeps rows of a band together.
+     *
+     * @param boxSize the box size n
+     * @param random  the source of randomness
+     * @return the permutation of the n^2 lines, mapping new positions to old ones
+     */
+    private static int[] randomLinePermutation(int boxSize, Random random) {
+        int[] bands = permutation(boxSize, random);
+        int[] lines = new int[boxSize * boxSize];
+        for (int band = 0; band < boxSize; band++) {
+            int[] inside = permutation(boxSize, random);
+            for (int i = 0; i < boxSize; i++) {
+                lines[band * boxSize + i] = bands[band] * boxSize + inside[i];
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Returns a random permutation of 0 to count - 1.
+     *
+     * @param count  the number of elements
+     * @param random the source of randomness
+     * @return the permutation
+     */
+    private static int[] permutation(int count, Random random) {
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = i;
+        }
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = values[i];
+            values[i] = values[j];
+            values[j] = swap;
+        }
+        return values;
+    }
+
+    /**
+     * Returns a random permutation of the 9 rows (or columns) that keeps rows of a
+     * band together: the bands are shuffled, and so are the rows inside each band.
+     *
+     * @param random the source of randomness
+     * @return the permutation, mapping new positions to old ones
+     */
+    private static int[] randomLinePermutation(Random random) {
+        int[] bands = shuffled(random);
+        int[] permutation = new int[SudokuBoard.SIZE];
+        for (int band = 0; band < 3; band++) {
+            int[] inside = shuffled(random);
+            for (int i = 0; i < 3; i++) {
+                permutation[band * 3 + i] = bands[band] * 3 + inside[i];
+            }
+        }
+        return permutation;
+    }
+
+    /**
+     * Returns a random permutation of 0, 1 and 2.
+     *
+     * @param random the source of randomness
+     * @return the permutation
+     */
+    private static int[] shuffled(Random random) {
+        int[] values = {0, 1, 2};
+        for (int i = 2; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = values[i];
+            values[i] = values[j];
+            values[j] = swap;
+        }
+        return values;
+    }
+}
@@ -1,6 +1,10 @@
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.BufferedReader;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 import java.util.List;
 import java.util.ArrayList;
@@ -16,15 +20,98 @@ public class SudokuBoard {
     public static final int SIZE = 9;
 
     /**
-     * The 9x9 grid of Sudoku cells
+     * Number of cells of the board (81)
+     */
+    private static final int CELLS = SIZE * SIZE;
+
+    /**
+     * Values of the 81 cells in row-major order, 0 for an empty cell
+     */
+    private byte[] values;
+
+    /**
+     * Fixed flags of cells 0-63, one bit per cell
+     */
+    private long fixedLow;
+
+    /**
+     * Fixed flags of cells 64-80, one bit per cell
+     */
+    private long fixedHigh;
+
+    /**
+     * Number of units: 9 rows, then 9 columns, then 9 boxes
+     */
+    private static final int UNITS = 3 * SIZE;
+
+    /**
+     * Occurrences of every value in every unit, at unitCounts[unit * 10 + value].
+     * Kept up to date by every write, so validity checks do not scan the board.
+     */
+    private byte[] unitCounts;
+
+    /**
+     * Number of cells holding a value between 1 and 9
+     */
+    private int filledCount;
+
+    /**
+     * Number of repeated values over all units: the sum of (occurrences - 1)
+     * over every value that occurs in a unit
+     */
+    private int duplicateCount;
+
+    /**
+     * SudokuCell views of the cells, created on the first call to boardGetter()
+     */
+    private SudokuCell[][] cellViews;
+
+    /**
+     * Shared stateless strategies, so that new boards do not allocate them
+     */
+    private static final ToStringStrategy DEFAULT_TO_STRING = new DefaultBoardToString();
+    private static final ToStringStrategy COLORED_TO_STRING = new ColoredBoardToString();
+    private static final ToStringStrategy COMPACT_TO_STRING = new CompactBoardToString();
+    private static final SolveStrategy DEPTH_FIRST_SEARCH = new DepthFirstSearchSolve();
+    private static final SolveStrategy ITERATIVE_DEPTH_FIRST_SEARCH = new IterativeDepthFirstSearchSolve();
+
+    /**
+     * Solutions remembered by boards using the caching solve strategy, shared by all of them
+     */
+    private static final SolutionCache SOLUTION_CACHE = new SolutionCache(ITERATIVE_DEPTH_FIRST_SEARCH);
+
+    /**
+     * Stack of the iterative depth-first search, one per thread: for every empty
+     * cell, its index and the next value to try
      */
-    private SudokuCell[][] board;
+    private static final ThreadLocal<int[]> SEARCH_STACK = ThreadLocal.withInitial(() -> new int[2 * CELLS]);
+
+    /**
+     * Engine used by countSolutions, one per thread so boards can be checked concurrently
+     */
+    private static final ThreadLocal<BitmaskSolver> COUNTING_SOLVER =
+        ThreadLocal.withInitial(() -> new BitmaskSolver(BitmaskSolver.CellOrder.MINIMUM_REMAINING_VALUES));
+
+    /**
+     * Buffer used to read puzzle files, one per thread so boards can be loaded concurrently
+     */
+    private static final ThreadLocal<ByteBuffer> FILE_BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocate(4096));
+
+    /**
+     * Scratch text used by appendTo for destinations other than a StringBuilder, one per thread
+     */
+    private static final ThreadLocal<StringBuilder> RENDER_BUFFER = ThreadLocal.withInitial(StringBuilder::new);
 
     /**
      * Strategy for toString representation
      */
     private ToStringStrategy toStringStrategy;
 
+    /**
+     * Strategy used by solve() to fill the empty cells
+     */
+    private SolveStrategy solveStrategy;
+
     /**
      * Constructor of the SudokuBoard class. Loads a Sudoku board from a file.
      *
@@ -32,34 +119,144 @@ public class SudokuBoard {
      */
     public SudokuBoard(String contents) {
         setDefaultToStringStrategy();
-        board = new SudokuCell[SIZE][SIZE];
-        try (BufferedReader br = new BufferedReader(new FileReader(contents))) {
-            String line;
-            int row = 0;
-            while ((line = br.readLine()) != null && row < SIZE) {
-                String digits = line.replaceAll("[^0-9]", "");
-                if (digits.length() != SIZE) {
-                    throw new IllegalArgumentException("Row " + (row) + " invalid: expecting 9 digits.");
-                }
-                for (int col = 0; col < SIZE; col++) {
-                    int val = Character.getNumericValue(digits.charAt(col));
-                    if (val < 0 || val > 9) {
-                        throw new IllegalArgumentException("Invalid value in row " + (row) + ", column " + (col));
+        setDefaultSolveStrategy();
+        values = new byte[CELLS];
+        unitCounts = new byte[UNITS * 10];
+        try (FileChannel channel = FileChannel.open(Paths.get(contents), StandardOpenOption.READ)) {
+            load(channel);
+        } catch (IOException | InvalidPathException e) {
+            throw new IllegalArgumentException("File could not be opened: " + contents, e);
+        }
+    }
+
+    /**
+     * Reads the first 9 lines of a puzzle file. Lines end with \n, \r or \r\n, and
+     * every character of a line other than the digits 0-9 is ignored. Each line must
+     * have exactly 9 digits; non-zero values are fixed.
+     *
+     * @param channel the open puzzle file
+     * @throws IOException if reading fails
+     */
+    private void load(FileChannel channel) throws IOException {
+        ByteBuffer buffer = FILE_BUFFER.get();
+        byte[] bytes = buffer.array();
+        int row = 0;
+        int digits = 0;
+        boolean inLine = false;
+        boolean afterReturn = false;
+        while (row < SIZE) {
+            buffer.clear();
+            int read = channel.read(buffer);
+            if (read == -1) {
+                break;
+            }
+            for (int i = 0; i < read && row < SIZE; i++) {
+                byte c = bytes[i];
+                if (c == '\n' && afterReturn) {
+                    //Second half of a \r\n line break
+                    afterReturn = false;
+                } else if (c == '\n' || c == '\r') {
+                    checkRowLength(row, digits);
+                    row++;
+                    digits = 0;
+                    inLine = false;
+                    afterReturn = c == '\r';
+                } else {
+                    afterReturn = false;
+                    inLine = true;
+                    if (c >= '0' && c <= '9') {
+                        if (digits < SIZE) {
+                            write(row * SIZE + digits, c - '0');
+                            setFixed(row * SIZE + digits, c != '0');
+                        }
+                        digits++;
                     }
-                    board[row][col] = new SudokuCell(val,val !=0);
                 }
-                row++;
-            }
-            if ( row != SIZE) {
-                throw new IllegalArgumentException("File must contain exactly 9 lines with 9 digits each.");
             }
-        } catch (IOException e) {
-            throw new IllegalArgumentException("File could not be opened: " + contents, e);
+        }
+        //The last line may have no line break
+        if (row < SIZE && inLine) {
+            checkRowLength(row, digits);
+            row++;
+        }
+        if ( row != SIZE) {
+            throw new IllegalArgumentException("File must contain exactly 9 lines with 9 digits each.");
+        }
+    }
+
+    /**
+     * Checks that a line of a puzzle file has 9 digits.
+     *
+     * @param row    the index of the line
+     * @param digits the number of digits found in the line
+     */
+    private static void checkRowLength(int row, int digits) {
+        if (digits != SIZE) {
+            throw new IllegalArgumentException("Row " + (row) + " invalid: expecting 9 digits.");
         }
     }
     
+    /**
+     * Constructor of the SudokuBoard class. Builds a board from the values of its cells.
+     * Non-zero values are fixed.
+     * Precondition: grid has 81 values between 0 and 9 inclusive, in row-major order
+     *
+     * @param grid the values of the cells, 0 for an empty cell
+     */
+    public SudokuBoard(int[] grid) {
+        assert grid != null && grid.length == CELLS : "The grid must have 81 cells.";
+        setDefaultToStringStrategy();
+        setDefaultSolveStrategy();
+        values = new byte[CELLS];
+        unitCounts = new byte[UNITS * 10];
+        for (int i = 0; i < CELLS; i++) {
+            assert grid[i] >= 0 && grid[i] <= 9 : "Value out of range.";
+            write(i, grid[i]);
+            setFixed(i, grid[i] != 0);
+        }
+    }
+
+    /**
+     * Constructor of the SudokuBoard class. Builds a board from the values and the
+     * fixed flags of its cells.
+     * Precondition: grid has 81 values between 0 and 9 inclusive, in row-major order
+     * Precondition: only cells with non-zero values are fixed
+     *
+     * @param grid      the values of the cells, 0 for an empty cell
+     * @param fixedLow  fixed flags of cells 0-63, one bit per cell
+     * @param fixedHigh fixed flags of cells 64-80, one bit per cell
+     */
+    SudokuBoard(int[] grid, long fixedLow, long fixedHigh) {
+        assert grid != null && grid.length == CELLS : "The grid must have 81 cells.";
+        assert fixedHigh >>> (CELLS - 64) == 0 : "Only 81 cells can be fixed.";
+        setDefaultToStringStrategy();
+        setDefaultSolveStrategy();
+        values = new byte[CELLS];
+        unitCounts = new byte[UNITS * 10];
+        for (int i = 0; i < CELLS; i++) {
+            assert grid[i] >= 0 && grid[i] <= 9 : "Value out of range.";
+            write(i, grid[i]);
+        }
+        this.fixedLow = fixedLow;
+        this.fixedHigh = fixedHigh;
+    }
+
+    /**
+     * Returns the cells of the board as SudokuCell objects. The cells are views:
+     * reading or changing them reads or changes this board.
+     *
+     * @return the 9x9 grid of cells
+     */
     public SudokuCell[][] boardGetter(){
-        return this.board;
+        if (cellViews == null) {
+            cellViews = new SudokuCell[SIZE][SIZE];
+            for (int row = 0; row < SIZE; row++) {
+                for (int col = 0; col < SIZE; col++) {
+                    cellViews[row][col] = new CellView(row * SIZE + col);
+                }
+            }
+        }
+        return cellViews;
     }
 
     /**
@@ -71,15 +268,109 @@ public class SudokuBoard {
     public SudokuBoard(SudokuBoard board) {
         assert board != null : "The board cannot be null";
         setDefaultToStringStrategy();
-        this.board = new SudokuCell[SIZE][SIZE];
-        for(int row = 0; row < SIZE; row++){
-            for (int col = 0; col < SIZE; col++){
-                SudokuCell currentCell = board.board[row][col];
-                int val = currentCell.getValue();
-                boolean isFixed = ( val !=0 );
-                this.board[row][col] = new SudokuCell(val, isFixed);
+        setDefaultSolveStrategy();
+        this.values = board.values.clone();
+        this.unitCounts = board.unitCounts.clone();
+        this.filledCount = board.filledCount;
+        this.duplicateCount = board.duplicateCount;
+        //Every non-empty cell of the copy is fixed
+        for (int i = 0; i < CELLS; i++) {
+            setFixed(i, values[i] != 0);
+        }
+    }
+
+    /**
+     * Returns the value of a cell.
+     *
+     * @param row   the row index of the cell
+     * @param col   the column index of the cell
+     * @return the value of the cell, 0 if it is empty
+     */
+    public int getCellValue(int row, int col) {
+        assert row >= 0 && row < SIZE : "Row index out of bounds.";
+        assert col >= 0 && col < SIZE : "Column index out of bounds.";
+        return values[row * SIZE + col];
+    }
+
+    /**
+     * Copies the values of all cells into a grid, in row-major order.
+     *
+     * @param grid the array receiving the 81 values
+     */
+    void copyValuesTo(int[] grid) {
+        for (int i = 0; i < CELLS; i++) {
+            grid[i] = values[i];
+        }
+    }
+
+    /**
+     * Checks the fixed flag of a cell.
+     *
+     * @param index the index of the cell in row-major order
+     * @return true if the cell is fixed
+     */
+    private boolean isFixed(int index) {
+        return index < 64 ? (fixedLow >>> index & 1) != 0 : (fixedHigh >>> (index - 64) & 1) != 0;
+    }
+
+    /**
+     * Sets or clears the fixed flag of a cell.
+     *
+     * @param index the index of the cell in row-major order
+     * @param fixed the new flag
+     */
+    private void setFixed(int index, boolean fixed) {
+        if (index < 64) {
+            fixedLow = fixed ? fixedLow | 1L << index : fixedLow & ~(1L << index);
+        } else {
+            fixedHigh = fixed ? fixedHigh | 1L << (index - 64) : fixedHigh & ~(1L << (index - 64));
+        }
+    }
+
+    /**
+     * Changes the value of a cell, updating the unit counts, the filled count and
+     * the duplicate count. Values outside 1-9 are stored but not counted.
+     *
+     * @param index the index of the cell in row-major order
+     * @param value the new value of the cell, 0 for an empty cell
+     */
+    private void write(int index, int value) {
+        int old = values[index];
+        if (old == value) {
+            return;
+        }
+        int row = index / SIZE;
+        int col = index % SIZE;
+        int rowSlot = row * 10;
+        int colSlot = (SIZE + col) * 10;
+        int boxSlot = (2 * SIZE + (row / 3) * 3 + col / 3) * 10;
+        if (old >= 1 && old <= 9) {
+            filledCount--;
+            //Each unit still holding the old value had a duplicate of it
+            if (--unitCounts[rowSlot + old] > 0) {
+                duplicateCount--;
+            }
+            if (--unitCounts[colSlot + old] > 0) {
+                duplicateCount--;
+            }
+            if (--unitCounts[boxSlot + old] > 0) {
+                duplicateCount--;
             }
         }
+        if (value >= 1 && value <= 9) {
+            filledCount++;
+            //Each unit that already held the new value now has a duplicate of it
+            if (++unitCounts[rowSlot + value] > 1) {
+                duplicateCount++;
+            }
+            if (++unitCounts[colSlot + value] > 1) {
+                duplicateCount++;
+            }
+            if (++unitCounts[boxSlot + value] > 1) {
+                duplicateCount++;
+            }
+        }
+        values[index] = (byte) value;
     }
 
     /**
@@ -97,13 +388,12 @@ public class SudokuBoard {
         assert row >= 0 && row < SIZE : "Row index out of bounds.";
         assert col >= 0 && col < SIZE : "Column index out of bounds.";
         assert value >= 1 && value <= 9 : "Value out of range.";
-        assert !board[row][col].isFixed(): "Cannot change the value of a fixed cell.";
+        assert !isFixed(row * SIZE + col): "Cannot change the value of a fixed cell.";
         assert !containsInRow(row, value) : "Value already exists in the same row.";
         assert !containsInColumn(col, value) : "Value already exists in the same column.";
         assert !containsInBox(row, col, value) : "Value already exists in the same 3x3 box.";
-        SudokuCell cell = board[row][col];
-        cell.setValue(value);
-        cell.makeFixed();
+        write(row * SIZE + col, value);
+        setFixed(row * SIZE + col, true);
     }
 
     /**
@@ -116,12 +406,7 @@ public class SudokuBoard {
     public boolean containsInRow(int row, int value) {
         assert row >= 0 && row < SIZE : "Row index out of bounds.";
         assert value >= 1 && value <= 9 : "Value out of range.";
-        for (int col = 0; col < SIZE; col++) {
-            if (board[row][col].getValue() == value) {
-                return true;
-            }
-        }
-        return false;
+        return unitCounts[row * 10 + value] > 0;
     }
 
     /**
@@ -134,12 +419,7 @@ public class SudokuBoard {
     public boolean containsInColumn(int col, int value) {
         assert col >= 0 && col < SIZE : "Column index out of bounds.";
         assert value >= 1 && value <= 9 : "Value out of range.";
-        for (int row = 0; row < SIZE; row++) {
-            if (board[row][col].getValue() == value) {
-                return true;
-            }
-        }
-        return false;
+        return unitCounts[(SIZE + col) * 10 + value] > 0;
     }
 
     /**
@@ -154,20 +434,7 @@ public class SudokuBoard {
         assert row >= 0 && row < SIZE : "Row index out of bounds.";
         assert col >= 0 && col < SIZE : "Column index out of bounds.";
         assert value >= 1 && value <= 9 : "Value out of range.";
-        
-        //Fix the start-Row and start-col
-        int boxRow = (row / 3) * 3;
-        int boxCol = (col / 3) * 3;
-        
-        //Check the box
-        for (int i = boxRow; i < boxRow + 3; i++){
-            for (int j = boxCol; j < boxCol + 3; j++){
-                if(board[i][j].getValue() == value){
-                    return true;
-                }
-            }    
-        }
-        return false;
+        return unitCounts[(2 * SIZE + (row / 3) * 3 + col / 3) * 10 + value] > 0;
     }
 
     /**
@@ -195,52 +462,18 @@ public class SudokuBoard {
     public boolean isCellFixed(int row, int col) {
         assert row >= 0 && row < SIZE : "Row index out of bounds.";
         assert col >= 0 && col < SIZE : "Column index out of bounds.";
-        return board[row][col].isFixed();
+        return isFixed(row * SIZE + col);
     }
 
     /**
      * Checks if the Sudoku board is completely and correctly solved.
+     * Runs in constant time, using the counts kept up to date by every write.
      *
      * @return true if the board is solved, false otherwise
      */
     public boolean isSolved() {
-        //Check the value
-        for (int row = 0; row < SIZE; row++){
-            for (int col = 0; col < SIZE; col++){
-                if(board[row][col].getValue() < 1 || board[row][col].getValue() > 9){
-                    return false;
-                }
-            }
-        }
-        //Check the row, I'll check all the values appeared, and since we have only 9 cells, if 1-9 appeared, then they will only appear once
-        for (int row = 0; row < SIZE; row++){
-            for (int val = 1; val <= SIZE; val++){
-                if(!containsInRow(row,val)){
-                    return false;
-                }
-            }
-        }
-        //Check the col, I'll check all the values appeared, and since we have only 9 cells, if 1-9 appeared, then they will only appear once
-        for (int col = 0; col < SIZE; col++){
-            for (int val = 1; val <= SIZE; val++){
-                if(!containsInColumn(col,val)){
-                    return false;
-                }
-            }
-        }
-        //Check the box, I'll check all the values appeared, and since we have only 9 cells, if 1-9 appeared, then they will only appear once
-        for (int boxRow = 0; boxRow < (SIZE/3); boxRow++){
-            for (int boxCol = 0; boxCol < (SIZE/3); boxCol++){
-                int boxStartRow = boxRow * 3;
-                int boxStartCol = boxCol * 3;
-                for(int val = 1; val <= SIZE; val++){
-                    if(!containsInBox(boxStartRow,boxStartCol,val)){
-                        return false;
-                    }
-                }
-            }
-        }
-        return true;
+        //With every cell filled and no value repeated in any unit, each unit holds 1-9 exactly once
+        return filledCount == CELLS && duplicateCount == 0;
     }
 
     /**
@@ -252,14 +485,43 @@ public class SudokuBoard {
     public SudokuBoard solve() {
        //We need a copy of the board!
        SudokuBoard copy = new SudokuBoard(this);
-       if(depthFirstSearch(copy)){
+       if(solveStrategy.solve(copy)){
            return copy;
        }
        else{
            return null;
        }
     }
+
+    /**
+     * Attempts to solve the Sudoku board, recording what the solve strategy did.
+     * With null metrics this is the same as solve().
+     *
+     * @param metrics the metrics to fill, reset first, or null to record nothing
+     * @return a solved SudokuBoard instance if solvable, null otherwise
+     */
+    public SudokuBoard solve(SolveMetrics metrics) {
+        if (metrics == null) {
+            return solve();
+        }
+        SudokuBoard copy = new SudokuBoard(this);
+        return metrics.run(solveStrategy, copy) ? copy : null;
+    }
     
+    /**
+     * Counts the solutions of the board, stopping as soon as limit solutions are found.
+     * A limit of 2 is enough to check whether the board has exactly one solution.
+     * The board is not modified.
+     * Precondition: limit is at least 1
+     *
+     * @param limit the maximum number of solutions to look for
+     * @return the number of solutions, or limit if there are limit or more
+     */
+    public int countSolutions(int limit) {
+        assert limit >= 1 : "The limit must be at least 1.";
+        return COUNTING_SOLVER.get().countSolutions(this, limit);
+    }
+
     /**
      * Use depth-first search to fill the cell
      * 
@@ -270,20 +532,20 @@ public class SudokuBoard {
         //First, we find the empty cell, and use 1-9 to fill it
         for (int row = 0; row < SIZE; row++){
             for (int col = 0; col < SIZE; col++){
-                SudokuCell currentCell = board.board[row][col];
+                int index = row * SIZE + col;
                 //We donot need to consider the fixed cell or the cell has number
-                if ( currentCell.isFixed() || currentCell.getValue() != 0 ){
+                if ( board.isFixed(index) || board.values[index] != 0 ){
                     continue;
                 }
                 for (int num = 1; num <= 9; num++){
-                    currentCell.setValue(num);
+                    board.write(index, num);
                     if (board.validValueInCell(row,col)){
                         if(depthFirstSearch(board)){
                             return true;
                         }
                     }
                     //Not valid, we need to set the cell 0, and fill another number into t
-                    currentCell.setValue(0);
+                    board.write(index, 0);
                 }
                 //all the number 1-9 have been tried, no solution!
                 return false;
@@ -292,6 +554,71 @@ public class SudokuBoard {
         //All the cells are filled
         return true;
     }
+
+    /**
+     * Fills the empty cells the same way as depthFirstSearch, in the same order and
+     * with the same result, but without recursion: the empty cells are listed once,
+     * and the value being tried in each of them is kept on a preallocated stack.
+     *
+     * @return true if successfully solved, false else
+     */
+    public boolean iterativeDepthFirstSearch() {
+        return iterativeDepthFirstSearch(null);
+    }
+
+    /**
+     * Runs the iterative depth-first search, reporting its counters to metrics.
+     *
+     * @param metrics the metrics to update, or null
+     * @return true if successfully solved, false else
+     */
+    private boolean iterativeDepthFirstSearch(SolveMetrics metrics) {
+        int[] stack = SEARCH_STACK.get();
+        //The cells depthFirstSearch would fill, in the order it fills them
+        int count = 0;
+        for (int index = 0; index < CELLS; index++) {
+            if (!isFixed(index) && values[index] == 0) {
+                stack[2 * count++] = index;
+            }
+        }
+        long nodes = 0;
+        long backtracks = 0;
+        int maxDepth = 0;
+        int depth = 0;
+        if (count > 0) {
+            stack[1] = 1;
+        }
+        while (depth >= 0 && depth < count) {
+            int index = stack[2 * depth];
+            int num = stack[2 * depth + 1];
+            boolean placed = false;
+            while (num <= SIZE && !placed) {
+                write(index, num++);
+                placed = validValueInCell(index / SIZE, index % SIZE);
+            }
+            if (placed) {
+                //Go down, remembering where to resume in this cell
+                nodes++;
+                stack[2 * depth + 1] = num;
+                depth++;
+                maxDepth = Math.max(maxDepth, depth);
+                if (depth < count) {
+                    stack[2 * depth + 1] = 1;
+                }
+            } else {
+                //All the numbers have been tried: empty the cell and go back up
+                write(index, 0);
+                backtracks++;
+                depth--;
+            }
+        }
+        if (metrics != null) {
+            metrics.add(SolveMetrics.Statistic.NODES, nodes);
+            metrics.add(SolveMetrics.Statistic.BACKTRACKS, backtracks);
+            metrics.max(SolveMetrics.Statistic.MAX_DEPTH, maxDepth);
+        }
+        return depth == count;
+    }
     
     /**
      * Sets the value of a cell.
@@ -307,9 +634,23 @@ public class SudokuBoard {
         assert row >= 0 && row < SIZE : "Row index out of bounds.";
         assert col >= 0 && col < SIZE : "Column index out of bounds.";
         assert value >= 1 && value <= 9 : "Value out of range.";
-        SudokuCell cell = board[row][col];
-        assert !cell.isFixed(): "Cannot change the value of a fixed cell.";
-        cell.setValue(value);
+        assert !isFixed(row * SIZE + col): "Cannot change the value of a fixed cell.";
+        write(row * SIZE + col, value);
+    }
+
+    /**
+     * Empties a cell.
+     * Precondition: row and col are between 0 and 8 inclusive
+     * Precondition: the cell at (row, col) is not fixed
+     *
+     * @param row the row index of the cell
+     * @param col the column index of the cell
+     */
+    public void clearCellValue(int row, int col) {
+        assert row >= 0 && row < SIZE : "Row index out of bounds.";
+        assert col >= 0 && col < SIZE : "Column index out of bounds.";
+        assert !isFixed(row * SIZE + col): "Cannot change the value of a fixed cell.";
+        write(row * SIZE + col, 0);
     }
 
     /**
@@ -319,67 +660,126 @@ public class SudokuBoard {
      * @param row   the row index of the cell
      * @param col   the column index of the cell
      * @return true iff cell is unset or has valid (non-conflicting with rows, columns and boxes) value 
-     * according to Sudoku rules.
+     * according to Sudoku rules. Runs in constant time.
      */
     public boolean validValueInCell(int row, int col) {
-        //TODO Implement this method
         if (row < 0 || row >= 9 || col < 0 || col >= 9){
             return false;
         }
-        SudokuCell currentCell = board[row][col];
-        if ( currentCell.getValue() == 0 ){
+        int value = values[row * SIZE + col];
+        if ( value == 0 ){
             return true;
         }
         
-        if ( currentCell.getValue() < 1 || currentCell.getValue() > 9){
+        if ( value < 1 || value > 9){
             return false;
         }
-        //check the column value
-        for ( int i = 0; i < 9; i++ ){
-            if ( i == row ){
-                continue;
-            }
-            if ( board[i][col].getValue() == currentCell.getValue()){
-                return false;
-            }
-        }
-        //check the row value
-        for ( int j = 0; j < 9; j++){
-            if ( j == col ){
-                continue;
-            }
-            if ( board[row][j].getValue() == currentCell.getValue()){
-                return false;
-            }
-        }
-        //check the box
-        int startRow = (row/3)*3;
-        int startCol = (col/3)*3;
-        for ( int i = startRow; i < startRow + (SIZE/3); i++){
-            for (int j = startCol; j < startCol + (SIZE/3); j++){
-                if ( i ==row && j == col){
-                    continue;
-                }
-                if (board[i][j].getValue() == currentCell.getValue()){
-                    return false;
-                }
-            }
-        }
-        return true;
+        //The cell itself is the only occurrence of its value in its row, column and box
+        return unitCounts[row * 10 + value] == 1
+            && unitCounts[(SIZE + col) * 10 + value] == 1
+            && unitCounts[(2 * SIZE + (row / 3) * 3 + col / 3) * 10 + value] == 1;
     }
 
     /**
      * Sets the toString strategy to use colored output.
      */
     public void setColoredToStringStrategy() {
-        toStringStrategy = new ColoredBoardToString();
+        toStringStrategy = COLORED_TO_STRING;
     }
 
     /**
      * Sets the toString strategy to use default output.
      */
     public void setDefaultToStringStrategy() {
-        toStringStrategy = new DefaultBoardToString();
+        toStringStrategy = DEFAULT_TO_STRING;
+    }
+
+    /**
+     * Sets the toString strategy to a single line of 81 digits, 0 for empty cells.
+     */
+    public void setCompactToStringStrategy() {
+        toStringStrategy = COMPACT_TO_STRING;
+    }
+
+    /**
+     * Sets the solve strategy to the iterative depth-first search.
+     */
+    public void setDefaultSolveStrategy() {
+        solveStrategy = ITERATIVE_DEPTH_FIRST_SEARCH;
+    }
+
+    /**
+     * Sets the solve strategy to the recursive depth-first search.
+     */
+    public void setRecursiveSolveStrategy() {
+        solveStrategy = DEPTH_FIRST_SEARCH;
+    }
+
+    /**
+     * Sets the solve strategy to the iterative depth-first search behind the
+     * solution cache shared by all boards, so solving a puzzle solved before by
+     * any board, even unsuccessfully, does not search again.
+     */
+    public void setCachingSolveStrategy() {
+        solveStrategy = SOLUTION_CACHE;
+    }
+
+    /**
+     * Returns the solution cache used by the caching solve strategy, for its counters.
+     *
+     * @return the cache shared by all boards
+     */
+    public static SolutionCache getSolutionCache() {
+        return SOLUTION_CACHE;
+    }
+
+    /**
+     * Sets the solve strategy to the bitmask-based backtracking engine.
+     */
+    public void setBitmaskSolveStrategy() {
+        solveStrategy = new BitmaskSolver();
+    }
+
+    /**
+     * Sets the solve strategy to the bitmask-based engine that always fills the
+     * empty cell with the fewest remaining candidates first.
+     */
+    public void setMrvSolveStrategy() {
+        solveStrategy = new BitmaskSolver(BitmaskSolver.CellOrder.MINIMUM_REMAINING_VALUES);
+    }
+
+    /**
+     * Sets the solve strategy to constraint propagation followed by a search on
+     * the cells propagation could not fill.
+     */
+    public void setPropagatingSolveStrategy() {
+        solveStrategy = new PropagatingSolver();
+    }
+
+    /**
+     * Sets the solve strategy to the Dancing Links exact cover engine.
+     */
+    public void setDancingLinksSolveStrategy() {
+        solveStrategy = new DancingLinksSolver();
+    }
+
+    /**
+     * Sets the solve strategy to the search that splits hard puzzles into parallel
+     * subtasks on the common fork-join pool.
+     */
+    public void setParallelSolveStrategy() {
+        solveStrategy = new ParallelSearchSolver();
+    }
+
+    /**
+     * Sets the strategy used by solve().
+     * Precondition: strategy is not null
+     *
+     * @param strategy the solve strategy to use
+     */
+    public void setSolveStrategy(SolveStrategy strategy) {
+        assert strategy != null : "The solve strategy cannot be null";
+        solveStrategy = strategy;
     }
 
     /**
@@ -392,6 +792,27 @@ public class SudokuBoard {
         return toStringStrategy.toString(this);
     }
 
+    /**
+     * Appends the representation of the board given by the toString strategy in use.
+     * A StringBuilder receives the text directly; other destinations receive it
+     * from a per-thread scratch buffer, so rendering many boards allocates no strings.
+     * Precondition: out is not null
+     *
+     * @param out the destination of the text
+     * @throws IOException if out cannot be written
+     */
+    public void appendTo(Appendable out) throws IOException {
+        assert out != null : "The destination cannot be null";
+        if (out instanceof StringBuilder) {
+            toStringStrategy.appendTo(this, (StringBuilder) out);
+            return;
+        }
+        StringBuilder text = RENDER_BUFFER.get();
+        text.setLength(0);
+        toStringStrategy.appendTo(this, text);
+        out.append(text);
+    }
+
     /**
      * Strategy interface for toString representation
      */
@@ -403,12 +824,125 @@ public class SudokuBoard {
          * @return string representation of the board
          */
         String toString(SudokuBoard board);
+
+        /**
+         * Appends the string representation of the board to a StringBuilder.
+         * The default implementation appends toString(board).
+         * @param board the Sudoku board to convert
+         * @param out the StringBuilder receiving the text
+         */
+        default void appendTo(SudokuBoard board, StringBuilder out) {
+            out.append(toString(board));
+        }
+    }
+
+    /**
+     * Strategy interface for solving a board
+     */
+    public interface SolveStrategy {
+
+        /**
+         * Fills the empty cells of the board in place.
+         * @param board the Sudoku board to solve
+         * @return true if the board was solved, false if it has no solution
+         */
+        boolean solve(SudokuBoard board);
+
+        /**
+         * Fills the empty cells of the board in place, reporting what was done to metrics.
+         * The default implementation only records the time of the whole call as search time.
+         * Precondition: metrics is not null
+         *
+         * @param board   the Sudoku board to solve
+         * @param metrics the metrics receiving the counters of the engine
+         * @return true if the board was solved, false if it has no solution
+         */
+        default boolean solve(SudokuBoard board, SolveMetrics metrics) {
+            long start = System.nanoTime();
+            boolean solved = solve(board);
+            metrics.add(SolveMetrics.Statistic.SEARCH_NANOS, System.nanoTime() - start);
+            return solved;
+        }
+    }
+
+    /**
+     * Implementation of SolveStrategy that uses depthFirstSearch.
+     */
+    public static class DepthFirstSearchSolve implements SolveStrategy {
+
+        /**
+         * Solves the given board with depthFirstSearch.
+         *
+         * @param sb the SudokuBoard to be solved
+         * @return true if the board was solved, false otherwise
+         */
+        public boolean solve(SudokuBoard sb) {
+            return sb.depthFirstSearch(sb);
+        }
+
+    }
+
+    /**
+     * Implementation of SolveStrategy that uses iterativeDepthFirstSearch. It gives
+     * the same results as DepthFirstSearchSolve without a stack frame per cell, and
+     * is the default strategy.
+     */
+    public static class IterativeDepthFirstSearchSolve implements SolveStrategy {
+
+        /**
+         * Solves the given board with iterativeDepthFirstSearch.
+         *
+         * @param sb the SudokuBoard to be solved
+         * @return true if the board was solved, false otherwise
+         */
+        public boolean solve(SudokuBoard sb) {
+            return sb.iterativeDepthFirstSearch();
+        }
+
+        /**
+         * Solves the given board with iterativeDepthFirstSearch, reporting the nodes,
+         * backtracks, maximum depth and time of the search.
+         *
+         * @param sb      the SudokuBoard to be solved
+         * @param metrics the metrics receiving the counters of the search
+         * @return true if the board was solved, false otherwise
+         */
+        public boolean solve(SudokuBoard sb, SolveMetrics metrics) {
+            long start = System.nanoTime();
+            boolean solved = sb.iterativeDepthFirstSearch(metrics);
+            metrics.add(SolveMetrics.Statistic.SEARCH_NANOS, System.nanoTime() - start);
+            return solved;
+        }
+
+    }
+
+    /**
+     * Returns the text of a cell followed by a space, for every value and fixed flag.
+     *
+     * @param prefix text placed before every cell
+     * @param suffix text placed after every cell, before the space
+     * @return the texts, at index value * 2 + (fixed ? 1 : 0)
+     */
+    private static String[] cellTokens(String prefix, String suffix) {
+        String[] tokens = new String[20];
+        for (int value = 0; value <= 9; value++) {
+            tokens[value * 2] = prefix + SudokuCell.toString(value, false) + suffix + " ";
+            tokens[value * 2 + 1] = prefix + SudokuCell.toString(value, true) + suffix + " ";
+        }
+        return tokens;
     }
 
     /**
      * Implementation of ToStringStrategy that provides colored output.
      */
-    public class ColoredBoardToString implements ToStringStrategy {
+    public static class ColoredBoardToString implements ToStringStrategy {
+
+        /**
+         * Texts of fixed cells, and of valid and invalid non-fixed cells
+         */
+        private static final String[] FIXED = cellTokens("\u001B[30m", "\u001B[0m");
+        private static final String[] VALID = cellTokens("\u001B[34m", "\u001B[0m");
+        private static final String[] INVALID = cellTokens("\u001B[31m", "\u001B[0m");
 
         /**
          * Converts the given SudokuBoard object to its string representation
@@ -418,23 +952,33 @@ public class SudokuBoard {
          * @return the string representation of the board
          */
         public String toString(SudokuBoard sb) {
-            String output = "";
+            StringBuilder output = new StringBuilder(SIZE * (SIZE * FIXED[2].length() + 1));
+            appendTo(sb, output);
+            return output.toString();
+        }
+
+        /**
+         * Appends the colored representation of the given board. Validity of
+         * non-fixed cells comes from the unit counts kept by the board.
+         *
+         * @param sb     the SudokuBoard to be converted
+         * @param output the StringBuilder receiving the text
+         */
+        public void appendTo(SudokuBoard sb, StringBuilder output) {
             for (int i = 0; i < SIZE; i++) {
                 for (int j = 0; j < SIZE; j++) {
-                    SudokuCell cell = sb.board[i][j];
-                    if (!cell.isFixed()) {
-                        if (validValueInCell(i, j)) {
-                            output += "\u001B[34m" + cell.toString() + "\u001B[0m ";
-                        } else {
-                            output += "\u001B[31m" + cell.toString() + "\u001B[0m ";
-                        }
+                    int index = i * SIZE + j;
+                    int value = sb.values[index];
+                    if (sb.isFixed(index)) {
+                        output.append(FIXED[value * 2 + 1]);
+                    } else if (sb.validValueInCell(i, j)) {
+                        output.append(VALID[value * 2]);
                     } else {
-                        output += "\u001B[30m" + cell.toString() + "\u001B[0m ";
+                        output.append(INVALID[value * 2]);
                     }
                 }
-                output += "\n";
+                output.append('\n');
             }
-            return output;
         }
 
     }
@@ -442,7 +986,12 @@ public class SudokuBoard {
     /**
      * Default implementation of ToStringStrategy without colors.
      */
-    public class DefaultBoardToString implements ToStringStrategy {
+    public static class DefaultBoardToString implements ToStringStrategy {
+
+        /**
+         * Texts of the cells
+         */
+        private static final String[] TOKENS = cellTokens("", "");
 
         /**
          * Converts the given SudokuBoard object to its string representation.
@@ -451,17 +1000,104 @@ public class SudokuBoard {
          * @return the string representation of the board
          */
         public String toString(SudokuBoard sb) {
-            String output = "";
+            StringBuilder output = new StringBuilder(SIZE * (SIZE * TOKENS[0].length() + 1));
+            appendTo(sb, output);
+            return output.toString();
+        }
+
+        /**
+         * Appends the representation of the given board.
+         *
+         * @param sb     the SudokuBoard to be converted
+         * @param output the StringBuilder receiving the text
+         */
+        public void appendTo(SudokuBoard sb, StringBuilder output) {
             for (int i = 0; i < SIZE; i++) {
                 for (int j = 0; j < SIZE; j++) {
-                    SudokuCell cell = sb.board[i][j];
-                    output += cell.toString() + " ";
+                    int index = i * SIZE + j;
+                    output.append(TOKENS[sb.values[index] * 2 + (sb.isFixed(index) ? 1 : 0)]);
                 }
-                output += "\n";
+                output.append('\n');
+            }
+        }
+
+    }
+
+    /**
+     * Implementation of ToStringStrategy that writes the board as a single line of
+     * 81 digits in row-major order, 0 for empty cells, as read by PuzzleLineReader.
+     */
+    public static class CompactBoardToString implements ToStringStrategy {
+
+        /**
+         * Converts the given SudokuBoard object to its one-line representation.
+         *
+         * @param sb the SudokuBoard to be converted
+         * @return the 81 digits of the board
+         */
+        public String toString(SudokuBoard sb) {
+            StringBuilder output = new StringBuilder(CELLS);
+            appendTo(sb, output);
+            return output.toString();
+        }
+
+        /**
+         * Appends the 81 digits of the given board.
+         *
+         * @param sb     the SudokuBoard to be converted
+         * @param output the StringBuilder receiving the text
+         */
+        public void appendTo(SudokuBoard sb, StringBuilder output) {
+            for (int index = 0; index < CELLS; index++) {
+                output.append((char) ('0' + sb.values[index]));
             }
-            return output;
         }
 
     }
 
+    /**
+     * SudokuCell that reads and writes one cell of this board.
+     */
+    private class CellView extends SudokuCell {
+
+        /**
+         * The index of the cell in row-major order
+         */
+        private final int index;
+
+        /**
+         * Constructor of the CellView class.
+         *
+         * @param index the index of the cell in row-major order
+         */
+        CellView(int index) {
+            super(0, false);
+            this.index = index;
+        }
+
+        public int getValue() {
+            return values[index];
+        }
+
+        public void setValue(int value) {
+            assert !SudokuBoard.this.isFixed(index) : "The cell is not fixed";
+            write(index, value);
+        }
+
+        public void makeFixed() {
+            assert !SudokuBoard.this.isFixed(index) : "Cell is already fixed.";
+            assert values[index] != 0 : "The cell has a non-zero value";
+            setFixed(index, true);
+        }
+
+        public void makeUnfixed() {
+            assert SudokuBoard.this.isFixed(index) : "Cell is already fixed.";
+            setFixed(index, false);
+        }
+
+        public boolean isFixed() {
+            return SudokuBoard.this.isFixed(index);
+        }
+    }
+
 }
\ No newline at end of file
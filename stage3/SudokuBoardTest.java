@@ -5,6 +5,25 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * Test class containing tests of the SudokuBoard class.
  *
@@ -96,4 +115,1297 @@ public class SudokuBoardTest {
         assertNull(solvedBoard);
     }
     
-}
\ No newline at end of file
+    /**
+     * Tests that the bitmask engine finds the same solution as depthFirstSearch
+     * on every bundled puzzle, and also reports the unsolvable ones.
+     */
+    @Test
+    public void testBitmaskSolveMatchesDepthFirstSearch() {
+        for (String puzzle : PUZZLES) {
+            SudokuBoard board = new SudokuBoard(puzzle);
+            SudokuBoard expected = board.solve();
+            board.setBitmaskSolveStrategy();
+            assertSameValues(expected, board.solve());
+        }
+    }
+
+    /**
+     * Tests that the bitmask engine rejects a board whose given values conflict.
+     */
+    @Test
+    public void testBitmaskSolveConflictingBoard() {
+        SudokuBoard board = new SudokuBoard("solvable_puzzle_2.txt");
+        board.setCellValue(8, 6, 9);
+        board.setBitmaskSolveStrategy();
+        assertNull(board.solve());
+    }
+
+    /**
+     * Tests that the MRV order finds valid solutions and visits fewer nodes than
+     * the row-major order on puzzle_4.txt.
+     */
+    @Test
+    public void testMrvSolvePrunesSearch() {
+        for (String puzzle : PUZZLES) {
+            SudokuBoard board = new SudokuBoard(puzzle);
+            SudokuBoard expected = board.solve();
+            board.setMrvSolveStrategy();
+            SudokuBoard solved = board.solve();
+            assertEquals(expected == null, solved == null);
+            assertTrue(solved == null || solved.isSolved());
+        }
+        SudokuBoard board = new SudokuBoard("puzzle_4.txt");
+        BitmaskSolver rowMajor = new BitmaskSolver();
+        BitmaskSolver mrv = new BitmaskSolver(BitmaskSolver.CellOrder.MINIMUM_REMAINING_VALUES);
+        board.setSolveStrategy(rowMajor);
+        board.solve();
+        board.setSolveStrategy(mrv);
+        board.solve();
+        assertTrue(mrv.getNodeCount() < rowMajor.getNodeCount());
+    }
+
+    /**
+     * Tests that propagation followed by search agrees with depthFirstSearch on
+     * every bundled puzzle.
+     */
+    @Test
+    public void testPropagatingSolve() {
+        for (String puzzle : PUZZLES) {
+            SudokuBoard board = new SudokuBoard(puzzle);
+            SudokuBoard expected = board.solve();
+            board.setPropagatingSolveStrategy();
+            SudokuBoard solved = board.solve();
+            assertEquals(expected == null, solved == null);
+            assertTrue(solved == null || solved.isSolved());
+        }
+    }
+
+    /**
+     * Tests that propagating solvable_puzzle_2.txt fills it with singles alone,
+     * without modifying the original board.
+     */
+    @Test
+    public void testPropagateSingles() {
+        SudokuBoard board = new SudokuBoard("solvable_puzzle_2.txt");
+        ConstraintPropagator propagator = new ConstraintPropagator();
+        SudokuBoard propagated = propagator.propagate(board);
+        assertTrue(propagated.isSolved());
+        assertEquals(0, board.boardGetter()[0][0].getValue());
+        assertEquals(5, propagator.getPlacements());
+        assertEquals(5, propagator.getCount(ConstraintPropagator.Technique.NAKED_SINGLE)
+            + propagator.getCount(ConstraintPropagator.Technique.HIDDEN_SINGLE));
+    }
+
+    /**
+     * Tests that the Dancing Links engine reports the same solvability as
+     * depthFirstSearch, and the same solution on uniquely solvable puzzles.
+     */
+    @Test
+    public void testDancingLinksSolve() {
+        SudokuBoard.SolveStrategy dancingLinks = new DancingLinksSolver();
+        for (String puzzle : PUZZLES) {
+            SudokuBoard board = new SudokuBoard(puzzle);
+            SudokuBoard expected = board.solve();
+            board.setSolveStrategy(dancingLinks);
+            SudokuBoard solved = board.solve();
+            assertEquals(expected == null, solved == null);
+            assertTrue(solved == null || solved.isSolved());
+        }
+        for (String puzzle : new String[] {"puzzle_2.txt", "solvable_puzzle_1.txt", "solvable_puzzle_2.txt"}) {
+            SudokuBoard board = new SudokuBoard(puzzle);
+            SudokuBoard expected = board.solve();
+            board.setSolveStrategy(dancingLinks);
+            assertSameValues(expected, board.solve());
+        }
+    }
+
+    /**
+     * Tests countSolutions against the Dancing Links counter, and that counting
+     * leaves the board untouched.
+     */
+    @Test
+    public void testCountSolutions() {
+        DancingLinksSolver dancingLinks = new DancingLinksSolver();
+        for (String puzzle : PUZZLES) {
+            SudokuBoard board = new SudokuBoard(puzzle);
+            for (int limit = 1; limit <= 3; limit++) {
+                assertEquals(dancingLinks.countSolutions(board, limit), board.countSolutions(limit));
+            }
+        }
+        assertEquals(0, new SudokuBoard("puzzle_1.txt").countSolutions(2));
+        assertEquals(1, new SudokuBoard("puzzle_2.txt").countSolutions(2));
+        assertEquals(2, new SudokuBoard("puzzle_5.txt").countSolutions(2));
+        SudokuBoard board = new SudokuBoard("solvable_puzzle_2.txt");
+        assertEquals(1, board.countSolutions(2));
+        assertEquals(0, board.boardGetter()[0][0].getValue());
+    }
+
+    /**
+     * Tests that copies do not share cells with the original board, and that the
+     * cells returned by boardGetter() read and write the board.
+     */
+    @Test
+    public void testCopyAndCellViews() {
+        SudokuBoard board = new SudokuBoard("puzzle_1.txt");
+        SudokuBoard copy = new SudokuBoard(board);
+        copy.setCellValue(6, 8, 5);
+        assertEquals(0, board.getCellValue(6, 8));
+        assertEquals(5, copy.getCellValue(6, 8));
+        assertEquals(board.toString(), new SudokuBoard(board).toString());
+
+        SudokuCell cell = board.boardGetter()[6][8];
+        cell.setValue(7);
+        assertEquals(7, board.getCellValue(6, 8));
+        assertFalse(board.isCellFixed(6, 8));
+        cell.makeFixed();
+        assertTrue(board.isCellFixed(6, 8));
+        assertTrue(board.boardGetter()[0][2].isFixed());
+        assertEquals("[4]", board.boardGetter()[0][2].toString());
+    }
+
+    /**
+     * Tests that the batch solver writes one result line per non-blank input line.
+     */
+    @Test
+    public void testBatchSolver() throws IOException {
+        String puzzle = "034678912672195348198042567859761423426853791713924856961537204280419635345286079";
+        String input = puzzle + "\r\n\n" + puzzle.replace('0', '.').replaceFirst("3", "5") + "\n12x\n" + puzzle;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BatchSolver solver = new BatchSolver();
+        solver.solveAll(new ByteArrayInputStream(input.getBytes()), out);
+        String[] lines = out.toString().split("\n");
+        assertEquals(4, lines.length);
+        assertEquals("534678912672195348198342567859761423426853791713924856961537284287419635345286179 solved", lines[0]);
+        assertTrue(lines[1].endsWith(" unsolvable"));
+        assertEquals("invalid", lines[2]);
+        assertEquals(lines[0], lines[3]);
+        assertEquals(2, solver.getSolvedCount());
+        assertEquals(1, solver.getUnsolvableCount());
+        assertEquals(1, solver.getInvalidCount());
+    }
+
+    /**
+     * Tests that the parallel batch solver writes the same output as the sequential one,
+     * in input order, across several chunks.
+     */
+    @Test
+    public void testParallelBatchSolverKeepsOrder() throws IOException {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            String puzzle = PUZZLES[i % PUZZLES.length];
+            input.append(new String(Files.readAllBytes(Paths.get(puzzle))).replaceAll("\\s", ""));
+            input.append(i % 997 == 0 ? "x\n" : "\n");
+        }
+        byte[] bytes = input.toString().getBytes();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new BatchSolver().solveAll(new ByteArrayInputStream(bytes), expected);
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        try (ParallelBatchSolver solver = new ParallelBatchSolver(3)) {
+            solver.solveAll(new ByteArrayInputStream(bytes), actual);
+            assertEquals(6, solver.getInvalidCount());
+        }
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    /**
+     * Tests that the parallel search returns exactly the board depthFirstSearch
+     * returns, including on puzzles with several solutions.
+     */
+    @Test
+    public void testParallelSearchMatchesDepthFirstSearch() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        for (int splitDepth = 1; splitDepth <= 4; splitDepth++) {
+            SudokuBoard.SolveStrategy parallel = new ParallelSearchSolver(pool, splitDepth, 0);
+            for (String puzzle : PUZZLES) {
+                SudokuBoard board = new SudokuBoard(puzzle);
+                SudokuBoard expected = board.solve();
+                board.setSolveStrategy(parallel);
+                assertSameValues(expected, board.solve());
+            }
+        }
+        pool.shutdown();
+    }
+
+    /**
+     * Applies random writes through setCellValue, setFixedCellValue and the cell
+     * views, and checks after each one that isSolved and validValueInCell agree
+     * with a full scan of the board.
+     */
+    @Test
+    public void testValidityTrackingMatchesScan() {
+        Random random = new Random(7);
+        for (String puzzle : PUZZLES) {
+            SudokuBoard board = new SudokuBoard(puzzle);
+            assertMatchesScan(board);
+            SudokuBoard solved = board.solve();
+            if (solved != null) {
+                assertMatchesScan(solved);
+                assertTrue(solved.isSolved());
+            }
+            for (int move = 0; move < 2000; move++) {
+                int row = random.nextInt(SudokuBoard.SIZE);
+                int col = random.nextInt(SudokuBoard.SIZE);
+                if (board.isCellFixed(row, col)) {
+                    continue;
+                }
+                int value = 1 + random.nextInt(SudokuBoard.SIZE);
+                int kind = random.nextInt(10);
+                if (kind < 6) {
+                    board.setCellValue(row, col, value);
+                } else if (kind < 9) {
+                    board.boardGetter()[row][col].setValue(0);
+                } else if (board.isValidOption(row, col, value)) {
+                    board.setFixedCellValue(row, col, value);
+                }
+                assertMatchesScan(board);
+                assertMatchesScan(new SudokuBoard(board));
+            }
+        }
+    }
+
+    /**
+     * Checks the rendering strategies against the cell texts of SudokuCell, through
+     * toString and through appendTo on a StringBuilder and on a Writer.
+     */
+    @Test
+    public void testRenderingStrategies() throws IOException {
+        SudokuBoard board = new SudokuBoard("solvable_puzzle_1.txt");
+        board.boardGetter()[6][8].setValue(5);
+        String plain = "";
+        String compact = "";
+        for (int row = 0; row < SudokuBoard.SIZE; row++) {
+            for (int col = 0; col < SudokuBoard.SIZE; col++) {
+                plain += board.boardGetter()[row][col] + " ";
+                compact += board.getCellValue(row, col);
+            }
+            plain += "\n";
+        }
+        assertEquals(plain, board.toString());
+        StringBuilder builder = new StringBuilder("> ");
+        board.appendTo(builder);
+        assertEquals("> " + plain, builder.toString());
+
+        board.setCompactToStringStrategy();
+        assertEquals(compact, board.toString());
+        StringWriter writer = new StringWriter();
+        board.appendTo(writer);
+        board.appendTo(writer);
+        assertEquals(compact + compact, writer.toString());
+
+        board.setColoredToStringStrategy();
+        String colored = board.toString();
+        assertTrue(colored.startsWith("\u001B[30m[5]\u001B[0m "));
+        assertTrue(colored.contains("\u001B[31m 5 \u001B[0m \n"));
+        assertTrue(colored.contains("\u001B[34m _ \u001B[0m "));
+        assertEquals(SudokuBoard.SIZE * (SudokuBoard.SIZE * 13 + 1), colored.length());
+    }
+
+    /**
+     * Checks that the file constructor reads the same boards, and reports the same
+     * errors, as reading lines and removing non-digits with a regular expression.
+     */
+    @Test
+    public void testFileLoaderMatchesLineReader() throws IOException {
+        String rows = new String(Files.readAllBytes(Paths.get("puzzle_2.txt"))).trim();
+        String[] inputs = {
+            rows, rows + "\n", rows.replace("\n", "\r\n"), rows.replace("\n", "\r"),
+            rows + "\nextra line\n", rows.replace("\n", " |\n").replace("0", ". 0"),
+            rows.substring(0, rows.lastIndexOf('\n')), rows.replaceFirst("\n", "\n\n"),
+            rows.replaceFirst("0", ""), rows.replaceFirst("0", "00"), rows.replace("\n", "\r\r"),
+            rows.substring(0, rows.lastIndexOf('\n') + 1) + "  ", "", "\n\n"
+        };
+        Path file = Files.createTempFile("sudoku", ".txt");
+        try {
+            for (String input : inputs) {
+                Files.write(file, input.getBytes());
+                String expected;
+                try {
+                    expected = Arrays.toString(readWithRegex(file.toString()));
+                } catch (IllegalArgumentException e) {
+                    expected = e.getMessage();
+                }
+                String actual;
+                try {
+                    SudokuBoard board = new SudokuBoard(file.toString());
+                    int[] grid = new int[81];
+                    board.copyValuesTo(grid);
+                    actual = Arrays.toString(grid);
+                } catch (IllegalArgumentException e) {
+                    actual = e.getMessage();
+                }
+                assertEquals(expected, actual);
+            }
+        } finally {
+            Files.delete(file);
+        }
+        try {
+            new SudokuBoard("no_such_puzzle.txt");
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertEquals("File could not be opened: no_such_puzzle.txt", e.getMessage());
+        }
+    }
+
+    /**
+     * Reads a corpus with blank lines, malformed lines and several line endings
+     * through small mapped segments, and checks that random access and split
+     * cursors read the same puzzles as PuzzleLineReader.
+     */
+    @Test
+    public void testPuzzleCorpusMatchesLineReader() throws IOException {
+        Random random = new Random(11);
+        StringBuilder text = new StringBuilder();
+        for (int line = 0; line < 300; line++) {
+            for (int i = 0; i < 81; i++) {
+                text.append(random.nextInt(5) == 0 ? '.' : (char) ('0' + random.nextInt(10)));
+            }
+            int kind = random.nextInt(20);
+            if (kind == 0) {
+                text.append('x');
+            } else if (kind == 1) {
+                text.setLength(text.length() - 1);
+            }
+            text.append(kind < 10 ? "\n" : kind < 15 ? "\r\n" : "\n\n");
+        }
+        byte[] bytes = text.toString().getBytes();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        PuzzleLineReader reader = new PuzzleLineReader(new ByteArrayInputStream(bytes));
+        byte[] cells = new byte[81];
+        int kind;
+        while ((kind = reader.readPuzzle(cells, 0)) != PuzzleLineReader.END) {
+            expected.write(kind);
+            expected.write(cells, 0, kind == PuzzleLineReader.PUZZLE ? 81 : 0);
+        }
+
+        Path file = Files.createTempFile("corpus", ".txt");
+        try (PuzzleCorpus corpus = new PuzzleCorpus(write(file, bytes), 7)) {
+            //Read the puzzles backwards, so every one is found through the index
+            byte[][] puzzles = new byte[(int) corpus.size()][];
+            for (int index = puzzles.length - 1; index >= 0; index--) {
+                kind = corpus.read(index, cells, 0);
+                puzzles[index] = new byte[kind == PuzzleLineReader.PUZZLE ? 82 : 1];
+                puzzles[index][0] = (byte) kind;
+                System.arraycopy(cells, 0, puzzles[index], 1, puzzles[index].length - 1);
+            }
+            ByteArrayOutputStream actual = new ByteArrayOutputStream();
+            for (byte[] puzzle : puzzles) {
+                actual.write(puzzle);
+            }
+            assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+            for (int parts = 1; parts <= 7; parts++) {
+                actual.reset();
+                for (PuzzleCorpus.Cursor cursor : corpus.split(parts)) {
+                    while ((kind = cursor.next(cells, 0)) != PuzzleLineReader.END) {
+                        actual.write(kind);
+                        actual.write(cells, 0, kind == PuzzleLineReader.PUZZLE ? 81 : 0);
+                    }
+                }
+                assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+            }
+            assertEquals(puzzles[0][1 + 80], corpus.getBoard(0).getCellValue(8, 8));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Writes every bundled puzzle, with and without its solution, in the binary
+     * format and checks that reading restores values and fixed flags exactly, and
+     * that corrupted or truncated data is rejected.
+     */
+    @Test
+    public void testBinaryFormatRoundTrip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryPuzzleWriter writer = new BinaryPuzzleWriter(bytes);
+        SudokuBoard[] boards = new SudokuBoard[PUZZLES.length];
+        int solutions = 0;
+        for (int i = 0; i < PUZZLES.length; i++) {
+            boards[i] = new SudokuBoard(PUZZLES[i]);
+            SudokuBoard solution = i % 2 == 0 ? boards[i].solve() : null;
+            writer.write(boards[i], solution);
+            solutions += solution == null ? 0 : 1;
+        }
+        //A board whose fixed cells differ from its non-empty cells
+        SudokuBoard edited = new SudokuBoard("solvable_puzzle_1.txt");
+        edited.boardGetter()[0][0].makeUnfixed();
+        edited.boardGetter()[6][8].setValue(4);
+        writer.write(edited);
+        assertEquals(5 + (PUZZLES.length + 1) * 57 + solutions * 41, bytes.size());
+
+        BinaryPuzzleReader reader = new BinaryPuzzleReader(new ByteArrayInputStream(bytes.toByteArray()));
+        for (int i = 0; i < PUZZLES.length; i++) {
+            SudokuBoard board = reader.readBoard();
+            assertSameCells(boards[i], board);
+            assertSameValues(i % 2 == 0 ? boards[i].solve() : null, reader.getSolution());
+        }
+        assertSameCells(edited, reader.readBoard());
+        assertNull(reader.readBoard());
+        assertEquals(PUZZLES.length + 1, reader.getCount());
+
+        byte[] corrupted = bytes.toByteArray();
+        corrupted[5 + 20] ^= 0x10;
+        assertThrows(IllegalArgumentException.class,
+            () -> new BinaryPuzzleReader(new ByteArrayInputStream(corrupted)).readBoard());
+        byte[] truncated = Arrays.copyOf(bytes.toByteArray(), 5 + 50);
+        assertThrows(IllegalArgumentException.class,
+            () -> new BinaryPuzzleReader(new ByteArrayInputStream(truncated)).readBoard());
+        assertThrows(IllegalArgumentException.class,
+            () -> new BinaryPuzzleReader(new ByteArrayInputStream("SDKA\u0001".getBytes())));
+    }
+
+    /**
+     * Checks that generated puzzles have a single solution, the requested number of
+     * clues and symmetry, and that the same seed gives the same puzzles.
+     */
+    @Test
+    public void testPuzzleGenerator() {
+        for (PuzzleGenerator.Symmetry symmetry : PuzzleGenerator.Symmetry.values()) {
+            PuzzleGenerator generator = new PuzzleGenerator(5);
+            PuzzleGenerator again = new PuzzleGenerator(5);
+            for (int i = 0; i < 20; i++) {
+                int target = i % 2 == 0 ? 30 : PuzzleGenerator.MIN_CLUES;
+                SudokuBoard puzzle = generator.generate(target, symmetry);
+                assertSameCells(puzzle, again.generate(target, symmetry));
+                assertEquals(1, puzzle.countSolutions(2));
+                SudokuBoard solution = generator.getSolution();
+                assertTrue(solution.isSolved());
+                int clues = 0;
+                for (int cell = 0; cell < 81; cell++) {
+                    int value = puzzle.getCellValue(cell / 9, cell % 9);
+                    int partner = PuzzleGenerator.partner(cell, symmetry);
+                    assertEquals(value == 0, puzzle.getCellValue(partner / 9, partner % 9) == 0);
+                    assertTrue(value == 0 || value == solution.getCellValue(cell / 9, cell % 9));
+                    clues += value == 0 ? 0 : 1;
+                }
+                assertTrue(clues >= target);
+                if (target == 30) {
+                    assertTrue(clues <= 31);
+                }
+            }
+        }
+    }
+
+    /**
+     * Grades the bundled puzzles and generated minimal puzzles, checking the tiers
+     * of known puzzles and that no technique ever eliminates a value of the solution.
+     */
+    @Test
+    public void testDifficultyGrader() {
+        DifficultyGrader grader = new DifficultyGrader();
+        DifficultyGrader.Grade easy = grader.grade(new SudokuBoard("puzzle_2.txt"));
+        assertEquals(DifficultyGrader.Difficulty.EASY, easy.getDifficulty());
+        assertEquals(DifficultyGrader.Technique.NAKED_SINGLE, easy.getHardestTechnique());
+        assertEquals(56, easy.getSteps());
+        assertEquals(DifficultyGrader.Difficulty.UNSOLVABLE, grader.grade(new SudokuBoard("puzzle_1.txt")).getDifficulty());
+        assertEquals(DifficultyGrader.Difficulty.REQUIRES_GUESSING, grader.grade(new SudokuBoard("puzzle_5.txt")).getDifficulty());
+
+        PuzzleGenerator generator = new PuzzleGenerator(3);
+        int[] solution = new int[81];
+        boolean[] used = new boolean[DifficultyGrader.Technique.values().length];
+        for (int i = 0; i < 300; i++) {
+            DifficultyGrader.Grade grade = grader.grade(generator.generate(PuzzleGenerator.MIN_CLUES));
+            generator.getSolution().copyValuesTo(solution);
+            CandidateGrid grid = grader.getGrid();
+            for (int cell = 0; cell < 81; cell++) {
+                if (grid.getValue(cell) != 0) {
+                    assertEquals(solution[cell], grid.getValue(cell));
+                } else {
+                    assertTrue((grid.getCandidates(cell) & 1 << (solution[cell] - 1)) != 0);
+                }
+            }
+            assertEquals(grade.getDifficulty() == DifficultyGrader.Difficulty.REQUIRES_GUESSING, grid.getEmptyCount() > 0);
+            for (DifficultyGrader.Technique technique : DifficultyGrader.Technique.values()) {
+                used[technique.ordinal()] |= grade.getCount(technique) > 0;
+            }
+        }
+        for (boolean technique : used) {
+            assertTrue(technique);
+        }
+    }
+
+    /**
+     * Checks the generalized board against SudokuBoard on the bundled 9x9 puzzles,
+     * solves hard 16x16 and 25x25 puzzles, and checks the loader and validity tracking
+     * on larger boards.
+     */
+    @Test
+    public void testGeneralizedBoard() throws IOException {
+        for (String puzzle : PUZZLES) {
+            SudokuBoard board = new SudokuBoard(puzzle);
+            GeneralizedSudokuBoard general = new GeneralizedSudokuBoard(puzzle);
+            assertEquals(9, general.getSize());
+            assertEquals(board.toString(), general.toString());
+            assertEquals(board.isSolved(), general.isSolved());
+            int solutions = board.countSolutions(2);
+            assertEquals(solutions, general.countSolutions(2));
+            GeneralizedSudokuBoard solved = general.solve();
+            assertEquals(solutions == 0, solved == null);
+            if (solved != null) {
+                assertTrue(solved.isSolved());
+                assertEquals(board.toString(), general.toString());
+            }
+        }
+
+        Random random = new Random(5);
+        for (int boxSize = 4; boxSize <= 5; boxSize++) {
+            int size = boxSize * boxSize;
+            int[] full = new int[size * size];
+            assertTrue(new LongMaskSolver(boxSize).solve(full));
+            assertTrue(new GeneralizedSudokuBoard(boxSize, full).isSolved());
+        }
+        //Shuffled grids with 55 to 65 percent of empty cells, where plain backtracking gets lost
+        for (int n = 0; n < 12; n++) {
+            int boxSize = 4 + n % 2;
+            int size = boxSize * boxSize;
+            int[] grid = SudokuBenchmark.generatePuzzle(boxSize, 0.55 + 0.1 * (n / 2) / 5, random);
+            GeneralizedSudokuBoard puzzle = new GeneralizedSudokuBoard(boxSize, grid);
+            GeneralizedSudokuBoard solved = puzzle.solve();
+            assertTrue(solved.isSolved());
+            assertFalse(puzzle.isSolved());
+            for (int cell = 0; cell < grid.length; cell++) {
+                if (grid[cell] != 0) {
+                    assertEquals(grid[cell], solved.getCellValue(cell / size, cell % size));
+                    assertTrue(solved.isCellFixed(cell / size, cell % size));
+                }
+            }
+        }
+
+        //Random moves on a 16x16 board, checked against a scan of its units
+        GeneralizedSudokuBoard board = new GeneralizedSudokuBoard(4);
+        for (int move = 0; move < 3000; move++) {
+            int row = random.nextInt(16);
+            int col = random.nextInt(16);
+            if (random.nextInt(4) == 0) {
+                board.clearCellValue(row, col);
+            } else {
+                board.setCellValue(row, col, 1 + random.nextInt(16));
+            }
+            boolean solved = true;
+            for (int r = 0; r < 16; r++) {
+                for (int c = 0; c < 16; c++) {
+                    int value = board.getCellValue(r, c);
+                    boolean valid = true;
+                    for (int i = 0; i < 16; i++) {
+                        int boxRow = (r / 4) * 4 + i / 4;
+                        int boxCol = (c / 4) * 4 + i % 4;
+                        if (i != r && board.getCellValue(i, c) == value
+                            || i != c && board.getCellValue(r, i) == value
+                            || (boxRow != r || boxCol != c) && board.getCellValue(boxRow, boxCol) == value) {
+                            valid = false;
+                        }
+                    }
+                    assertEquals(value == 0 || valid, board.validValueInCell(r, c));
+                    solved = solved && value != 0 && valid;
+                }
+            }
+            assertEquals(solved, board.isSolved());
+        }
+
+        Path file = Files.createTempFile("sudoku", ".txt");
+        try {
+            GeneralizedSudokuBoard small = new GeneralizedSudokuBoard(write(file, "1 2 . 4\n3,4,1,0\n2 1 4 3\n4 3 2 1\n".getBytes()));
+            assertEquals(2, small.getBoxSize());
+            assertEquals(0, small.getCellValue(0, 2));
+            assertEquals(3, small.solve().getCellValue(0, 2));
+            String[] inputs = {"1 2 3\n", "1 2 3 4\n1 2 3\n", "1 2 3 4\n1 2 3 5\n", "1 2 3 4\n", ""};
+            String[] messages = {
+                "Row 0 invalid: expecting n^2 values, for n between 2 and 8.",
+                "Row 1 invalid: expecting 4 values.",
+                "Invalid value in row 1, column 3",
+                "File must contain exactly 4 lines with 4 values each.",
+                "File must contain exactly 0 lines with 0 values each."
+            };
+            for (int i = 0; i < inputs.length; i++) {
+                try {
+                    new GeneralizedSudokuBoard(write(file, inputs[i].getBytes()));
+                    fail("expected IllegalArgumentException");
+                } catch (IllegalArgumentException e) {
+                    assertEquals(messages[i], e.getMessage());
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+        try {
+            new GeneralizedSudokuBoard("no_such_puzzle.txt");
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertEquals("File could not be opened: no_such_puzzle.txt", e.getMessage());
+        }
+    }
+
+    /**
+     * Checks that the iterative depth-first search finds the same results as the
+     * recursive one, visiting as many nodes as the row-major bitmask engine.
+     */
+    @Test
+    public void testIterativeMatchesRecursiveSearch() {
+        List<SudokuBoard> boards = new ArrayList<>();
+        for (String puzzle : PUZZLES) {
+            boards.add(new SudokuBoard(puzzle));
+        }
+        SudokuBoard conflicting = new SudokuBoard("solvable_puzzle_2.txt");
+        conflicting.setCellValue(8, 6, 9);
+        boards.add(conflicting);
+        PuzzleGenerator generator = new PuzzleGenerator(13);
+        for (int i = 0; i < 10; i++) {
+            boards.add(generator.generate(30));
+        }
+        boards.add(new SudokuBoard(new int[81]));
+        SolveMetrics metrics = new SolveMetrics();
+        for (SudokuBoard board : boards) {
+            board.setRecursiveSolveStrategy();
+            SudokuBoard expected = board.solve();
+            board.setDefaultSolveStrategy();
+            SudokuBoard iterative = board.solve(metrics);
+            assertSameValues(expected, iterative);
+            assertEquals(expected != null, metrics.isSolved());
+            if (expected != null) {
+                assertSameCells(expected, iterative);
+            }
+            boolean consistent = true;
+            for (int row = 0; row < SudokuBoard.SIZE; row++) {
+                for (int col = 0; col < SudokuBoard.SIZE; col++) {
+                    consistent = consistent && board.validValueInCell(row, col);
+                }
+            }
+            if (consistent) {
+                //Same tree as the bitmask engine, which gives up at once when the givens conflict
+                BitmaskSolver bitmask = new BitmaskSolver();
+                board.setSolveStrategy(bitmask);
+                board.solve();
+                assertEquals(bitmask.getNodeCount(), metrics.get(SolveMetrics.Statistic.NODES));
+            }
+        }
+    }
+
+    /**
+     * Checks the metrics reported by the engines against their own counters, and
+     * the percentiles and histograms of the aggregate.
+     */
+    @Test
+    public void testSolveMetrics() throws IOException {
+        SolveMetrics metrics = new SolveMetrics();
+        SudokuBoard puzzle = new SudokuBoard("puzzle_5.txt");
+        BitmaskSolver bitmask = new BitmaskSolver();
+        puzzle.setSolveStrategy(bitmask);
+        SudokuBoard solved = puzzle.solve(metrics);
+        assertSameValues(puzzle.solve(), solved);
+        assertSameValues(puzzle.solve(), puzzle.solve(null));
+        assertTrue(metrics.isSolved());
+        assertEquals(bitmask.getNodeCount(), metrics.get(SolveMetrics.Statistic.NODES));
+        assertEquals(bitmask.getBacktrackCount(), metrics.get(SolveMetrics.Statistic.BACKTRACKS));
+        assertTrue(metrics.get(SolveMetrics.Statistic.BACKTRACKS) > 0);
+        int empty = 0;
+        for (int row = 0; row < SudokuBoard.SIZE; row++) {
+            for (int col = 0; col < SudokuBoard.SIZE; col++) {
+                empty += puzzle.getCellValue(row, col) == 0 ? 1 : 0;
+            }
+        }
+        assertEquals(empty, metrics.get(SolveMetrics.Statistic.MAX_DEPTH));
+        assertEquals(0, metrics.get(SolveMetrics.Statistic.PROPAGATION_ROUNDS));
+        long phases = metrics.get(SolveMetrics.Statistic.LOAD_NANOS) + metrics.get(SolveMetrics.Statistic.SEARCH_NANOS);
+        assertTrue(phases > 0 && phases <= metrics.get(SolveMetrics.Statistic.TOTAL_NANOS));
+
+        //Metrics are reset by every run
+        PropagatingSolver propagating = new PropagatingSolver();
+        puzzle.setSolveStrategy(propagating);
+        puzzle.solve(metrics);
+        assertEquals(propagating.getSearchNodeCount(), metrics.get(SolveMetrics.Statistic.NODES));
+        assertTrue(metrics.get(SolveMetrics.Statistic.PROPAGATION_ROUNDS) > 0);
+        assertTrue(metrics.get(SolveMetrics.Statistic.PROPAGATION_NANOS) > 0);
+        for (ConstraintPropagator.Technique technique : ConstraintPropagator.Technique.values()) {
+            assertEquals(propagating.getPropagator().getCount(technique), metrics.getTechniqueCount(technique));
+        }
+        assertTrue(metrics.getTechniqueNanos(ConstraintPropagator.Technique.NAKED_SINGLE) > 0);
+        //Without metrics the propagator does not read the clock
+        puzzle.solve();
+        assertEquals(0, propagating.getPropagator().getNanos(ConstraintPropagator.Technique.NAKED_SINGLE));
+
+        SudokuBoard unsolvable = new SudokuBoard("puzzle_1.txt");
+        unsolvable.setSolveStrategy(new BitmaskSolver());
+        assertNull(unsolvable.solve(metrics));
+        assertFalse(metrics.isSolved());
+        unsolvable.setRecursiveSolveStrategy();
+        unsolvable.solve(metrics);
+        assertEquals(0, metrics.get(SolveMetrics.Statistic.NODES));
+        assertTrue(metrics.get(SolveMetrics.Statistic.SEARCH_NANOS) > 0);
+
+        SolveStatistics statistics = new SolveStatistics();
+        for (int nodes = 100; nodes >= 1; nodes--) {
+            metrics.reset();
+            metrics.add(SolveMetrics.Statistic.NODES, nodes);
+            statistics.add(metrics);
+        }
+        assertEquals(100, statistics.getCount());
+        assertEquals(0, statistics.getSolvedCount());
+        assertEquals(5050, statistics.getTotal(SolveMetrics.Statistic.NODES));
+        assertEquals(1, statistics.getPercentile(SolveMetrics.Statistic.NODES, 0));
+        assertEquals(50, statistics.getPercentile(SolveMetrics.Statistic.NODES, 50));
+        assertEquals(99, statistics.getPercentile(SolveMetrics.Statistic.NODES, 99));
+        assertEquals(100, statistics.getMax(SolveMetrics.Statistic.NODES));
+        int[] histogram = statistics.getHistogram(SolveMetrics.Statistic.NODES);
+        assertEquals(0, histogram[0]);
+        assertEquals(1, histogram[1]);
+        assertEquals(2, histogram[2]);
+        assertEquals(37, histogram[7]);
+        assertEquals(100, statistics.getHistogram(SolveMetrics.Statistic.BACKTRACKS)[0]);
+
+        //Large samples are bucketed: percentiles are at most 1/64 above the exact ones
+        SolveStatistics large = new SolveStatistics();
+        Random random = new Random(19);
+        long[] samples = new long[10000];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = random.nextInt(1 << 30) >> random.nextInt(30);
+            metrics.reset();
+            metrics.add(SolveMetrics.Statistic.SEARCH_NANOS, samples[i]);
+            large.add(metrics);
+        }
+        Arrays.sort(samples);
+        for (double percent : new double[] {0, 1, 25, 50, 90, 99, 99.9, 100}) {
+            long exact = samples[Math.max(1, (int) Math.ceil(percent / 100 * samples.length)) - 1];
+            long estimate = large.getPercentile(SolveMetrics.Statistic.SEARCH_NANOS, percent);
+            assertTrue(estimate >= exact && estimate <= exact + exact / 64);
+        }
+        assertEquals(samples[samples.length - 1], large.getMax(SolveMetrics.Statistic.SEARCH_NANOS));
+        int[] powers = large.getHistogram(SolveMetrics.Statistic.SEARCH_NANOS);
+        for (long sample : samples) {
+            powers[64 - Long.numberOfLeadingZeros(sample)]--;
+        }
+        assertArrayEquals(new int[SolveStatistics.BUCKETS], powers);
+
+        BatchSolver batch = new BatchSolver();
+        SolveStatistics batchStatistics = new SolveStatistics();
+        batch.setStatistics(batchStatistics);
+        StringBuilder input = new StringBuilder();
+        for (String file : PUZZLES) {
+            input.append(new String(Files.readAllBytes(Paths.get(file))).replaceAll("\\s", "")).append("\nbad line\n");
+        }
+        batch.solveAll(new ByteArrayInputStream(input.toString().getBytes()), new ByteArrayOutputStream());
+        assertEquals(batch.getSolvedCount() + batch.getUnsolvableCount(), batchStatistics.getCount());
+        assertEquals(batch.getSolvedCount(), batchStatistics.getSolvedCount());
+        assertTrue(batchStatistics.getTotal(SolveMetrics.Statistic.PROPAGATION_ROUNDS) > 0);
+    }
+
+    /**
+     * Makes random moves with undo and redo mixed in, checking the board against
+     * a list of snapshots, and checks that the history forgets its oldest moves
+     * at capacity.
+     */
+    @Test
+    public void testMoveHistory() {
+        SudokuBoard board = new SudokuBoard("puzzle_2.txt");
+        MoveHistory history = new MoveHistory(board);
+        List<int[]> snapshots = new ArrayList<>();
+        int[] grid = new int[81];
+        board.copyValuesTo(grid);
+        snapshots.add(grid.clone());
+        int position = 0;
+        List<Integer> free = new ArrayList<>();
+        for (int cell = 0; cell < 81; cell++) {
+            if (!board.isCellFixed(cell / 9, cell % 9)) {
+                free.add(cell);
+            }
+        }
+        Random random = new Random(17);
+        for (int step = 0; step < 5000; step++) {
+            int action = random.nextInt(10);
+            if (action < 2) {
+                assertEquals(position > 0, history.undo());
+                position = Math.max(0, position - 1);
+            } else if (action < 4) {
+                assertEquals(position < snapshots.size() - 1, history.redo());
+                position = Math.min(snapshots.size() - 1, position + 1);
+            } else {
+                int cell = free.get(random.nextInt(free.size()));
+                int value = random.nextInt(10);
+                int old = board.getCellValue(cell / 9, cell % 9);
+                if (value == 0) {
+                    history.clearCellValue(cell / 9, cell % 9);
+                } else {
+                    history.setCellValue(cell / 9, cell % 9, value);
+                }
+                if (old != value) {
+                    //A new move discards the moves undone
+                    while (snapshots.size() > position + 1) {
+                        snapshots.remove(snapshots.size() - 1);
+                    }
+                    board.copyValuesTo(grid);
+                    snapshots.add(grid.clone());
+                    position++;
+                }
+            }
+            board.copyValuesTo(grid);
+            assertArrayEquals(snapshots.get(position), grid);
+            assertEquals(position, history.getUndoCount());
+            assertEquals(snapshots.size() - 1 - position, history.getRedoCount());
+            assertMatchesScan(board);
+        }
+
+        SudokuBoard bounded = new SudokuBoard("puzzle_2.txt");
+        MoveHistory small = new MoveHistory(bounded, 5);
+        int[] cells = {0, 1, 2};
+        for (int i = 0; i < 12; i++) {
+            int cell = free.get(cells[i % 3]);
+            small.setCellValue(cell / 9, cell % 9, 1 + i % 9);
+        }
+        assertEquals(5, small.getUndoCount());
+        while (small.undo()) {
+            //Undo as far as remembered
+        }
+        //Back to the board after the seventh move
+        bounded.copyValuesTo(grid);
+        assertEquals(7, grid[free.get(0)]);
+        assertEquals(5, grid[free.get(1)]);
+        assertEquals(6, grid[free.get(2)]);
+        assertEquals(5, small.getRedoCount());
+        small.clear();
+        assertFalse(small.canUndo());
+        assertFalse(small.canRedo());
+    }
+
+    /**
+     * Plays generated puzzles by following hints, mixed with moves of the player
+     * and cleared cells, checking that every hint agrees with the solution and that
+     * the puzzles the grader solves without guessing are solved by hints alone,
+     * some of them through elimination steps.
+     */
+    @Test
+    public void testHintEngine() {
+        HintEngine engine = new HintEngine();
+        DifficultyGrader grader = new DifficultyGrader();
+        PuzzleGenerator generator = new PuzzleGenerator(21);
+        Random random = new Random(21);
+        int[] solution = new int[81];
+        boolean[] used = new boolean[DifficultyGrader.Technique.values().length];
+        int steps = 0;
+        for (int i = 0; i < 100; i++) {
+            SudokuBoard board = generator.generate(PuzzleGenerator.MIN_CLUES);
+            generator.getSolution().copyValuesTo(solution);
+            DifficultyGrader.Difficulty difficulty = grader.grade(board).getDifficulty();
+            HintEngine.Hint hint;
+            while ((hint = engine.hint(board)) != null) {
+                assertFalse(engine.foundContradiction());
+                if (!hint.isPlacement()) {
+                    //An elimination step; the next request continues from it
+                    assertNull(hint.getSingle());
+                    steps++;
+                    continue;
+                }
+                assertEquals(0, board.getCellValue(hint.getRow(), hint.getCol()));
+                assertEquals(solution[hint.getRow() * 9 + hint.getCol()], hint.getValue());
+                used[hint.getTechnique().ordinal()] = true;
+                board.setCellValue(hint.getRow(), hint.getCol(), hint.getValue());
+                int cell = random.nextInt(81);
+                if (!board.isCellFixed(cell / 9, cell % 9) && random.nextInt(4) == 0) {
+                    //The player fills or empties another cell
+                    if (board.getCellValue(cell / 9, cell % 9) == 0) {
+                        board.setCellValue(cell / 9, cell % 9, solution[cell]);
+                    } else {
+                        board.clearCellValue(cell / 9, cell % 9);
+                    }
+                }
+            }
+            assertFalse(engine.foundContradiction());
+            //Values filled in by the player can only help
+            if (difficulty != DifficultyGrader.Difficulty.REQUIRES_GUESSING) {
+                assertTrue(board.isSolved());
+            }
+        }
+        assertTrue(used[DifficultyGrader.Technique.NAKED_SINGLE.ordinal()]);
+        assertTrue(used[DifficultyGrader.Technique.HIDDEN_SINGLE.ordinal()]);
+        assertTrue(used[DifficultyGrader.Technique.POINTING.ordinal()]);
+        assertTrue(steps > 0);
+
+        SudokuBoard board = new SudokuBoard("puzzle_2.txt");
+        HintEngine.Hint hint = engine.hint(board);
+        assertEquals(DifficultyGrader.Technique.NAKED_SINGLE, hint.getTechnique());
+        //A value that conflicts with the board gives no hint
+        int row = hint.getRow();
+        int col = hint.getCol();
+        int conflicting = 0;
+        for (int value = 1; value <= 9 && conflicting == 0; value++) {
+            if (!board.isValidOption(row, col, value)) {
+                conflicting = value;
+            }
+        }
+        board.setCellValue(row, col, conflicting);
+        assertNull(engine.hint(board));
+        assertTrue(engine.foundContradiction());
+        board.clearCellValue(row, col);
+        assertEquals(hint.toString(), engine.hint(board).toString());
+        assertFalse(engine.foundContradiction());
+    }
+
+    /**
+     * Tests that a hint following one that needed an elimination still reports it,
+     * as the single may only exist because of it, and that hints taken in a row
+     * never report an easier technique than a new engine on the same board, asked
+     * until it places a value.
+     */
+    @Test
+    public void testHintEngineKeepsEliminations() {
+        PuzzleGenerator generator = new PuzzleGenerator(1);
+        boolean followed = false;
+        for (int i = 0; i < 10; i++) {
+            SudokuBoard board = generator.generate(PuzzleGenerator.MIN_CLUES);
+            HintEngine engine = new HintEngine();
+            DifficultyGrader.Technique elimination = null;
+            HintEngine.Hint hint;
+            while ((hint = engine.hint(board)) != null) {
+                if (!hint.isPlacement()) {
+                    continue;
+                }
+                HintEngine fresh = new HintEngine();
+                HintEngine.Hint first;
+                while (!(first = fresh.hint(board)).isPlacement()) {
+                    assertTrue(first.getTechnique().compareTo(DifficultyGrader.Technique.HIDDEN_SINGLE) > 0);
+                }
+                assertTrue(hint.getTechnique().compareTo(first.getTechnique()) >= 0);
+                if (elimination != null) {
+                    //The eliminations of the previous hint are still in the kept candidates
+                    assertTrue(hint.getTechnique().compareTo(elimination) >= 0);
+                    followed = true;
+                }
+                if (hint.getTechnique() != hint.getSingle()) {
+                    elimination = hint.getTechnique();
+                }
+                board.setCellValue(hint.getRow(), hint.getCol(), hint.getValue());
+            }
+        }
+        assertTrue(followed);
+    }
+
+    /**
+     * Tests that the solve server answers batches as the batch solver does, single
+     * puzzles given in the query, and rejects other methods and missing puzzles.
+     */
+    @Test
+    public void testSolveServer() throws IOException, InterruptedException {
+        StringBuilder input = new StringBuilder();
+        for (String puzzle : PUZZLES) {
+            input.append(new String(Files.readAllBytes(Paths.get(puzzle))).replaceAll("\\s", "")).append('\n');
+        }
+        input.append("12x\n");
+        byte[] bytes = input.toString().getBytes();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new BatchSolver().solveAll(new ByteArrayInputStream(bytes), expected);
+        HttpClient client = HttpClient.newHttpClient();
+        try (SolveServer server = new SolveServer(0, 1)) {
+            URI uri = URI.create("http://127.0.0.1:" + server.getPort() + SolveServer.PATH);
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(bytes)).build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, response.statusCode());
+            assertEquals(expected.toString(), response.body());
+
+            String puzzle = "034678912672195348198042567859761423426853791713924856961537204280419635345286079";
+            response = client.send(HttpRequest.newBuilder(URI.create(uri + "?puzzle=" + puzzle)).build(),
+                HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, response.statusCode());
+            assertEquals("534678912672195348198342567859761423426853791713924856961537284287419635345286179 solved\n",
+                response.body());
+
+            response = client.send(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(400, response.statusCode());
+            response = client.send(HttpRequest.newBuilder(uri).PUT(HttpRequest.BodyPublishers.ofByteArray(bytes)).build(),
+                HttpResponse.BodyHandlers.ofString());
+            assertEquals(405, response.statusCode());
+        }
+    }
+
+    /**
+     * Tests that the solution cache answers repeated puzzles, solved or not, as its
+     * engine does, forgets the least recently used puzzle at capacity, and counts
+     * every lookup when shared by several threads.
+     */
+    @Test
+    public void testSolutionCache() throws InterruptedException {
+        BitmaskSolver engine = new BitmaskSolver();
+        SolutionCache cache = new SolutionCache(engine, 3);
+        SudokuBoard puzzle = new SudokuBoard("puzzle_5.txt");
+        puzzle.setBitmaskSolveStrategy();
+        SudokuBoard expected = puzzle.solve();
+        puzzle.setSolveStrategy(cache);
+        assertSameValues(expected, puzzle.solve());
+        long nodes = engine.getNodeCount();
+        SolveMetrics metrics = new SolveMetrics();
+        assertSameValues(expected, puzzle.solve(metrics));
+        assertEquals(nodes, engine.getNodeCount());
+        assertEquals(0, metrics.get(SolveMetrics.Statistic.NODES));
+        assertTrue(metrics.isSolved());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        //Unsolvable puzzles are remembered too
+        SudokuBoard unsolvable = new SudokuBoard("puzzle_1.txt");
+        unsolvable.setSolveStrategy(cache);
+        assertNull(unsolvable.solve());
+        assertNull(unsolvable.solve());
+        assertEquals(1, cache.getUnsolvableHitCount());
+        assertEquals(2, cache.size());
+
+        //The puzzle solved longest ago is forgotten first
+        puzzle.solve();
+        for (String file : new String[] {"puzzle_2.txt", "puzzle_3.txt"}) {
+            SudokuBoard board = new SudokuBoard(file);
+            board.setSolveStrategy(cache);
+            board.solve();
+        }
+        assertEquals(3, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        long misses = cache.getMissCount();
+        puzzle.solve();
+        assertEquals(misses, cache.getMissCount());
+        unsolvable.solve();
+        assertEquals(misses + 1, cache.getMissCount());
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHitCount());
+
+        //Views with their own engine share the entries across threads
+        SudokuBoard[] expectedSolutions = new SudokuBoard[PUZZLES.length];
+        for (int i = 0; i < PUZZLES.length; i++) {
+            SudokuBoard board = new SudokuBoard(PUZZLES[i]);
+            board.setPropagatingSolveStrategy();
+            expectedSolutions[i] = board.solve();
+        }
+        SolutionCache shared = new SolutionCache(new PropagatingSolver());
+        Thread[] threads = new Thread[4];
+        boolean[] failed = new boolean[threads.length];
+        for (int t = 0; t < threads.length; t++) {
+            int id = t;
+            SolutionCache view = shared.using(new PropagatingSolver());
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 100; i++) {
+                    SudokuBoard board = new SudokuBoard(PUZZLES[(i + id) % PUZZLES.length]);
+                    board.setSolveStrategy(view);
+                    SudokuBoard solved = board.solve();
+                    SudokuBoard reference = expectedSolutions[(i + id) % PUZZLES.length];
+                    if ((solved == null) != (reference == null) || solved != null && !solved.toString().equals(reference.toString())) {
+                        failed[id] = true;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (boolean f : failed) {
+            assertFalse(f);
+        }
+        assertEquals(400, shared.getHitCount() + shared.getMissCount());
+        assertEquals(PUZZLES.length, shared.size());
+        assertTrue(shared.getHitRate() > 0.9);
+    }
+
+    /**
+     * Tests that the canonical form is the smallest of all equivalent puzzles on a
+     * few puzzles, checked against every placement, that equivalent puzzles share
+     * it, and that the deduplicator keeps the first puzzle of every class.
+     */
+    @Test
+    public void testCanonicalForm() throws IOException {
+        PuzzleCanonicalizer canonicalizer = new PuzzleCanonicalizer();
+        PuzzleGenerator generator = new PuzzleGenerator(25);
+        int[] grid = new int[81];
+        int[] canonical = new int[81];
+        for (int i = 0; i < 3; i++) {
+            generator.generate(PuzzleGenerator.MIN_CLUES).copyValuesTo(grid);
+            canonicalizer.canonicalize(grid, canonical);
+            assertArrayEquals(smallestEquivalent(grid), canonical);
+        }
+        //An empty row and repeated values take the slower paths
+        Arrays.fill(grid, 0);
+        grid[10] = 3;
+        grid[14] = 3;
+        grid[60] = 7;
+        canonicalizer.canonicalize(grid, canonical);
+        assertArrayEquals(smallestEquivalent(grid), canonical);
+
+        SudokuBoard[] boards = new SudokuBoard[PUZZLES.length];
+        for (int i = 0; i < PUZZLES.length; i++) {
+            boards[i] = new SudokuBoard(PUZZLES[i]);
+        }
+        SudokuBoard[] corpus = SudokuBenchmark.generateCorpus(boards, 100, new Random(25));
+        List<String> forms = new ArrayList<>();
+        for (SudokuBoard board : boards) {
+            if (board.countSolutions(1) > 0) {
+                SudokuBoard form = canonicalizer.canonicalize(board);
+                form.setCompactToStringStrategy();
+                SudokuBoard again = canonicalizer.canonicalize(form);
+                again.setCompactToStringStrategy();
+                assertEquals(form.toString(), again.toString());
+                forms.add(form.toString());
+            }
+        }
+        StringBuilder input = new StringBuilder();
+        for (SudokuBoard board : corpus) {
+            SudokuBoard form = canonicalizer.canonicalize(board);
+            form.setCompactToStringStrategy();
+            assertTrue(forms.contains(form.toString()));
+            board.setCompactToStringStrategy();
+            input.append(board.toString()).append("\n");
+        }
+        input.append("12x\n");
+        CorpusDeduplicator deduplicator = new CorpusDeduplicator();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        deduplicator.dedupe(new ByteArrayInputStream(input.toString().getBytes()), out);
+        assertEquals(100, deduplicator.getPuzzleCount());
+        assertEquals(1, deduplicator.getInvalidCount());
+        String[] kept = out.toString().split("\n");
+        assertEquals(deduplicator.getClassCount(), kept.length);
+        assertTrue(kept.length > 1 && kept.length <= forms.size());
+        assertEquals(corpus[0].toString(), kept[0]);
+        //Classes seen in earlier calls are not written again
+        deduplicator.setCanonicalOutput(true);
+        out.reset();
+        deduplicator.dedupe(new ByteArrayInputStream((String.join("\n", forms) + "\n").getBytes()), out);
+        assertEquals(forms.size() - kept.length, out.toString().split("\n", -1).length - 1);
+    }
+
+    /**
+     * All the bundled puzzle files
+     */
+    private static final String[] PUZZLES = {
+        "puzzle_1.txt", "puzzle_2.txt", "puzzle_3.txt", "puzzle_4.txt", "puzzle_5.txt",
+        "solvable_puzzle_1.txt", "solvable_puzzle_2.txt"
+    };
+
+    /**
+     * Asserts that two boards are both null or hold the same values.
+     */
+    private static void assertSameValues(SudokuBoard expected, SudokuBoard actual) {
+        if (expected == null) {
+            assertNull(actual);
+            return;
+        }
+        assertNotNull(actual);
+        for (int row = 0; row < SudokuBoard.SIZE; row++) {
+            for (int col = 0; col < SudokuBoard.SIZE; col++) {
+                assertEquals(expected.boardGetter()[row][col].getValue(), actual.boardGetter()[row][col].getValue());
+            }
+        }
+    }
+
+    /**
+     * Asserts that isSolved and validValueInCell give the same answers as scanning
+     * the rows, columns and boxes of the board.
+     */
+    private static void assertMatchesScan(SudokuBoard board) {
+        boolean solved = true;
+        for (int row = 0; row < SudokuBoard.SIZE; row++) {
+            for (int col = 0; col < SudokuBoard.SIZE; col++) {
+                int value = board.getCellValue(row, col);
+                boolean valid = true;
+                for (int i = 0; i < SudokuBoard.SIZE; i++) {
+                    int boxRow = (row / 3) * 3 + i / 3;
+                    int boxCol = (col / 3) * 3 + i % 3;
+                    if (i != row && board.getCellValue(i, col) == value
+                        || i != col && board.getCellValue(row, i) == value
+                        || (boxRow != row || boxCol != col) && board.getCellValue(boxRow, boxCol) == value) {
+                        valid = false;
+                    }
+                }
+                valid = value == 0 || valid;
+                assertEquals(valid, board.validValueInCell(row, col));
+                solved = solved && value != 0 && valid;
+            }
+        }
+        assertEquals(solved, board.isSolved());
+        assertFalse(board.validValueInCell(-1, 0));
+        assertFalse(board.validValueInCell(0, SudokuBoard.SIZE));
+    }
+
+    /**
+     * Reads a puzzle file line by line, keeping the digits of every line, the way
+     * the file constructor originally did.
+     */
+    private static int[] readWithRegex(String fileName) throws IOException {
+        int[] grid = new int[81];
+        try (BufferedReader br = new BufferedReader(new FileReader(fileName))) {
+            String line;
+            int row = 0;
+            while ((line = br.readLine()) != null && row < SudokuBoard.SIZE) {
+                String digits = line.replaceAll("[^0-9]", "");
+                if (digits.length() != SudokuBoard.SIZE) {
+                    throw new IllegalArgumentException("Row " + (row) + " invalid: expecting 9 digits.");
+                }
+                for (int col = 0; col < SudokuBoard.SIZE; col++) {
+                    grid[row * SudokuBoard.SIZE + col] = digits.charAt(col) - '0';
+                }
+                row++;
+            }
+            if (row != SudokuBoard.SIZE) {
+                throw new IllegalArgumentException("File must contain exactly 9 lines with 9 digits each.");
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Returns the smallest relabeled puzzle over every placement of rows and
+     * columns of a grid and its transpose, values numbered in order of appearance.
+     */
+    private static int[] smallestEquivalent(int[] grid) {
+        int[][] permutations = {{0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}};
+        List<int[]> orders = new ArrayList<>();
+        for (int order = 0; order < 1296; order++) {
+            int[] lines = new int[9];
+            for (int i = 0; i < 9; i++) {
+                int[] inside = permutations[order / (i < 3 ? 36 : i < 6 ? 6 : 1) % 6];
+                lines[i] = 3 * permutations[order / 216][i / 3] + inside[i % 3];
+            }
+            orders.add(lines);
+        }
+        int[] transposed = new int[81];
+        for (int i = 0; i < 81; i++) {
+            transposed[i % 9 * 9 + i / 9] = grid[i];
+        }
+        int[] smallest = null;
+        int[] shown = new int[81];
+        for (int[] puzzle : new int[][] {grid, transposed}) {
+            for (int[] rows : orders) {
+                for (int[] cols : orders) {
+                    int[] labels = new int[10];
+                    int next = 0;
+                    int compared = smallest == null ? -1 : 0;
+                    for (int i = 0; i < 81 && compared <= 0; i++) {
+                        int value = puzzle[rows[i / 9] * 9 + cols[i % 9]];
+                        if (value != 0 && labels[value] == 0) {
+                            labels[value] = ++next;
+                        }
+                        shown[i] = labels[value];
+                        if (compared == 0 && shown[i] != smallest[i]) {
+                            compared = shown[i] < smallest[i] ? -1 : 1;
+                        }
+                    }
+                    if (compared < 0) {
+                        smallest = shown.clone();
+                    }
+                }
+            }
+        }
+        return smallest;
+    }
+
+    /**
+     * Writes bytes to a file and returns its name.
+     */
+    private static String write(Path file, byte[] bytes) throws IOException {
+        Files.write(file, bytes);
+        return file.toString();
+    }
+
+    /**
+     * Asserts that two boards hold the same values and the same fixed cells.
+     */
+    private static void assertSameCells(SudokuBoard expected, SudokuBoard actual) {
+        assertSameValues(expected, actual);
+        for (int row = 0; row < SudokuBoard.SIZE; row++) {
+            for (int col = 0; col < SudokuBoard.SIZE; col++) {
+                assertEquals(expected.isCellFixed(row, col), actual.isCellFixed(row, col));
+            }
+        }
+    }
+}
@@ -76,6 +76,16 @@ public class SudokuCell {
      * @return string representation of the cell
      */
     public String toString() {
+        return toString(getValue(), isFixed());
+    }
+
+    /**
+     * Returns the string representation of a cell with the given contents.
+     * @param value the value of the cell (0 if empty)
+     * @param isFixed true if the cell is fixed, false otherwise
+     * @return string representation of the cell
+     */
+    static String toString(int value, boolean isFixed) {
         if ( value == 0 ){
             return " _ ";
         }
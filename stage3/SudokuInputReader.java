@@ -5,6 +5,11 @@ import java.util.Scanner;
  */
 public class SudokuInputReader {
 
+    /**
+     * Number of rows, columns and values of the board (9 for a classic board)
+     */
+    private final int size;
+
     /**
      * The row input from the user (0-8 for rows 1-9)
      */
@@ -16,7 +21,7 @@ public class SudokuInputReader {
     private int colInput;
 
     /**
-     * The value input from the user (1-9)
+     * The value input from the user (1-9, or 0 to empty the cell)
      */
     private int valueInput;
 
@@ -30,15 +35,42 @@ public class SudokuInputReader {
      */
     private boolean userWantstoSolve;
 
+    /**
+     * Indicates whether the user wants to take back the last move
+     */
+    private boolean userWantsToUndo;
+
+    /**
+     * Indicates whether the user wants to make the last move undone again
+     */
+    private boolean userWantsToRedo;
+
+    /**
+     * Indicates whether the user wants a hint for the next move
+     */
+    private boolean userWantsHint;
+
     /**
      * Scanner for reading user input
      */
     private Scanner scanner;
 
     /**
-     * Constructor of the SudokuInputReader class.
+     * Constructor of the SudokuInputReader class, for 9x9 boards.
      */
     public SudokuInputReader() {
+        this(SudokuBoard.SIZE);
+    }
+
+    /**
+     * Constructor of the SudokuInputReader class, for boards of any size.
+     * Precondition: size is at least 1
+     *
+     * @param size the number of rows, columns and values of the board
+     */
+    public SudokuInputReader(int size) {
+        assert size >= 1 : "The size must be at least 1.";
+        this.size = size;
         rowInput = -1;
         colInput = -1;
         valueInput = -1;
@@ -52,13 +84,28 @@ public class SudokuInputReader {
      */
     public void readInput() {
         boolean validInput = false;
+        userWantsToUndo = false;
+        userWantsToRedo = false;
+        userWantsHint = false;
         while (!validInput && !userWantsToQuit) {
-            System.out.println("Enter three numbers (row, column, value) separated by spaces to place a value, 's' to solve, or 'q' to quit:");
+            System.out.println("Enter three numbers (row, column, value) separated by spaces to place a value (0 empties the cell), 'h' for a hint, 'u' to undo, 'r' to redo, 's' to solve, or 'q' to quit:");
             String userInput = scanner.nextLine().trim();
             if (userInput.equalsIgnoreCase("q")) {
                 validInput = true;
                 userWantsToQuit = true;
             }
+            else if (userInput.equalsIgnoreCase("u")) {
+                validInput = true;
+                userWantsToUndo = true;
+            }
+            else if (userInput.equalsIgnoreCase("r")) {
+                validInput = true;
+                userWantsToRedo = true;
+            }
+            else if (userInput.equalsIgnoreCase("h")) {
+                validInput = true;
+                userWantsHint = true;
+            }
             else {
                 if (userInput.equalsIgnoreCase("s")) {
                     validInput = true;
@@ -70,13 +117,13 @@ public class SudokuInputReader {
                             int row = Integer.parseInt(parts[0]);
                             int col = Integer.parseInt(parts[1]);
                             int value = Integer.parseInt(parts[2]);
-                            if (row >= 0 && row < 9 && col >= 0 && col < 9 && value >= 1 && value <= 9) {
+                            if (row >= 0 && row < size && col >= 0 && col < size && value >= 0 && value <= size) {
                                 rowInput = row;
                                 colInput = col;
                                 valueInput = value;
                                 validInput = true;
                             } else {
-                                System.out.println("Error: row and col must be between 0 and 8, value between 1 and 9.");
+                                System.out.println("Error: row and col must be between 0 and " + (size - 1) + ", value between 0 and " + size + ".");
                             }
                         } catch (NumberFormatException e) {
                             System.out.println("Error: Invalid input. Please enter three numbers, 's' to solve, or 'q' to quit.");
@@ -106,6 +153,30 @@ public class SudokuInputReader {
         return userWantstoSolve;
     }
 
+    /**
+     * Returns whether the user wants to take back the last move.
+     * @return true if the last input was 'u'
+     */
+    public boolean userWantsToUndo() {
+        return userWantsToUndo;
+    }
+
+    /**
+     * Returns whether the user wants to make the last move undone again.
+     * @return true if the last input was 'r'
+     */
+    public boolean userWantsToRedo() {
+        return userWantsToRedo;
+    }
+
+    /**
+     * Returns whether the user wants a hint for the next move.
+     * @return true if the last input was 'h'
+     */
+    public boolean userWantsHint() {
+        return userWantsHint;
+    }
+
     /**
      * Returns the row input from the user.
      * @return the row input (0-8)
@@ -124,7 +195,7 @@ public class SudokuInputReader {
 
     /**
      * Returns the value input from the user.
-     * @return the value input (1-9)
+     * @return the value input (1-9, or 0 to empty the cell)
      */
     public int getValueInput() {
         return this.valueInput;
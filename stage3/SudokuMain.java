@@ -1,4 +1,12 @@
 
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Random;
@@ -24,15 +32,244 @@ public class SudokuMain {
      */
     private SudokuInputReader inputReader;
 
+    /**
+     * Moves made on the board, for undo and redo
+     */
+    private MoveHistory history;
+
+    /**
+     * Finds hints for the board, keeping its candidates between requests
+     */
+    private HintEngine hints;
+
 
     /**
      * Main method to start the Sudoku game.
-     * @param args command line arguments (not used)
+     * With "--batch [input [output]]" no game is played: puzzles are read one per
+     * line from the input file (standard input if missing or "-") and their
+     * solutions written to the output file (standard output if missing).
+     * "--parallel-batch" does the same using all available processors, and
+     * "--batch-stats" does the same on one processor, also printing percentiles of
+     * the search nodes, backtracks, depth and phase timings of the solves.
+     * With "--generate count [clues [symmetry [seed]]]" count puzzles with a single
+     * solution are written to standard output, one per line.
+     * With "--grade [input]" puzzles are read one per line from the input file
+     * (standard input if missing or "-") and written to standard output followed
+     * by their difficulty and score.
+     * With "--dedupe [input [output]]" puzzles are read one per line from the
+     * input file (standard input if missing or "-") and the first of every class
+     * of equivalent puzzles written to the output file (standard output if missing);
+     * "--dedupe-canonical" writes the canonical form of every class instead.
+     * With "--serve [port [limit]]" puzzles are solved over HTTP on localhost (see
+     * SolveServer), at most limit at a time (default: the number of processors),
+     * until standard input is closed or a line is entered.
+     * @param args command line arguments
      */
     public static void main(String[] args) {
+        if (args.length > 0 && (args[0].equals("--batch") || args[0].equals("--parallel-batch")
+                || args[0].equals("--batch-stats"))) {
+            solveBatch(args, args[0].equals("--parallel-batch"));
+            return;
+        }
+        if (args.length > 1 && args[0].equals("--generate")) {
+            generate(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--grade")) {
+            grade(args);
+            return;
+        }
+        if (args.length > 0 && (args[0].equals("--dedupe") || args[0].equals("--dedupe-canonical"))) {
+            dedupe(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--serve")) {
+            serve(args);
+            return;
+        }
         SudokuMain game = new SudokuMain();
     }
 
+    /**
+     * Solves a file of puzzles, printing a summary to standard error.
+     * @param args command line arguments: the batch option, then optional input and output files
+     * @param parallel true to solve on all available processors
+     */
+    private static void solveBatch(String[] args, boolean parallel) {
+        boolean fromFile = args.length > 1 && !args[1].equals("-");
+        boolean toFile = args.length > 2;
+        long solved;
+        long unsolvable;
+        long invalid;
+        SolveStatistics statistics = null;
+        try (InputStream in = fromFile ? new FileInputStream(args[1]) : standardInput();
+             OutputStream out = toFile ? new FileOutputStream(args[2]) : standardOutput()) {
+            if (parallel) {
+                try (ParallelBatchSolver solver = new ParallelBatchSolver()) {
+                    solver.solveAll(in, out);
+                    solved = solver.getSolvedCount();
+                    unsolvable = solver.getUnsolvableCount();
+                    invalid = solver.getInvalidCount();
+                }
+            } else {
+                BatchSolver solver = new BatchSolver();
+                if (args[0].equals("--batch-stats")) {
+                    statistics = new SolveStatistics();
+                    solver.setStatistics(statistics);
+                }
+                solver.solveAll(in, out);
+                solved = solver.getSolvedCount();
+                unsolvable = solver.getUnsolvableCount();
+                invalid = solver.getInvalidCount();
+            }
+        } catch (IOException e) {
+            System.err.println("Batch solving failed: " + e.getMessage());
+            return;
+        }
+        System.err.println("Solved: " + solved + ", unsolvable: " + unsolvable + ", invalid: " + invalid);
+        if (statistics != null) {
+            System.err.print(statistics);
+        }
+    }
+
+    /**
+     * Returns standard input in a stream that leaves it open when closed, so it can
+     * be used in a try-with-resources statement like a file.
+     * @return the stream reading standard input
+     */
+    private static InputStream standardInput() {
+        return new FilterInputStream(System.in) {
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Returns standard output in a stream that only flushes it when closed, so it can
+     * be used in a try-with-resources statement like a file.
+     * @return the stream writing to standard output
+     */
+    private static OutputStream standardOutput() {
+        return new FilterOutputStream(System.out) {
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                out.write(bytes, offset, length);
+            }
+
+            public void close() throws IOException {
+                flush();
+            }
+        };
+    }
+
+    /**
+     * Writes generated puzzles to standard output, one per line.
+     * @param args command line arguments: "--generate", the number of puzzles, then
+     *             optionally the number of clues (default 30), the symmetry (default NONE)
+     *             and the seed (default random)
+     */
+    private static void generate(String[] args) {
+        int count;
+        int clues;
+        PuzzleGenerator.Symmetry symmetry;
+        long seed;
+        try {
+            count = Integer.parseInt(args[1]);
+            clues = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+            symmetry = args.length > 3 ? PuzzleGenerator.Symmetry.valueOf(args[3].toUpperCase()) : PuzzleGenerator.Symmetry.NONE;
+            seed = args.length > 4 ? Long.parseLong(args[4]) : new Random().nextLong();
+        } catch (IllegalArgumentException e) {
+            System.err.println("Usage: java SudokuMain --generate count [clues [none|rotational|mirror|diagonal [seed]]]");
+            return;
+        }
+        if (clues < PuzzleGenerator.MIN_CLUES || clues > SudokuBoard.SIZE * SudokuBoard.SIZE) {
+            System.err.println("The number of clues must be between " + PuzzleGenerator.MIN_CLUES + " and 81.");
+            return;
+        }
+        PuzzleGenerator generator = new PuzzleGenerator(seed);
+        for (int i = 0; i < count; i++) {
+            SudokuBoard puzzle = generator.generate(clues, symmetry);
+            puzzle.setCompactToStringStrategy();
+            System.out.println(puzzle.toString());
+        }
+    }
+
+    /**
+     * Writes every puzzle of a file with its difficulty and score.
+     * @param args command line arguments: "--grade", then an optional input file
+     */
+    private static void grade(String[] args) {
+        boolean fromFile = args.length > 1 && !args[1].equals("-");
+        DifficultyGrader grader = new DifficultyGrader();
+        byte[] cells = new byte[SudokuBoard.SIZE * SudokuBoard.SIZE];
+        int[] grid = new int[cells.length];
+        try (InputStream in = fromFile ? new FileInputStream(args[1]) : standardInput()) {
+            PuzzleLineReader reader = new PuzzleLineReader(in);
+            StringBuilder line = new StringBuilder();
+            int kind;
+            while ((kind = reader.readPuzzle(cells, 0)) != PuzzleLineReader.END) {
+                line.setLength(0);
+                if (kind == PuzzleLineReader.INVALID) {
+                    line.append("invalid");
+                } else {
+                    for (int i = 0; i < cells.length; i++) {
+                        grid[i] = cells[i];
+                        line.append((char) ('0' + cells[i]));
+                    }
+                    DifficultyGrader.Grade grade = grader.grade(grid);
+                    line.append(' ').append(grade.getDifficulty()).append(' ').append(grade.getScore());
+                }
+                System.out.println(line);
+            }
+        } catch (IOException e) {
+            System.err.println("Grading failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes one puzzle of every class of equivalent puzzles of a file, printing a summary to standard error.
+     * @param args command line arguments: the dedupe option, then optional input and output files
+     */
+    private static void dedupe(String[] args) {
+        boolean fromFile = args.length > 1 && !args[1].equals("-");
+        boolean toFile = args.length > 2;
+        CorpusDeduplicator deduplicator = new CorpusDeduplicator();
+        deduplicator.setCanonicalOutput(args[0].equals("--dedupe-canonical"));
+        try (InputStream in = fromFile ? new FileInputStream(args[1]) : standardInput();
+             OutputStream out = toFile ? new FileOutputStream(args[2]) : standardOutput()) {
+            deduplicator.dedupe(in, out);
+        } catch (IOException e) {
+            System.err.println("Deduplication failed: " + e.getMessage());
+            return;
+        }
+        System.err.println("Puzzles: " + deduplicator.getPuzzleCount() + ", classes: " + deduplicator.getClassCount()
+            + ", invalid: " + deduplicator.getInvalidCount());
+    }
+
+    /**
+     * Solves puzzles over HTTP until standard input is closed or a line is entered.
+     * @param args command line arguments: "--serve", then an optional port and solve limit
+     */
+    private static void serve(String[] args) {
+        int port;
+        int limit;
+        try {
+            port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+            limit = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        } catch (NumberFormatException e) {
+            System.err.println("Usage: java SudokuMain --serve [port [limit]]");
+            return;
+        }
+        SolveServer.enableNoDelay();
+        try (SolveServer server = new SolveServer(port, limit)) {
+            System.err.println("Solving at http://127.0.0.1:" + server.getPort() + SolveServer.PATH
+                + ", press Enter to stop");
+            System.in.read();
+            System.err.println("Cache: " + server.getCache());
+        } catch (IOException e) {
+            System.err.println("Serving failed: " + e.getMessage());
+        }
+    }
+
     /**
      * Starts the Sudoku game by randomly choosing a puzzle to solve.
      */
@@ -41,7 +278,10 @@ public class SudokuMain {
         String selectedPuzzle = selectPuzzle();
         board = new SudokuBoard(selectedPuzzle);
         board.setColoredToStringStrategy();
+        board.setCachingSolveStrategy();
         inputReader = new SudokuInputReader();
+        history = new MoveHistory(board);
+        hints = new HintEngine();
         play();
     }
 
@@ -79,7 +319,7 @@ public class SudokuMain {
         boolean gameFinished = false;
         while (!gameFinished) {
             System.out.println(board.toString());
-            System.out.println("Enter your move (row, column, value), 's' to solve, or 'q' to quit:");
+            System.out.println("Enter your move (row, column, value), 'h' for a hint, 'u' to undo, 'r' to redo, 's' to solve, or 'q' to quit:");
             inputReader.readInput();
             if (inputReader.userWantsToQuit()) {
                 System.out.println("Thanks for playing!");
@@ -97,12 +337,34 @@ public class SudokuMain {
                     }
                     gameFinished = true;
                 }
+                else if (inputReader.userWantsHint()) {
+                    HintEngine.Hint hint = hints.hint(board);
+                    if (hint != null) {
+                        System.out.println("Hint: " + hint);
+                    } else if (hints.foundContradiction()) {
+                        System.out.println("No hint: some value on the board is wrong. Try undoing your last moves.");
+                    } else {
+                        System.out.println("No hint: the next move cannot be found by logic alone.");
+                    }
+                }
+                else if (inputReader.userWantsToUndo()) {
+                    if (!history.undo()) {
+                        System.out.println("Nothing to undo.");
+                    }
+                }
+                else if (inputReader.userWantsToRedo()) {
+                    if (!history.redo()) {
+                        System.out.println("Nothing to redo.");
+                    }
+                }
                 else {
                     int row = inputReader.getRowInput();
                     int col = inputReader.getColInput();
                     int value = inputReader.getValueInput();
-                    if (!board.isCellFixed(row, col) && value >= 1 && value <= 9) {
-                        board.setCellValue(row, col, value);
+                    if (!board.isCellFixed(row, col) && value == 0) {
+                        history.clearCellValue(row, col);
+                    } else if (!board.isCellFixed(row, col) && value >= 1 && value <= 9) {
+                        history.setCellValue(row, col, value);
                         if (board.isSolved()) {
                             System.out.println(board.toString());
                             System.out.println("Congratulations! You've solved the puzzle!");